@@ -0,0 +1,26 @@
+package com.medhelp.backend.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+/**
+ * ETag and If-None-Match support for the user-facing APIs.
+ *
+ * Handlers for versioned rows set their own ETag from the row version and answer 304
+ * before building the body. Every other GET under these paths gets an ETag hashed from
+ * the response body here, so polling clients get a 304 without the payload when nothing
+ * changed. The filter keeps an ETag a handler already set.
+ */
+@Configuration
+public class ConditionalRequestConfig {
+
+    @Bean
+    public FilterRegistrationBean<ShallowEtagHeaderFilter> userApiEtagFilter() {
+        FilterRegistrationBean<ShallowEtagHeaderFilter> registration =
+                new FilterRegistrationBean<>(new ShallowEtagHeaderFilter());
+        registration.addUrlPatterns("/api/v1/users/*", "/api/v1/user/*");
+        return registration;
+    }
+}
@@ -0,0 +1,34 @@
+package com.medhelp.backend.config;
+
+import com.medhelp.backend.service.NotificationChannel;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "application.notifications")
+public class NotificationProperties {
+
+    private Map<NotificationChannel, Channel> channels = new EnumMap<>(NotificationChannel.class);
+
+    // Outbox rows a worker claims at once, how long a claim lasts and how often idle workers poll
+    private int batchSize = 10;
+    private long leaseSeconds = 60;
+    private long pollIntervalMs = 1000;
+
+    public Channel channel(NotificationChannel channel) {
+        return channels.getOrDefault(channel, new Channel());
+    }
+
+    @Data
+    public static class Channel {
+        private int workers = 2;
+        private double ratePerSecond = 50;
+        private int maxAttempts = 3;
+        private long retryBackoffMs = 2000;
+    }
+}
@@ -121,6 +121,7 @@ public class AuthenticationController {
                 .branchName(user.getBranch() != null ? user.getBranch().getName() : null)
                 .userType(user.getUserType().name())
                 .emailVerified(user.getEmailVerified())
+                .mfaEnabled(user.getMfaEnabled())
                 .build());
     }
 }
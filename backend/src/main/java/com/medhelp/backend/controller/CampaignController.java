@@ -0,0 +1,54 @@
+package com.medhelp.backend.controller;
+
+import com.medhelp.backend.dto.CampaignRequest;
+import com.medhelp.backend.model.Campaign;
+import com.medhelp.backend.model.User;
+import com.medhelp.backend.service.CampaignService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/admin/campaigns")
+@RequiredArgsConstructor
+public class CampaignController {
+
+    private final CampaignService campaignService;
+
+    @GetMapping
+    public ResponseEntity<List<Campaign>> getCampaigns() {
+        return ResponseEntity.ok(campaignService.getCampaigns());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Campaign> getCampaign(@PathVariable Long id) {
+        return ResponseEntity.ok(campaignService.getCampaign(id));
+    }
+
+    @PostMapping
+    public ResponseEntity<Campaign> createCampaign(
+            @Valid @RequestBody CampaignRequest request,
+            @AuthenticationPrincipal User admin
+    ) {
+        return ResponseEntity.ok(campaignService.createCampaign(request, admin));
+    }
+
+    @PostMapping("/{id}/start")
+    public ResponseEntity<Campaign> startCampaign(@PathVariable Long id) {
+        return ResponseEntity.ok(campaignService.startCampaign(id));
+    }
+
+    @PostMapping("/{id}/pause")
+    public ResponseEntity<Campaign> pauseCampaign(@PathVariable Long id) {
+        return ResponseEntity.ok(campaignService.pauseCampaign(id));
+    }
+
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<Campaign> cancelCampaign(@PathVariable Long id) {
+        return ResponseEntity.ok(campaignService.cancelCampaign(id));
+    }
+}
@@ -28,7 +28,10 @@ public class MfaController {
     @GetMapping("/setup")
     public ResponseEntity<MfaSetupResponse> setup(@AuthenticationPrincipal User user) {
         String qrCodeUri = twoFactorService.setupQRCode(user);
-        List<String> backupCodes = twoFactorService.getBackupCodes(user);
+        // Codes are stored hashed, so fresh ones are issued while 2FA is still being set up
+        List<String> backupCodes = twoFactorService.is2FAEnabled(user)
+                ? List.of()
+                : twoFactorService.regenerateBackupCodes(user);
         
         return ResponseEntity.ok(MfaSetupResponse.builder()
                 .qrCodeUri(qrCodeUri)
@@ -64,9 +67,8 @@ public class MfaController {
 
     @GetMapping("/backup-codes")
     public ResponseEntity<BackupCodesResponse> getBackupCodes(@AuthenticationPrincipal User user) {
-        List<String> codes = twoFactorService.getBackupCodes(user);
         return ResponseEntity.ok(BackupCodesResponse.builder()
-                .codes(codes)
+                .remaining(twoFactorService.countRemainingBackupCodes(user))
                 .build());
     }
 
@@ -75,6 +77,7 @@ public class MfaController {
         List<String> newCodes = twoFactorService.regenerateBackupCodes(user);
         return ResponseEntity.ok(BackupCodesResponse.builder()
                 .codes(newCodes)
+                .remaining(newCodes.size())
                 .build());
     }
 
@@ -109,6 +112,8 @@ public class MfaController {
     @NoArgsConstructor
     @AllArgsConstructor
     public static class BackupCodesResponse {
+        // Only present right after regeneration
         private List<String> codes;
+        private long remaining;
     }
 }
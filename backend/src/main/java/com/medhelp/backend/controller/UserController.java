@@ -7,31 +7,44 @@ import com.medhelp.backend.model.User;
 import com.medhelp.backend.model.UserPreferences;
 import com.medhelp.backend.repository.UserRepository;
 import com.medhelp.backend.service.*;
+import com.medhelp.backend.util.EntityTags;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Map;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/v1/users")
 @RequiredArgsConstructor
 public class UserController {
 
+        private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
         private final UserRepository userRepository;
         private final UserService userService;
         private final AuthenticationService authenticationService;
         private final UserPreferencesService userPreferencesService;
         private final NotificationSettingsService notificationSettingsService;
         private final PrivacySettingsService privacySettingsService;
+        private final UserSettingsService userSettingsService;
 
         @GetMapping("/me")
-        public ResponseEntity<UserResponse> getCurrentUser(@AuthenticationPrincipal UserDetails userDetails) {
+        public ResponseEntity<UserResponse> getCurrentUser(@AuthenticationPrincipal UserDetails userDetails,
+                        WebRequest webRequest) {
                 User user = userRepository.findByEmail(userDetails.getUsername())
                                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-                return ResponseEntity.ok(UserResponse.builder()
+                String etag = EntityTags.of(EntityTags.USER, user.getId(), user.getVersion());
+                return conditional(webRequest, etag, () -> UserResponse.builder()
                                 .id(user.getId())
                                 .email(user.getEmail())
                                 .username(user.getUsername())
@@ -54,20 +67,39 @@ public class UserController {
                                 .branchName(user.getBranch() != null ? user.getBranch().getName() : null)
                                 .userType(user.getUserType().name())
                                 .emailVerified(user.getEmailVerified())
-                                .mfaEnabled(false)
+                                .mfaEnabled(user.getMfaEnabled())
                                 .build());
         }
 
+        /**
+         * All settings sections in one response. Send the ETag back in If-None-Match to get
+         * a 304 without a body while nothing changed.
+         */
+        @GetMapping("/me/settings")
+        public ResponseEntity<UserSettingsResponse> getSettings(@AuthenticationPrincipal UserDetails userDetails) {
+                UserSettingsService.VersionedSettings settings = userSettingsService
+                                .getSettings(userDetails.getUsername());
+
+                // Spring answers 304 itself when the request's If-None-Match matches
+                return ResponseEntity.ok()
+                                .eTag(settings.etag())
+                                .cacheControl(REVALIDATE)
+                                .body(settings.settings());
+        }
+
         @PutMapping("/profile")
         public ResponseEntity<UserResponse> updateProfile(
                         @AuthenticationPrincipal UserDetails userDetails,
+                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                         @Valid @RequestBody UpdateProfileRequest request) {
                 User user = userRepository.findByEmail(userDetails.getUsername())
                                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-                User updatedUser = userService.updateProfile(user, request);
+                User updatedUser = userService.updateProfile(user, request, ifMatch);
 
-                return ResponseEntity.ok(UserResponse.builder()
+                return ResponseEntity.ok()
+                                .eTag(EntityTags.of(EntityTags.USER, updatedUser.getId(), updatedUser.getVersion()))
+                                .body(UserResponse.builder()
                                 .id(updatedUser.getId())
                                 .email(updatedUser.getEmail())
                                 .username(updatedUser.getUsername())
@@ -90,7 +122,7 @@ public class UserController {
                                 .branchName(updatedUser.getBranch() != null ? updatedUser.getBranch().getName() : null)
                                 .userType(updatedUser.getUserType().name())
                                 .emailVerified(updatedUser.getEmailVerified())
-                                .mfaEnabled(false)
+                                .mfaEnabled(updatedUser.getMfaEnabled())
                                 .build());
         }
 
@@ -107,65 +139,102 @@ public class UserController {
         }
 
         @GetMapping("/preferences")
-        public ResponseEntity<UserPreferences> getUserPreferences(@AuthenticationPrincipal UserDetails userDetails) {
+        public ResponseEntity<UserPreferences> getUserPreferences(@AuthenticationPrincipal UserDetails userDetails,
+                        WebRequest webRequest) {
                 User user = userRepository.findByEmail(userDetails.getUsername())
                                 .orElseThrow(() -> new RuntimeException("User not found"));
 
                 UserPreferences preferences = userPreferencesService.getUserPreferences(user.getId());
-                return ResponseEntity.ok(preferences);
+                return conditional(webRequest,
+                                EntityTags.of(EntityTags.PREFERENCES, user.getId(), preferences.getVersion()),
+                                () -> preferences);
         }
 
         @PutMapping("/preferences")
         public ResponseEntity<UserPreferences> updatePreferences(
                         @AuthenticationPrincipal UserDetails userDetails,
+                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                         @Valid @RequestBody UserPreferencesRequest request) {
                 User user = userRepository.findByEmail(userDetails.getUsername())
                                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-                UserPreferences preferences = userPreferencesService.updatePreferences(user.getId(), request);
-                return ResponseEntity.ok(preferences);
+                UserPreferences preferences = userPreferencesService.updatePreferences(user.getId(), request, ifMatch);
+                return ResponseEntity.ok()
+                                .eTag(EntityTags.of(EntityTags.PREFERENCES, user.getId(), preferences.getVersion()))
+                                .body(preferences);
         }
 
         @GetMapping("/notifications")
         public ResponseEntity<NotificationSettings> getNotificationSettings(
-                        @AuthenticationPrincipal UserDetails userDetails) {
+                        @AuthenticationPrincipal UserDetails userDetails, WebRequest webRequest) {
                 User user = userRepository.findByEmail(userDetails.getUsername())
                                 .orElseThrow(() -> new RuntimeException("User not found"));
 
                 NotificationSettings settings = notificationSettingsService.getNotificationSettings(user.getId());
-                return ResponseEntity.ok(settings);
+                return conditional(webRequest,
+                                EntityTags.of(EntityTags.NOTIFICATIONS, user.getId(), settings.getVersion()),
+                                () -> settings);
         }
 
         @PutMapping("/notifications")
         public ResponseEntity<NotificationSettings> updateNotificationSettings(
                         @AuthenticationPrincipal UserDetails userDetails,
+                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                         @Valid @RequestBody NotificationSettingsRequest request) {
                 User user = userRepository.findByEmail(userDetails.getUsername())
                                 .orElseThrow(() -> new RuntimeException("User not found"));
 
                 NotificationSettings settings = notificationSettingsService.updateNotificationSettings(user.getId(),
-                                request);
-                return ResponseEntity.ok(settings);
+                                request, ifMatch);
+                return ResponseEntity.ok()
+                                .eTag(EntityTags.of(EntityTags.NOTIFICATIONS, user.getId(), settings.getVersion()))
+                                .body(settings);
+        }
+
+        /**
+         * Change only the flags in the body, e.g. {"emailPromotions": true}; the others keep
+         * their values
+         */
+        @PatchMapping("/notifications")
+        public ResponseEntity<NotificationSettings> patchNotificationSettings(
+                        @AuthenticationPrincipal UserDetails userDetails,
+                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                        @RequestBody Map<String, Boolean> changes) {
+                User user = userRepository.findByEmail(userDetails.getUsername())
+                                .orElseThrow(() -> new RuntimeException("User not found"));
+
+                NotificationSettings settings = notificationSettingsService.patchNotificationSettings(user.getId(),
+                                changes, ifMatch);
+                return ResponseEntity.ok()
+                                .eTag(EntityTags.of(EntityTags.NOTIFICATIONS, user.getId(), settings.getVersion()))
+                                .body(settings);
         }
 
         @GetMapping("/privacy")
-        public ResponseEntity<PrivacySettings> getPrivacySettings(@AuthenticationPrincipal UserDetails userDetails) {
+        public ResponseEntity<PrivacySettings> getPrivacySettings(@AuthenticationPrincipal UserDetails userDetails,
+                        WebRequest webRequest) {
                 User user = userRepository.findByEmail(userDetails.getUsername())
                                 .orElseThrow(() -> new RuntimeException("User not found"));
 
                 PrivacySettings settings = privacySettingsService.getPrivacySettings(user.getId());
-                return ResponseEntity.ok(settings);
+                return conditional(webRequest,
+                                EntityTags.of(EntityTags.PRIVACY, user.getId(), settings.getVersion()),
+                                () -> settings);
         }
 
         @PutMapping("/privacy")
         public ResponseEntity<PrivacySettings> updatePrivacySettings(
                         @AuthenticationPrincipal UserDetails userDetails,
+                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                         @Valid @RequestBody PrivacySettingsRequest request) {
                 User user = userRepository.findByEmail(userDetails.getUsername())
                                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-                PrivacySettings settings = privacySettingsService.updatePrivacySettings(user.getId(), request);
-                return ResponseEntity.ok(settings);
+                PrivacySettings settings = privacySettingsService.updatePrivacySettings(user.getId(), request,
+                                ifMatch);
+                return ResponseEntity.ok()
+                                .eTag(EntityTags.of(EntityTags.PRIVACY, user.getId(), settings.getVersion()))
+                                .body(settings);
         }
 
         @PostMapping("/export-data")
@@ -185,4 +254,15 @@ public class UserController {
                 userService.deleteAccount(user);
                 return ResponseEntity.ok(new MessageResponse("Account deleted successfully"));
         }
+
+        /**
+         * Answer If-None-Match from the version-based ETag alone; the body is only built
+         * when the client's copy is stale
+         */
+        private static <T> ResponseEntity<T> conditional(WebRequest webRequest, String etag, Supplier<T> body) {
+                if (webRequest.checkNotModified(etag)) {
+                        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(REVALIDATE).build();
+                }
+                return ResponseEntity.ok().eTag(etag).cacheControl(REVALIDATE).body(body.get());
+        }
 }
@@ -1,8 +1,11 @@
 package com.medhelp.backend.controller;
 
+import com.medhelp.backend.dto.DeviceSessionsResponse;
+import com.medhelp.backend.dto.SessionPageResponse;
 import com.medhelp.backend.model.AuthDevice;
 import com.medhelp.backend.model.User;
 import com.medhelp.backend.service.DeviceService;
+import com.medhelp.backend.service.TokenService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -23,6 +26,7 @@ import java.util.stream.Collectors;
 public class UserManagementController {
 
     private final DeviceService deviceService;
+    private final TokenService tokenService;
 
     @GetMapping("/devices")
     public ResponseEntity<List<DeviceResponse>> getDevices(@AuthenticationPrincipal User user) {
@@ -60,6 +64,20 @@ public class UserManagementController {
         return ResponseEntity.ok().build();
     }
 
+    @GetMapping("/sessions")
+    public ResponseEntity<SessionPageResponse> getSessions(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @AuthenticationPrincipal User user
+    ) {
+        return ResponseEntity.ok(tokenService.getActiveSessions(user.getId(), cursor, limit));
+    }
+
+    @GetMapping("/sessions/devices")
+    public ResponseEntity<List<DeviceSessionsResponse>> getSessionsByDevice(@AuthenticationPrincipal User user) {
+        return ResponseEntity.ok(tokenService.getActiveSessionsByDevice(user.getId()));
+    }
+
     // Inner DTO
     @Data
     @lombok.Builder
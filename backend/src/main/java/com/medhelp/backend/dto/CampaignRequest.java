@@ -0,0 +1,36 @@
+package com.medhelp.backend.dto;
+
+import com.medhelp.backend.model.Campaign;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CampaignRequest {
+
+    @NotBlank(message = "Name is required")
+    @Size(max = 255, message = "Name must be at most 255 characters")
+    private String name;
+
+    @NotNull(message = "Channel is required")
+    private Campaign.Channel channel;
+
+    @NotNull(message = "Topic is required")
+    private Campaign.Topic topic;
+
+    @NotBlank(message = "Subject is required")
+    @Size(max = 255, message = "Subject must be at most 255 characters")
+    private String subject;
+
+    // Plain text; line breaks are kept, HTML is escaped
+    @NotBlank(message = "Body is required")
+    @Size(max = 20000, message = "Body must be at most 20000 characters")
+    private String body;
+}
@@ -0,0 +1,19 @@
+package com.medhelp.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceSessionsResponse {
+    private String deviceFingerprint;
+    private Long activeSessions;
+    private LocalDateTime firstCreatedAt;
+    private LocalDateTime lastCreatedAt;
+}
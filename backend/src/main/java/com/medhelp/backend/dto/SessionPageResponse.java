@@ -0,0 +1,18 @@
+package com.medhelp.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionPageResponse {
+    private List<SessionResponse> sessions;
+    // Opaque keyset cursor for the next page, null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,31 @@
+package com.medhelp.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionResponse {
+    private Long id;
+    private String deviceFingerprint;
+    private String ipAddress;
+    private String userAgent;
+    private LocalDateTime createdAt;
+    private LocalDateTime expiresAt;
+    // Parsed from userAgent
+    private String browser;
+    private String os;
+    private String deviceClass;
+
+    // JPQL constructor projection; the parsed fields are filled in afterwards
+    public SessionResponse(Long id, String deviceFingerprint, String ipAddress, String userAgent,
+            LocalDateTime createdAt, LocalDateTime expiresAt) {
+        this(id, deviceFingerprint, ipAddress, userAgent, createdAt, expiresAt, null, null, null);
+    }
+}
@@ -0,0 +1,19 @@
+package com.medhelp.backend.dto;
+
+import com.medhelp.backend.model.NotificationSettings;
+import com.medhelp.backend.model.PrivacySettings;
+import com.medhelp.backend.model.UserPreferences;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSettingsResponse {
+    private UserPreferences preferences;
+    private NotificationSettings notifications;
+    private PrivacySettings privacy;
+}
@@ -0,0 +1,12 @@
+package com.medhelp.backend.exception;
+
+/**
+ * The client's If-Match no longer matches the resource, i.e. it is writing over a version
+ * it has not seen. Answered with 412.
+ */
+public class PreconditionFailedException extends RuntimeException {
+
+    public PreconditionFailedException(String message) {
+        super(message);
+    }
+}
@@ -35,8 +35,9 @@ public class AuthDevice {
     @Column(name = "last_ip", length = 45)
     private String lastIp;
 
-    @Column(name = "last_user_agent", columnDefinition = "TEXT")
-    private String lastUserAgent;
+    // Interned in user_agents
+    @Column(name = "last_user_agent_id")
+    private Long lastUserAgentId;
 
     @Column(name = "first_seen", nullable = false, updatable = false)
     private LocalDateTime firstSeen;
@@ -48,15 +49,14 @@ public class AuthDevice {
     @Builder.Default
     private Boolean isTrusted = false;
 
+    // Last-seen updates from sightings do not bump it, see AuthDeviceBatchRepositoryImpl
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @PrePersist
     protected void onCreate() {
         firstSeen = LocalDateTime.now();
         lastSeen = LocalDateTime.now();
     }
-
-    public void updateLastSeen(String ip, String userAgent) {
-        this.lastSeen = LocalDateTime.now();
-        this.lastIp = ip;
-        this.lastUserAgent = userAgent;
-    }
 }
@@ -26,7 +26,12 @@ public class LoginAttempt {
     @Column(name = "ip_address", nullable = false, length = 45)
     private String ipAddress;
 
-    @Column(name = "user_agent", columnDefinition = "TEXT")
+    // Interned in user_agents, successful attempts only
+    @Column(name = "user_agent_id")
+    private Long userAgentId;
+
+    // Raw header of a failed attempt, capped like the dictionary entries
+    @Column(name = "user_agent", length = 512)
     private String userAgent;
 
     @Column(nullable = false)
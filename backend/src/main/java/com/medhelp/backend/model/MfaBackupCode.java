@@ -13,43 +13,28 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "password_reset_tokens")
-public class PasswordResetToken {
+@Table(name = "mfa_backup_codes")
+public class MfaBackupCode {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false, unique = true)
-    private String token;
-
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    // HMAC-SHA256 of "<user id>:<code>" keyed by application.auth.mfa.backup-code.hash-key
+    // (see TwoFactorService); rows from before the key hold the unkeyed SHA-256 of the same
+    // string. The code itself is never stored.
+    @Column(name = "code_hash", nullable = false, columnDefinition = "BYTEA")
+    private byte[] codeHash;
+
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
-    @Column(name = "expires_at", nullable = false)
-    private LocalDateTime expiresAt;
-
-    @Column(name = "used_at")
-    private LocalDateTime usedAt;
-
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
     }
-
-    public boolean isExpired() {
-        return LocalDateTime.now().isAfter(expiresAt);
-    }
-
-    public boolean isUsed() {
-        return usedAt != null;
-    }
-
-    public boolean isValid() {
-        return !isExpired() && !isUsed();
-    }
 }
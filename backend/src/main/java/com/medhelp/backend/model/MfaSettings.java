@@ -31,9 +31,6 @@ public class MfaSettings {
     @Column(nullable = false)
     private String secret;
 
-    @Column(name = "backup_codes", columnDefinition = "TEXT")
-    private String backupCodes;
-
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
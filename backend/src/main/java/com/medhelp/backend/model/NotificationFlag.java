@@ -0,0 +1,55 @@
+package com.medhelp.backend.model;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * One opt-in stored as a bit of notification_settings.flags, with the JSON property it is
+ * exposed as. Bit positions are persisted and used by partial indexes (V17): never move a
+ * flag, add new ones on the next free bit.
+ */
+public enum NotificationFlag {
+    EMAIL_PRESCRIPTION_READY(0, "emailPrescriptionReady", true),
+    EMAIL_ORDER_UPDATES(1, "emailOrderUpdates", true),
+    EMAIL_PROMOTIONS(2, "emailPromotions", false),
+    EMAIL_NEWSLETTER(3, "emailNewsletter", true),
+    EMAIL_SECURITY_ALERTS(4, "emailSecurityAlerts", true),
+    SMS_PRESCRIPTION_READY(5, "smsPrescriptionReady", true),
+    SMS_ORDER_UPDATES(6, "smsOrderUpdates", false),
+    SMS_PROMOTIONS(7, "smsPromotions", false),
+    SMS_SECURITY_ALERTS(8, "smsSecurityAlerts", true),
+    PUSH_PRESCRIPTION_READY(9, "pushPrescriptionReady", true),
+    PUSH_ORDER_UPDATES(10, "pushOrderUpdates", true),
+    PUSH_PROMOTIONS(11, "pushPromotions", false),
+    PUSH_SECURITY_ALERTS(12, "pushSecurityAlerts", true);
+
+    /**
+     * Flags of a user who never changed a setting
+     */
+    public static final int DEFAULTS = Arrays.stream(values())
+            .filter(flag -> flag.enabledByDefault)
+            .mapToInt(NotificationFlag::bit)
+            .reduce(0, (flags, bit) -> flags | bit);
+
+    private final int position;
+    private final String property;
+    private final boolean enabledByDefault;
+
+    NotificationFlag(int position, String property, boolean enabledByDefault) {
+        this.position = position;
+        this.property = property;
+        this.enabledByDefault = enabledByDefault;
+    }
+
+    public int bit() {
+        return 1 << position;
+    }
+
+    public String property() {
+        return property;
+    }
+
+    public static Optional<NotificationFlag> fromProperty(String property) {
+        return Arrays.stream(values()).filter(flag -> flag.property.equals(property)).findFirst();
+    }
+}
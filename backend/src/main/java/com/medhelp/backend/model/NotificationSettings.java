@@ -1,5 +1,6 @@
 package com.medhelp.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -8,6 +9,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Data
 @Builder
@@ -26,60 +29,11 @@ public class NotificationSettings {
     @JoinColumn(name = "user_id", nullable = false, unique = true)
     private User user;
 
-    // Email Notifications
-    @Column(name = "email_prescription_ready", nullable = false)
-    @Builder.Default
-    private Boolean emailPrescriptionReady = true;
-
-    @Column(name = "email_order_updates", nullable = false)
-    @Builder.Default
-    private Boolean emailOrderUpdates = true;
-
-    @Column(name = "email_promotions", nullable = false)
-    @Builder.Default
-    private Boolean emailPromotions = false;
-
-    @Column(name = "email_newsletter", nullable = false)
-    @Builder.Default
-    private Boolean emailNewsletter = true;
-
-    @Column(name = "email_security_alerts", nullable = false)
-    @Builder.Default
-    private Boolean emailSecurityAlerts = true;
-
-    // SMS Notifications
-    @Column(name = "sms_prescription_ready", nullable = false)
-    @Builder.Default
-    private Boolean smsPrescriptionReady = true;
-
-    @Column(name = "sms_order_updates", nullable = false)
-    @Builder.Default
-    private Boolean smsOrderUpdates = false;
-
-    @Column(name = "sms_promotions", nullable = false)
-    @Builder.Default
-    private Boolean smsPromotions = false;
-
-    @Column(name = "sms_security_alerts", nullable = false)
-    @Builder.Default
-    private Boolean smsSecurityAlerts = true;
-
-    // Push Notifications
-    @Column(name = "push_prescription_ready", nullable = false)
-    @Builder.Default
-    private Boolean pushPrescriptionReady = true;
-
-    @Column(name = "push_order_updates", nullable = false)
-    @Builder.Default
-    private Boolean pushOrderUpdates = true;
-
-    @Column(name = "push_promotions", nullable = false)
-    @Builder.Default
-    private Boolean pushPromotions = false;
-
-    @Column(name = "push_security_alerts", nullable = false)
+    // One bit per NotificationFlag; serialized as one boolean property per flag
+    @JsonIgnore
+    @Column(nullable = false)
     @Builder.Default
-    private Boolean pushSecurityAlerts = true;
+    private Integer flags = NotificationFlag.DEFAULTS;
 
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -87,6 +41,10 @@ public class NotificationSettings {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -97,4 +55,22 @@ public class NotificationSettings {
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
     }
+
+    public boolean isEnabled(NotificationFlag flag) {
+        return (flags & flag.bit()) != 0;
+    }
+
+    public void setEnabled(NotificationFlag flag, boolean enabled) {
+        flags = enabled ? flags | flag.bit() : flags & ~flag.bit();
+    }
+
+    // Keeps the JSON shape of the per-flag boolean columns this replaced
+    @JsonAnyGetter
+    public Map<String, Boolean> flagProperties() {
+        Map<String, Boolean> properties = new LinkedHashMap<>();
+        for (NotificationFlag flag : NotificationFlag.values()) {
+            properties.put(flag.property(), isEnabled(flag));
+        }
+        return properties;
+    }
 }
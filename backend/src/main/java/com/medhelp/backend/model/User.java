@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OptimisticLock;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -68,14 +69,19 @@ public class User implements UserDetails {
     @Builder.Default
     private Boolean enabled = false;
 
+    // Lockout bookkeeping is written on every login attempt; it is excluded from optimistic
+    // locking so concurrent attempts on one account never fail each other's transaction
+    @OptimisticLock(excluded = true)
     @Column(name = "account_locked", nullable = false)
     @Builder.Default
     private Boolean accountLocked = false;
 
+    @OptimisticLock(excluded = true)
     @Column(name = "failed_login_attempts", nullable = false)
     @Builder.Default
     private Integer failedLoginAttempts = 0;
 
+    @OptimisticLock(excluded = true)
     @Column(name = "locked_until")
     private LocalDateTime lockedUntil;
 
@@ -86,6 +92,11 @@ public class User implements UserDetails {
     @Column(name = "email_verified_at")
     private LocalDateTime emailVerifiedAt;
 
+    // Mirrors mfa_settings.enabled so the loaded user answers "is 2FA on?" without a query
+    @Column(name = "mfa_enabled", nullable = false)
+    @Builder.Default
+    private Boolean mfaEnabled = false;
+
     @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"), inverseJoinColumns = @JoinColumn(name = "role_id"))
     private Set<Role> roles;
@@ -101,9 +112,15 @@ public class User implements UserDetails {
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    // Touched by every write, including the lockout-only ones above
+    @OptimisticLock(excluded = true)
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,40 @@
+package com.medhelp.backend.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Interned user-agent string, referenced by id from refresh tokens, devices and login attempts
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "user_agents")
+public class UserAgent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // SHA-256 of the user-agent string, the unique lookup key
+    @Column(name = "ua_hash", nullable = false, columnDefinition = "BYTEA")
+    private byte[] uaHash;
+
+    @Column(name = "user_agent", nullable = false, columnDefinition = "TEXT")
+    private String userAgent;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
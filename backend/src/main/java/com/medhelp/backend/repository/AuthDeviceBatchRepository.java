@@ -0,0 +1,21 @@
+package com.medhelp.backend.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface AuthDeviceBatchRepository {
+
+    /**
+     * Update the last-seen state of many devices in one JDBC batch. A sighting never moves
+     * last_seen backwards and never creates a row: devices are created on the login path,
+     * and a sighting of a device removed (or a user deleted) since is skipped.
+     */
+    void updateLastSeen(Collection<DeviceSighting> sightings);
+
+    /**
+     * The latest login seen from one device of one user
+     */
+    record DeviceSighting(Long userId, String deviceFingerprint, String ipAddress, Long userAgentId,
+            LocalDateTime seenAt) {
+    }
+}
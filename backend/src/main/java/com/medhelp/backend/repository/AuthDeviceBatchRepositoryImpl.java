@@ -0,0 +1,39 @@
+package com.medhelp.backend.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collection;
+
+/**
+ * Device last-seen updates go through JDBC so a whole flush is one batched statement.
+ * Sightings are activity, not edits, so they leave the row's version alone; trusting or
+ * removing a device never fails because the device was seen in the meantime.
+ */
+@RequiredArgsConstructor
+class AuthDeviceBatchRepositoryImpl implements AuthDeviceBatchRepository {
+
+    // Update-only, so a buffered sighting cannot bring back a device the user removed
+    private static final String UPDATE_LAST_SEEN = """
+            UPDATE auth_devices
+            SET last_ip = ?, last_user_agent_id = ?, last_seen = ?
+            WHERE user_id = ? AND device_fingerprint = ? AND last_seen < ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void updateLastSeen(Collection<DeviceSighting> sightings) {
+        jdbcTemplate.batchUpdate(UPDATE_LAST_SEEN, sightings, sightings.size(), (ps, sighting) -> {
+            Timestamp seenAt = Timestamp.valueOf(sighting.seenAt());
+            ps.setString(1, sighting.ipAddress());
+            ps.setObject(2, sighting.userAgentId(), Types.BIGINT);
+            ps.setTimestamp(3, seenAt);
+            ps.setLong(4, sighting.userId());
+            ps.setString(5, sighting.deviceFingerprint());
+            ps.setTimestamp(6, seenAt);
+        });
+    }
+}
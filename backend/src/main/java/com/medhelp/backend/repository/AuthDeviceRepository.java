@@ -3,15 +3,30 @@ package com.medhelp.backend.repository;
 import com.medhelp.backend.model.AuthDevice;
 import com.medhelp.backend.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
 
-public interface AuthDeviceRepository extends JpaRepository<AuthDevice, Long> {
+public interface AuthDeviceRepository extends JpaRepository<AuthDevice, Long>, AuthDeviceBatchRepository {
 
     Optional<AuthDevice> findByUserAndDeviceFingerprint(User user, String deviceFingerprint);
 
     List<AuthDevice> findAllByUser(User user);
 
     List<AuthDevice> findAllByUserOrderByLastSeenDesc(User user);
+
+    /**
+     * Register the device unless the user already has it, returning the id only when this
+     * call created the row. The unique (user_id, device_fingerprint) constraint makes the
+     * first-seen decision exact even when two logins race.
+     */
+    @Transactional
+    @Query(value = "INSERT INTO auth_devices (user_id, device_fingerprint, device_name, last_ip, last_user_agent_id) " +
+            "VALUES (:userId, :deviceFingerprint, :deviceName, :ipAddress, :userAgentId) " +
+            "ON CONFLICT (user_id, device_fingerprint) DO NOTHING RETURNING id",
+            nativeQuery = true)
+    Optional<Long> insertIfAbsent(Long userId, String deviceFingerprint, String deviceName, String ipAddress,
+            Long userAgentId);
 }
@@ -0,0 +1,17 @@
+package com.medhelp.backend.repository;
+
+import com.medhelp.backend.model.Campaign;
+
+import java.util.List;
+
+public interface CampaignBatchRepository {
+
+    /**
+     * Next chunk of enabled users opted in to the channel and topic, after the given user
+     * id in id order. Users without a notification settings row have not opted in.
+     */
+    List<CampaignRecipient> findRecipients(Campaign.Channel channel, Campaign.Topic topic, long afterUserId, int limit);
+
+    record CampaignRecipient(Long userId, String email, String username, String phone, String language) {
+    }
+}
@@ -0,0 +1,70 @@
+package com.medhelp.backend.repository;
+
+import com.medhelp.backend.model.Campaign;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CampaignRepository extends JpaRepository<Campaign, Long>, CampaignBatchRepository {
+
+    List<Campaign> findAllByOrderByCreatedAtDesc();
+
+    /**
+     * Lease one running campaign that no node is working on (never started here, or its
+     * previous lease ran out because that node stopped)
+     */
+    @Transactional
+    @Query(value = "UPDATE campaigns SET lease_until = :leaseUntil WHERE id = (" +
+            "SELECT id FROM campaigns WHERE status = 'RUNNING' AND (lease_until IS NULL OR lease_until < :now) " +
+            "ORDER BY id LIMIT 1 FOR UPDATE SKIP LOCKED) RETURNING *",
+            nativeQuery = true)
+    Optional<Campaign> claimRunnable(LocalDateTime now, LocalDateTime leaseUntil);
+
+    /**
+     * Advance the checkpoint past a queued chunk and renew the lease. Matches nothing if the
+     * campaign was paused or cancelled, or another node has moved the checkpoint since.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Campaign c SET c.lastUserId = :lastUserId, c.queuedCount = c.queuedCount + :queued, " +
+            "c.leaseUntil = :leaseUntil, c.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE c.id = :id AND c.lastUserId = :expectedLastUserId " +
+            "AND c.status = com.medhelp.backend.model.Campaign.Status.RUNNING")
+    int checkpoint(Long id, Long expectedLastUserId, Long lastUserId, long queued, LocalDateTime leaseUntil);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Campaign c SET c.status = com.medhelp.backend.model.Campaign.Status.COMPLETED, " +
+            "c.completedAt = CURRENT_TIMESTAMP, c.leaseUntil = NULL, c.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE c.id = :id AND c.status = com.medhelp.backend.model.Campaign.Status.RUNNING")
+    int complete(Long id);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Campaign c SET c.leaseUntil = NULL WHERE c.id = :id")
+    void releaseLease(Long id);
+
+    /**
+     * Status changes are targeted updates, so they never overwrite the runner's checkpoint
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Campaign c SET c.status = com.medhelp.backend.model.Campaign.Status.RUNNING, " +
+            "c.startedAt = COALESCE(c.startedAt, CURRENT_TIMESTAMP), c.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE c.id = :id AND c.status IN :from")
+    int start(Long id, Collection<Campaign.Status> from);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Campaign c SET c.status = :to, c.leaseUntil = NULL, c.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE c.id = :id AND c.status IN :from")
+    int transition(Long id, Collection<Campaign.Status> from, Campaign.Status to);
+}
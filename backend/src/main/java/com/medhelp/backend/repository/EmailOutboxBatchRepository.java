@@ -0,0 +1,13 @@
+package com.medhelp.backend.repository;
+
+import com.medhelp.backend.model.EmailOutboxMessage;
+
+import java.util.List;
+
+public interface EmailOutboxBatchRepository {
+
+    /**
+     * Queue many messages in one JDBC batch
+     */
+    void insertAll(List<EmailOutboxMessage> messages);
+}
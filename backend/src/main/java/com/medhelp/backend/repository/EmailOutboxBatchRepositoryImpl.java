@@ -0,0 +1,26 @@
+package com.medhelp.backend.repository;
+
+import com.medhelp.backend.model.EmailOutboxMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * IDENTITY keys keep Hibernate from batching inserts, so bulk mail goes through JDBC directly.
+ */
+@RequiredArgsConstructor
+class EmailOutboxBatchRepositoryImpl implements EmailOutboxBatchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<EmailOutboxMessage> messages) {
+        jdbcTemplate.batchUpdate("INSERT INTO email_outbox (recipient, subject, body_html) VALUES (?, ?, ?)",
+                messages, messages.size(), (ps, message) -> {
+                    ps.setString(1, message.getRecipient());
+                    ps.setString(2, message.getSubject());
+                    ps.setString(3, message.getBodyHtml());
+                });
+    }
+}
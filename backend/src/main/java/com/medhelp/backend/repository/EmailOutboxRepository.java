@@ -0,0 +1,60 @@
+package com.medhelp.backend.repository;
+
+import com.medhelp.backend.model.EmailOutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutboxMessage, Long>, EmailOutboxBatchRepository {
+
+    /**
+     * Claim up to batchSize due messages by moving their next attempt to the end of the
+     * lease and counting the attempt. Rows locked by another worker are skipped, so
+     * concurrent workers (on any node) never claim the same message.
+     */
+    @Transactional
+    @Query(value = "UPDATE email_outbox SET next_attempt_at = :leaseUntil, attempts = attempts + 1 " +
+            "WHERE id IN (SELECT id FROM email_outbox WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+            "ORDER BY next_attempt_at LIMIT :batchSize FOR UPDATE SKIP LOCKED) RETURNING *",
+            nativeQuery = true)
+    List<EmailOutboxMessage> claimDue(LocalDateTime now, LocalDateTime leaseUntil, int batchSize);
+
+    /**
+     * Extend the lease on claimed messages that are still due at the lease end the caller
+     * set, and return their ids. A message missing from the result was reclaimed by another
+     * worker after the lease ran out and must not be sent.
+     */
+    @Transactional
+    @Query(value = "UPDATE email_outbox SET next_attempt_at = :leaseUntil " +
+            "WHERE id IN (:ids) AND status = 'PENDING' AND next_attempt_at = :currentLeaseUntil RETURNING id",
+            nativeQuery = true)
+    List<Long> renewLease(List<Long> ids, LocalDateTime currentLeaseUntil, LocalDateTime leaseUntil);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM EmailOutboxMessage m WHERE m.id = :id")
+    void deleteDelivered(Long id);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE EmailOutboxMessage m SET m.nextAttemptAt = :nextAttemptAt, m.lastError = :error WHERE m.id = :id")
+    void reschedule(Long id, LocalDateTime nextAttemptAt, String error);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE EmailOutboxMessage m SET m.status = com.medhelp.backend.model.EmailOutboxMessage.Status.DEAD, " +
+            "m.lastError = :error WHERE m.id = :id")
+    void markDead(Long id, String error);
+
+    long countByStatus(EmailOutboxMessage.Status status);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM EmailOutboxMessage m WHERE m.status = com.medhelp.backend.model.EmailOutboxMessage.Status.DEAD " +
+            "AND m.createdAt < :olderThan")
+    int deleteDeadOlderThan(LocalDateTime olderThan);
+}
@@ -23,8 +23,23 @@ public interface LoginAttemptRepository extends JpaRepository<LoginAttempt, Long
     @Query("SELECT COUNT(la) FROM LoginAttempt la WHERE la.ipAddress = :ipAddress AND la.success = false AND la.attemptedAt > :since")
     long countFailedAttemptsByIpAddress(String ipAddress, LocalDateTime since);
 
+    /**
+     * Failed attempts for the email and for the IP address in a single round trip
+     */
+    @Query("SELECT COALESCE(SUM(CASE WHEN la.email = :email THEN 1 ELSE 0 END), 0) AS byEmail, " +
+            "COALESCE(SUM(CASE WHEN la.ipAddress = :ipAddress THEN 1 ELSE 0 END), 0) AS byIpAddress " +
+            "FROM LoginAttempt la WHERE la.success = false AND la.attemptedAt > :since " +
+            "AND (la.email = :email OR la.ipAddress = :ipAddress)")
+    FailedAttemptCounts countFailedAttempts(String email, String ipAddress, LocalDateTime since);
+
     @Transactional
     @Modifying
     @Query("DELETE FROM LoginAttempt la WHERE la.attemptedAt < :olderThan")
     void deleteOldAttempts(LocalDateTime olderThan);
+
+    interface FailedAttemptCounts {
+        long getByEmail();
+
+        long getByIpAddress();
+    }
 }
@@ -0,0 +1,11 @@
+package com.medhelp.backend.repository;
+
+import java.util.List;
+
+public interface MfaBackupCodeBatchRepository {
+
+    /**
+     * Insert all code hashes for a user in one JDBC batch
+     */
+    void insertAll(Long userId, List<byte[]> codeHashes);
+}
@@ -0,0 +1,24 @@
+package com.medhelp.backend.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * IDENTITY keys keep Hibernate from batching inserts, so the codes go through JDBC directly.
+ */
+@RequiredArgsConstructor
+class MfaBackupCodeBatchRepositoryImpl implements MfaBackupCodeBatchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(Long userId, List<byte[]> codeHashes) {
+        jdbcTemplate.batchUpdate("INSERT INTO mfa_backup_codes (user_id, code_hash) VALUES (?, ?)",
+                codeHashes, codeHashes.size(), (ps, codeHash) -> {
+                    ps.setLong(1, userId);
+                    ps.setBytes(2, codeHash);
+                });
+    }
+}
@@ -0,0 +1,28 @@
+package com.medhelp.backend.repository;
+
+import com.medhelp.backend.model.MfaBackupCode;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface MfaBackupCodeRepository extends JpaRepository<MfaBackupCode, Long>, MfaBackupCodeBatchRepository {
+
+    /**
+     * Delete the matching code and return its id. The DELETE is the validation, so a code
+     * can be used once even when two requests race with it.
+     */
+    @Transactional
+    @Query(value = "DELETE FROM mfa_backup_codes WHERE user_id = :userId AND code_hash = :codeHash RETURNING id",
+            nativeQuery = true)
+    Optional<Long> consume(Long userId, byte[] codeHash);
+
+    long countByUserId(Long userId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM MfaBackupCode c WHERE c.user.id = :userId")
+    int deleteAllByUserId(Long userId);
+}
@@ -3,6 +3,9 @@ package com.medhelp.backend.repository;
 import com.medhelp.backend.model.MfaSettings;
 import com.medhelp.backend.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -12,5 +15,15 @@ public interface MfaSettingsRepository extends JpaRepository<MfaSettings, Long>
 
     Optional<MfaSettings> findByUserAndEnabledTrue(User user);
 
-    boolean existsByUserAndEnabledTrue(User user);
+    /**
+     * Record a TOTP time step as used, only if it is later than the last one accepted.
+     * Returns 1 when the step was accepted and 0 for a replay, even when nodes race.
+     * Native so that saving a loaded MfaSettings never writes back a stale step.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE mfa_settings SET last_accepted_step = :step "
+            + "WHERE user_id = :userId AND (last_accepted_step IS NULL OR last_accepted_step < :step)",
+            nativeQuery = true)
+    int markStepAccepted(Long userId, long step);
 }
@@ -0,0 +1,13 @@
+package com.medhelp.backend.repository;
+
+import com.medhelp.backend.model.NotificationOutboxMessage;
+
+import java.util.List;
+
+public interface NotificationOutboxBatchRepository {
+
+    /**
+     * Queue the rows of one event, one per channel, in one JDBC batch
+     */
+    void insertAll(List<NotificationOutboxMessage> messages);
+}
@@ -0,0 +1,28 @@
+package com.medhelp.backend.repository;
+
+import com.medhelp.backend.model.NotificationOutboxMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * IDENTITY keys keep Hibernate from batching inserts, so the per-channel rows go through JDBC directly.
+ */
+@RequiredArgsConstructor
+class NotificationOutboxBatchRepositoryImpl implements NotificationOutboxBatchRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(List<NotificationOutboxMessage> messages) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO notification_outbox (user_id, channel, event_kind, payload) VALUES (?, ?, ?, ?)",
+                messages, messages.size(), (ps, message) -> {
+                    ps.setLong(1, message.getUserId());
+                    ps.setString(2, message.getChannel().name());
+                    ps.setString(3, message.getEventKind());
+                    ps.setString(4, message.getPayload());
+                });
+    }
+}
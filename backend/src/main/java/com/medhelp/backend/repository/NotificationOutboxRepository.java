@@ -0,0 +1,62 @@
+package com.medhelp.backend.repository;
+
+import com.medhelp.backend.model.NotificationOutboxMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutboxMessage, Long>,
+        NotificationOutboxBatchRepository {
+
+    /**
+     * Claim up to batchSize due rows of one channel by moving their next attempt to the end
+     * of the lease and counting the attempt. Rows locked by another worker are skipped, so
+     * concurrent workers (on any node) never claim the same row.
+     */
+    @Transactional
+    @Query(value = "UPDATE notification_outbox SET next_attempt_at = :leaseUntil, attempts = attempts + 1 " +
+            "WHERE id IN (SELECT id FROM notification_outbox WHERE channel = :channel AND status = 'PENDING' " +
+            "AND next_attempt_at <= :now ORDER BY next_attempt_at LIMIT :batchSize FOR UPDATE SKIP LOCKED) " +
+            "RETURNING *",
+            nativeQuery = true)
+    List<NotificationOutboxMessage> claimDue(String channel, LocalDateTime now, LocalDateTime leaseUntil,
+            int batchSize);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM NotificationOutboxMessage m WHERE m.id = :id")
+    void deleteDelivered(Long id);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE NotificationOutboxMessage m SET m.nextAttemptAt = :nextAttemptAt, m.lastError = :error " +
+            "WHERE m.id = :id")
+    void reschedule(Long id, LocalDateTime nextAttemptAt, String error);
+
+    /**
+     * Put claimed rows back until the given time, without counting the claim as an attempt
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE NotificationOutboxMessage m SET m.nextAttemptAt = :until, m.attempts = m.attempts - 1 " +
+            "WHERE m.id IN :ids")
+    void hold(List<Long> ids, LocalDateTime until);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE NotificationOutboxMessage m " +
+            "SET m.status = com.medhelp.backend.model.NotificationOutboxMessage.Status.DEAD, m.lastError = :error " +
+            "WHERE m.id = :id")
+    void markDead(Long id, String error);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM NotificationOutboxMessage m " +
+            "WHERE m.status = com.medhelp.backend.model.NotificationOutboxMessage.Status.DEAD " +
+            "AND m.createdAt < :olderThan")
+    int deleteDeadOlderThan(LocalDateTime olderThan);
+}
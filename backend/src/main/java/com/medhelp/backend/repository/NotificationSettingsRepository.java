@@ -1,14 +1,46 @@
 package com.medhelp.backend.repository;
 
 import com.medhelp.backend.model.NotificationSettings;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
 public interface NotificationSettingsRepository extends JpaRepository<NotificationSettings, Long> {
     Optional<NotificationSettings> findByUserId(Long userId);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT n FROM NotificationSettings n WHERE n.user.id = :userId")
+    Optional<NotificationSettings> findForUpdateByUserId(Long userId);
+
+    /**
+     * Only the packed opt-in flags, for the notification dispatcher
+     */
+    @Query("SELECT n.flags FROM NotificationSettings n WHERE n.user.id = :userId")
+    Optional<Integer> findFlagsByUserId(Long userId);
+
+    /**
+     * Set the flags in the mask to the given values and leave the others alone, creating
+     * the row from the defaults if there is none. One statement, so concurrent patches of
+     * different flags both land; a patch that changes nothing does not write.
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query(value = "INSERT INTO notification_settings (user_id, flags, created_at, updated_at) " +
+            "VALUES (:userId, (:defaults & ~:mask) | :values, :now, :now) " +
+            "ON CONFLICT (user_id) DO UPDATE " +
+            "SET flags = (notification_settings.flags & ~:mask) | :values, updated_at = :now, " +
+            "version = notification_settings.version + 1 " +
+            "WHERE (notification_settings.flags & :mask) <> :values",
+            nativeQuery = true)
+    int patchFlags(Long userId, int mask, int values, int defaults, LocalDateTime now);
+
     void deleteByUserId(Long userId);
 }
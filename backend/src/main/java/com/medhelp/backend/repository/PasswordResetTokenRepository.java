@@ -1,26 +0,0 @@
-package com.medhelp.backend.repository;
-
-import com.medhelp.backend.model.PasswordResetToken;
-import com.medhelp.backend.model.User;
-import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.transaction.annotation.Transactional;
-
-import java.time.LocalDateTime;
-import java.util.Optional;
-
-public interface PasswordResetTokenRepository extends JpaRepository<PasswordResetToken, Long> {
-
-    Optional<PasswordResetToken> findByToken(String token);
-
-    Optional<PasswordResetToken> findByUser(User user);
-
-    @Transactional
-    void deleteByUser(User user);
-
-    @Transactional
-    @Modifying
-    @Query("DELETE FROM PasswordResetToken prt WHERE prt.expiresAt < :now OR prt.usedAt IS NOT NULL")
-    void deleteExpiredOrUsed(LocalDateTime now);
-}
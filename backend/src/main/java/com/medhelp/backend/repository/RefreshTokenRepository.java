@@ -1,7 +1,10 @@
 package com.medhelp.backend.repository;
 
+import com.medhelp.backend.dto.DeviceSessionsResponse;
+import com.medhelp.backend.dto.SessionResponse;
 import com.medhelp.backend.model.RefreshToken;
 import com.medhelp.backend.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -13,26 +16,82 @@ import java.util.Optional;
 
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
 
-    Optional<RefreshToken> findByTokenHash(String tokenHash);
+    /**
+     * Revoke the token only if it is still active and return the revoked row. Concurrent
+     * callers serialize on the row lock, so exactly one of them gets the row back.
+     */
+    @Transactional
+    @Query(value = "UPDATE refresh_tokens SET is_revoked = true, revoked_at = :now " +
+            "WHERE token_hash = :tokenHash AND is_revoked = false AND expires_at > :now RETURNING *",
+            nativeQuery = true)
+    Optional<RefreshToken> revokeIfActive(byte[] tokenHash, LocalDateTime now);
+
+    /**
+     * Reuse detection: if the token was revoked before the grace cutoff, revoke every
+     * active token of its family. Returns the number of tokens revoked.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE refresh_tokens SET is_revoked = true, revoked_at = :now " +
+            "WHERE family_id = (SELECT rt.family_id FROM refresh_tokens rt " +
+            "WHERE rt.token_hash = :tokenHash AND rt.is_revoked = true AND rt.revoked_at < :graceCutoff) " +
+            "AND is_revoked = false",
+            nativeQuery = true)
+    int revokeFamilyOfReusedToken(byte[] tokenHash, LocalDateTime graceCutoff, LocalDateTime now);
 
     Optional<RefreshToken> findByUserAndDeviceFingerprint(User user, String deviceFingerprint);
 
     List<RefreshToken> findAllByUser(User user);
 
-    List<RefreshToken> findAllByUserAndIsRevokedFalse(User user);
+    /**
+     * First page of a user's active sessions, newest first
+     */
+    @Query("SELECT new com.medhelp.backend.dto.SessionResponse(rt.id, rt.deviceFingerprint, rt.ipAddress, " +
+            "ua.userAgent, rt.createdAt, rt.expiresAt) FROM RefreshToken rt " +
+            "LEFT JOIN UserAgent ua ON ua.id = rt.userAgentId " +
+            "WHERE rt.user.id = :userId AND rt.isRevoked = false AND rt.expiresAt > :now " +
+            "ORDER BY rt.createdAt DESC, rt.id DESC")
+    List<SessionResponse> findActiveSessions(Long userId, LocalDateTime now, Limit limit);
+
+    /**
+     * Next page of a user's active sessions, continuing after the (createdAt, id) keyset
+     */
+    @Query("SELECT new com.medhelp.backend.dto.SessionResponse(rt.id, rt.deviceFingerprint, rt.ipAddress, " +
+            "ua.userAgent, rt.createdAt, rt.expiresAt) FROM RefreshToken rt " +
+            "LEFT JOIN UserAgent ua ON ua.id = rt.userAgentId " +
+            "WHERE rt.user.id = :userId AND rt.isRevoked = false AND rt.expiresAt > :now " +
+            "AND (rt.createdAt < :createdAt OR (rt.createdAt = :createdAt AND rt.id < :id)) " +
+            "ORDER BY rt.createdAt DESC, rt.id DESC")
+    List<SessionResponse> findActiveSessionsAfter(Long userId, LocalDateTime now, LocalDateTime createdAt,
+            Long id, Limit limit);
+
+    @Query("SELECT new com.medhelp.backend.dto.DeviceSessionsResponse(rt.deviceFingerprint, count(rt), " +
+            "min(rt.createdAt), max(rt.createdAt)) FROM RefreshToken rt " +
+            "WHERE rt.user.id = :userId AND rt.isRevoked = false AND rt.expiresAt > :now " +
+            "GROUP BY rt.deviceFingerprint ORDER BY max(rt.createdAt) DESC")
+    List<DeviceSessionsResponse> countActiveSessionsByDevice(Long userId, LocalDateTime now);
 
     @Transactional
     @Modifying
-    @Query("UPDATE RefreshToken rt SET rt.isRevoked = true, rt.revokedAt = :revokedAt WHERE rt.user = :user")
+    @Query("UPDATE RefreshToken rt SET rt.isRevoked = true, rt.revokedAt = :revokedAt " +
+            "WHERE rt.user = :user AND rt.isRevoked = false")
     void revokeAllByUser(User user, LocalDateTime revokedAt);
 
+    /**
+     * Create the weekly expires_at partitions up to the given instant.
+     * Returns the number of partitions created.
+     */
     @Transactional
-    @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.expiresAt < :now OR rt.isRevoked = true")
-    void deleteExpiredOrRevoked(LocalDateTime now);
+    @Query(value = "SELECT refresh_tokens_create_partitions(:until)", nativeQuery = true)
+    int createPartitionsUntil(LocalDateTime until);
 
+    /**
+     * Drop the partitions holding only tokens that expired before the given instant.
+     * Returns the number of partitions dropped.
+     */
     @Transactional
-    void deleteByTokenHash(String tokenHash);
+    @Query(value = "SELECT refresh_tokens_drop_expired_partitions(:before)", nativeQuery = true)
+    int dropPartitionsExpiredBefore(LocalDateTime before);
 
     @Transactional
     void deleteAllByUser(User user);
@@ -0,0 +1,24 @@
+package com.medhelp.backend.repository;
+
+import com.medhelp.backend.model.UserAgent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+public interface UserAgentRepository extends JpaRepository<UserAgent, Long> {
+
+    /**
+     * Return the id of the user agent with this hash, inserting it first if it is new.
+     * Empty only when a concurrent transaction inserted the same string after this
+     * statement's snapshot was taken; running it again then finds that row.
+     */
+    @Transactional
+    @Query(value = "WITH inserted AS (" +
+            "INSERT INTO user_agents (ua_hash, user_agent) VALUES (:uaHash, :userAgent) " +
+            "ON CONFLICT (ua_hash) DO NOTHING RETURNING id) " +
+            "SELECT id FROM inserted UNION ALL SELECT id FROM user_agents WHERE ua_hash = :uaHash LIMIT 1",
+            nativeQuery = true)
+    Optional<Long> intern(byte[] uaHash, String userAgent);
+}
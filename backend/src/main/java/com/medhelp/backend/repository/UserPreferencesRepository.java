@@ -2,6 +2,8 @@ package com.medhelp.backend.repository;
 
 import com.medhelp.backend.model.UserPreferences;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -10,5 +12,8 @@ import java.util.Optional;
 public interface UserPreferencesRepository extends JpaRepository<UserPreferences, Long> {
     Optional<UserPreferences> findByUserId(Long userId);
 
+    @Query("SELECT p.language FROM UserPreferences p WHERE p.user.id = :userId")
+    Optional<String> findLanguageByUserId(@Param("userId") Long userId);
+
     void deleteByUserId(Long userId);
 }
@@ -1,13 +1,25 @@
 package com.medhelp.backend.repository;
 
 import com.medhelp.backend.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, Long> {
-    
+public interface UserRepository extends JpaRepository<User, Long>, UserSettingsReadRepository {
+
+    /**
+     * Loads the full authentication aggregate (roles, permissions, branch) in one query
+     */
+    @EntityGraph(attributePaths = {"roles", "roles.permissions", "branch"})
     Optional<User> findByEmail(String email);
+
+    @EntityGraph(attributePaths = {"roles", "roles.permissions", "branch"})
+    Optional<User> findWithAuthoritiesById(Long id);
     
     Optional<User> findByUsername(String username);
     
@@ -16,4 +28,33 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByEmail(String email);
     
     boolean existsByUsername(String username);
+
+    /**
+     * Update only the denormalized MFA flag, leaving the rest of the row untouched.
+     * Bulk updates bypass @Version, so each of them bumps the version itself.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.mfaEnabled = :enabled, u.version = u.version + 1 WHERE u.id = :userId")
+    void updateMfaEnabled(Long userId, boolean enabled);
+
+    /**
+     * Set a new password and clear any lockout, only if the password is still the one the
+     * reset token was issued for. Returns 0 when the token was already spent.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newHash, u.failedLoginAttempts = 0, u.accountLocked = false, " +
+            "u.lockedUntil = null, u.updatedAt = :now, u.version = u.version + 1 " +
+            "WHERE u.id = :userId AND u.password = :currentHash")
+    int resetPasswordIfUnchanged(Long userId, String currentHash, String newHash, LocalDateTime now);
+
+    /**
+     * Mark the email verified and enable the account, only if this email is still unverified
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.emailVerified = true, u.emailVerifiedAt = :now, u.enabled = true, u.updatedAt = :now, " +
+            "u.version = u.version + 1 WHERE u.id = :userId AND u.email = :email AND u.emailVerified = false")
+    int verifyEmailIfUnverified(Long userId, String email, LocalDateTime now);
 }
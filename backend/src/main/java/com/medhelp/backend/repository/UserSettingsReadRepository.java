@@ -0,0 +1,20 @@
+package com.medhelp.backend.repository;
+
+import com.medhelp.backend.model.NotificationSettings;
+import com.medhelp.backend.model.PrivacySettings;
+import com.medhelp.backend.model.UserPreferences;
+
+import java.util.Optional;
+
+public interface UserSettingsReadRepository {
+
+    /**
+     * The user's preferences, notification and privacy settings in one query. A section is
+     * null when the user has no row for it yet. Empty when there is no such user.
+     */
+    Optional<UserSettingsRow> findSettingsByEmail(String email);
+
+    record UserSettingsRow(Long userId, UserPreferences preferences, NotificationSettings notifications,
+            PrivacySettings privacy) {
+    }
+}
@@ -0,0 +1,98 @@
+package com.medhelp.backend.repository;
+
+import com.medhelp.backend.model.NotificationSettings;
+import com.medhelp.backend.model.PrivacySettings;
+import com.medhelp.backend.model.UserPreferences;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Read model for the settings screen: the user and the three settings rows joined by
+ * user_id (each unique and indexed), instead of one query per section. Rows are mapped
+ * to detached entities, so the response has the same shape as the per-section endpoints.
+ */
+@RequiredArgsConstructor
+class UserSettingsReadRepositoryImpl implements UserSettingsReadRepository {
+
+    private static final String FIND_SETTINGS = """
+            SELECT u.id,
+                   p.id, p.language, p.timezone, p.date_format, p.time_format, p.theme, p.default_branch_id,
+                   p.created_at, p.updated_at,
+                   n.id, n.flags, n.created_at, n.updated_at,
+                   s.id, s.share_data_with_partners, s.marketing_communications, s.profile_visibility,
+                   s.show_online_status, s.created_at, s.updated_at,
+                   p.version, n.version, s.version
+            FROM users u
+            LEFT JOIN user_preferences p ON p.user_id = u.id
+            LEFT JOIN notification_settings n ON n.user_id = u.id
+            LEFT JOIN privacy_settings s ON s.user_id = u.id
+            WHERE u.email = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public Optional<UserSettingsRow> findSettingsByEmail(String email) {
+        return jdbcTemplate.query(FIND_SETTINGS, (rs, rowNum) -> new UserSettingsRow(rs.getLong(1),
+                        preferences(rs), notifications(rs), privacy(rs)), email)
+                .stream()
+                .findFirst();
+    }
+
+    private static UserPreferences preferences(ResultSet rs) throws SQLException {
+        if (rs.getObject(2) == null) {
+            return null;
+        }
+        return UserPreferences.builder()
+                .id(rs.getLong(2))
+                .language(rs.getString(3))
+                .timezone(rs.getString(4))
+                .dateFormat(rs.getString(5))
+                .timeFormat(rs.getString(6))
+                .theme(rs.getString(7))
+                .defaultBranchId(rs.getObject(8, Long.class))
+                .createdAt(toLocalDateTime(rs.getTimestamp(9)))
+                .updatedAt(toLocalDateTime(rs.getTimestamp(10)))
+                .version(rs.getLong(22))
+                .build();
+    }
+
+    private static NotificationSettings notifications(ResultSet rs) throws SQLException {
+        if (rs.getObject(11) == null) {
+            return null;
+        }
+        return NotificationSettings.builder()
+                .id(rs.getLong(11))
+                .flags(rs.getInt(12))
+                .createdAt(toLocalDateTime(rs.getTimestamp(13)))
+                .updatedAt(toLocalDateTime(rs.getTimestamp(14)))
+                .version(rs.getLong(23))
+                .build();
+    }
+
+    private static PrivacySettings privacy(ResultSet rs) throws SQLException {
+        if (rs.getObject(15) == null) {
+            return null;
+        }
+        return PrivacySettings.builder()
+                .id(rs.getLong(15))
+                .shareDataWithPartners(rs.getBoolean(16))
+                .marketingCommunications(rs.getBoolean(17))
+                .profileVisibility(rs.getBoolean(18))
+                .showOnlineStatus(rs.getBoolean(19))
+                .createdAt(toLocalDateTime(rs.getTimestamp(20)))
+                .updatedAt(toLocalDateTime(rs.getTimestamp(21)))
+                .version(rs.getLong(24))
+                .build();
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -7,22 +7,22 @@ import com.medhelp.backend.repository.RoleRepository;
 import com.medhelp.backend.security.JwtUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.authentication.LockedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -43,6 +43,10 @@ public class AuthenticationService {
     private final RateLimitService rateLimitService;
     private final DeviceService deviceService;
     private final EmailService emailService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final RefreshIdempotencyCache refreshIdempotencyCache;
+    private final MfaSessionStore mfaSessionStore;
+    private final LoginRiskEngine loginRiskEngine;
 
     @Value("${application.auth.lock-duration-minutes:30}")
     private int lockDurationMinutes;
@@ -50,9 +54,6 @@ public class AuthenticationService {
     @Value("${application.auth.email-verification.enabled:false}")
     private boolean emailVerificationEnabled;
 
-    // Temporary storage for MFA sessions (in production, use Redis)
-    private final Map<String, PendingMfaSession> pendingMfaSessions = new ConcurrentHashMap<>();
-
     /**
      * Register new user
      */
@@ -137,41 +138,44 @@ public class AuthenticationService {
 
     /**
      * Authenticate user (login)
+     *
+     * The whole flow runs in one transaction against a single fetch of the user aggregate
+     * (the principal loaded by the authentication provider). Authentication failures do not
+     * roll back, so failed attempts and lockouts are persisted.
      */
-    @Transactional
+    @Transactional(noRollbackFor = AuthenticationException.class)
     public LoginResponse login(LoginRequest request, HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
         String email = request.getEmail();
         String ipAddress = getClientIp(httpRequest);
         String userAgent = httpRequest.getHeader("User-Agent");
 
         // Check rate limiting
-        if (rateLimitService.isEmailRateLimited(email) || rateLimitService.isIpRateLimited(ipAddress)) {
+        RateLimitService.LoginRateStatus rateStatus = rateLimitService.checkLoginRate(email, ipAddress);
+        if (rateStatus.limited()) {
             rateLimitService.recordLoginAttempt(email, ipAddress, userAgent, false, "Rate limited");
-            throw new RuntimeException("Too many login attempts. Please try again later.");
+            throw new LockedException("Too many login attempts. Please try again later.");
         }
 
         User user;
         try {
-            // Authenticate
-            authenticationManager.authenticate(
+            // Authenticate - the provider has already loaded the user, reuse it as the principal
+            Authentication authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(email, request.getPassword()));
 
-            user = userService.getUserByEmail(email);
+            user = (User) authentication.getPrincipal();
         } catch (Exception e) {
             // Record failed attempt
             rateLimitService.recordLoginAttempt(email, ipAddress, userAgent, false, "Invalid credentials");
 
-            // Try to get user to update failed attempts
-            try {
-                User failedUser = userService.getUserByEmail(email);
+            // Update failed attempts if the user exists
+            userService.findUserByEmail(email).ifPresent(failedUser -> {
                 boolean isLocked = rateLimitService.handleFailedLogin(failedUser);
                 userService.saveUser(failedUser);
 
                 if (isLocked) {
-                    emailService.sendAccountLockedEmail(failedUser, lockDurationMinutes);
+                    notificationDispatcher.dispatch(new NotificationEvent.AccountLocked(failedUser, lockDurationMinutes));
                 }
-            } catch (Exception ignored) {
-            }
+            });
 
             throw new BadCredentialsException("Invalid email or password");
         }
@@ -179,18 +183,22 @@ public class AuthenticationService {
         // Check if account is locked
         if (!user.isAccountNonLocked()) {
             rateLimitService.recordLoginAttempt(email, ipAddress, userAgent, false, "Account locked");
-            throw new RuntimeException("Account is locked. Please try again later.");
+            throw new LockedException("Account is locked. Please try again later.");
         }
 
         // Check if email is verified
         if (!user.getEmailVerified()) {
-            throw new RuntimeException("Please verify your email before logging in");
+            throw new DisabledException("Please verify your email before logging in");
         }
 
-        // Check if 2FA is enabled
-        if (twoFactorService.is2FAEnabled(user)) {
+        // Check if 2FA is enabled, low-risk logins from trusted devices skip the second factor
+        boolean mfaEnabled = twoFactorService.is2FAEnabled(user);
+        boolean mfaSkipped = mfaEnabled && loginRiskEngine
+                .assess(user, request.getDeviceFingerprint(), ipAddress, rateStatus).isMfaSkippable();
+        if (mfaEnabled && !mfaSkipped) {
             // Create MFA session
-            String sessionId = createMfaSession(user, request.getDeviceFingerprint(), ipAddress, userAgent);
+            String sessionId = mfaSessionStore.create(user.getId(), request.getDeviceFingerprint(), ipAddress,
+                    userAgent);
 
             rateLimitService.recordLoginAttempt(email, ipAddress, userAgent, true, "MFA required");
 
@@ -202,9 +210,10 @@ public class AuthenticationService {
                     .build();
         }
 
-        // Successful login - reset failed attempts
-        rateLimitService.handleSuccessfulLogin(user);
-        userService.saveUser(user);
+        // Successful login - reset failed attempts (only writes when there was lockout state)
+        if (rateLimitService.handleSuccessfulLogin(user)) {
+            userService.saveUser(user);
+        }
 
         // Track device
         deviceService.trackDevice(user, request.getDeviceFingerprint(), ipAddress, userAgent);
@@ -221,9 +230,10 @@ public class AuthenticationService {
         tokenService.setRefreshTokenCookie(httpResponse, refreshToken);
 
         // Record successful login
-        rateLimitService.recordLoginAttempt(email, ipAddress, userAgent, true, null);
+        rateLimitService.recordLoginAttempt(email, ipAddress, userAgent, true,
+                mfaSkipped ? "MFA skipped (low risk)" : null);
 
-        log.info("User logged in: {}", email);
+        log.info("User logged in: {}{}", email, mfaSkipped ? " (2FA skipped on trusted device)" : "");
 
         return LoginResponse.builder()
                 .accessToken(accessToken)
@@ -237,25 +247,25 @@ public class AuthenticationService {
      */
     @Transactional
     public LoginResponse verify2FA(String sessionId, String code, HttpServletResponse httpResponse) {
-        PendingMfaSession session = pendingMfaSessions.get(sessionId);
-
-        if (session == null) {
-            throw new RuntimeException("Invalid or expired session");
-        }
+        MfaSessionStore.PendingMfaSession session = mfaSessionStore.find(sessionId)
+                .orElseThrow(() -> new RuntimeException("Invalid or expired session"));
 
-        User user = session.getUser();
+        User user = userService.getUserWithAuthorities(session.getUserId());
 
         // Validate OTP
         if (!twoFactorService.validateOtp(user, code)) {
             throw new BadCredentialsException("Invalid 2FA code");
         }
 
-        // Remove session
-        pendingMfaSessions.remove(sessionId);
+        // Consume session; a concurrent verification of the same session loses here
+        if (!mfaSessionStore.consume(sessionId)) {
+            throw new RuntimeException("Invalid or expired session");
+        }
 
         // Reset failed attempts
-        rateLimitService.handleSuccessfulLogin(user);
-        userService.saveUser(user);
+        if (rateLimitService.handleSuccessfulLogin(user)) {
+            userService.saveUser(user);
+        }
 
         // Track device
         deviceService.trackDevice(user, session.getDeviceFingerprint(), session.getIpAddress(), session.getUserAgent());
@@ -279,6 +289,9 @@ public class AuthenticationService {
 
     /**
      * Refresh access token
+     *
+     * Deliberately not transactional: the rotation commits in TokenService before its
+     * result is handed to concurrent callers through the idempotency cache.
      */
     public LoginResponse refresh(HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
         Optional<String> refreshTokenOpt = tokenService.getRefreshTokenFromCookie(httpRequest);
@@ -287,39 +300,46 @@ public class AuthenticationService {
             throw new RuntimeException("Refresh token not found");
         }
 
-        String refreshTokenValue = refreshTokenOpt.get();
+        // Concurrent calls with the same token share a single rotation
+        String presentedToken = refreshTokenOpt.get();
+        RefreshIdempotencyCache.RefreshedSession session;
+        try {
+            session = refreshIdempotencyCache.getOrRotate(tokenService.hashToken(presentedToken),
+                    () -> rotateRefreshToken(presentedToken));
+        } catch (RuntimeException e) {
+            tokenService.clearRefreshTokenCookie(httpResponse);
+            throw e;
+        }
+
+        // Set new refresh token cookie
+        tokenService.setRefreshTokenCookie(httpResponse, session.getRefreshToken());
 
-        // Validate and rotate refresh token
-        Optional<RefreshToken> validatedToken = tokenService.validateAndRotate(refreshTokenValue);
+        return session.getResponse();
+    }
 
-        if (validatedToken.isEmpty()) {
-            tokenService.clearRefreshTokenCookie(httpResponse);
+    /**
+     * Validate and rotate refresh token (one conditional update plus one insert) and issue
+     * a new access token. The rotation commits before the result is shared.
+     */
+    private RefreshIdempotencyCache.RefreshedSession rotateRefreshToken(String presentedToken) {
+        Optional<TokenService.RotatedRefreshToken> rotated = tokenService.validateAndRotate(presentedToken);
+
+        if (rotated.isEmpty()) {
             throw new RuntimeException("Invalid or expired refresh token");
         }
 
-        RefreshToken refreshToken = validatedToken.get();
-        User user = refreshToken.getUser();
+        User user = userService.getUserWithAuthorities(rotated.get().getPrevious().getUser().getId());
 
         // Generate new access token
         String newAccessToken = jwtUtils.generateAccessToken(user);
 
-        // The rotation already created a new refresh token, get it
-        // For simplicity, we'll create another one here (in production, optimize this)
-        String newRefreshToken = tokenService.createRefreshToken(user,
-                refreshToken.getDeviceFingerprint(),
-                refreshToken.getIpAddress(),
-                refreshToken.getUserAgent());
-
-        // Set new refresh token cookie
-        tokenService.setRefreshTokenCookie(httpResponse, newRefreshToken);
-
         log.debug("Token refreshed for user: {}", user.getEmail());
 
-        return LoginResponse.builder()
+        return new RefreshIdempotencyCache.RefreshedSession(rotated.get().getToken(), LoginResponse.builder()
                 .accessToken(newAccessToken)
                 .user(mapToUserResponse(user))
                 .mfaRequired(false)
-                .build();
+                .build());
     }
 
     /**
@@ -369,30 +389,12 @@ public class AuthenticationService {
         // Revoke all refresh tokens for security
         tokenService.revokeAllTokensForUser(user);
 
-        // Send confirmation email
-        emailService.sendPasswordChangedEmail(user);
+        // Send confirmation
+        notificationDispatcher.dispatch(new NotificationEvent.PasswordChanged(user));
 
         log.info("Password changed for user: {}", user.getEmail());
     }
 
-    private String createMfaSession(User user, String deviceFingerprint, String ipAddress, String userAgent) {
-        String sessionId = UUID.randomUUID().toString();
-        PendingMfaSession session = new PendingMfaSession(user, deviceFingerprint, ipAddress, userAgent);
-        pendingMfaSessions.put(sessionId, session);
-
-        // Clean up after 5 minutes
-        new Thread(() -> {
-            try {
-                Thread.sleep(300000); // 5 minutes
-                pendingMfaSessions.remove(sessionId);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }).start();
-
-        return sessionId;
-    }
-
     private UserResponse mapToUserResponse(User user) {
         return UserResponse.builder()
                 .id(user.getId())
@@ -416,7 +418,7 @@ public class AuthenticationService {
                 .branchName(user.getBranch() != null ? user.getBranch().getName() : null)
                 .userType(user.getUserType().name())
                 .emailVerified(user.getEmailVerified())
-                .mfaEnabled(twoFactorService.is2FAEnabled(user))
+                .mfaEnabled(user.getMfaEnabled())
                 .build();
     }
 
@@ -427,35 +429,4 @@ public class AuthenticationService {
         }
         return request.getRemoteAddr();
     }
-
-    // Inner class for MFA session
-    private static class PendingMfaSession {
-        private final User user;
-        private final String deviceFingerprint;
-        private final String ipAddress;
-        private final String userAgent;
-
-        public PendingMfaSession(User user, String deviceFingerprint, String ipAddress, String userAgent) {
-            this.user = user;
-            this.deviceFingerprint = deviceFingerprint;
-            this.ipAddress = ipAddress;
-            this.userAgent = userAgent;
-        }
-
-        public User getUser() {
-            return user;
-        }
-
-        public String getDeviceFingerprint() {
-            return deviceFingerprint;
-        }
-
-        public String getIpAddress() {
-            return ipAddress;
-        }
-
-        public String getUserAgent() {
-            return userAgent;
-        }
-    }
 }
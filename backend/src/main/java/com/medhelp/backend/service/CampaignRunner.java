@@ -0,0 +1,254 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.Campaign;
+import com.medhelp.backend.model.EmailOutboxMessage;
+import com.medhelp.backend.repository.CampaignBatchRepository.CampaignRecipient;
+import com.medhelp.backend.repository.CampaignRepository;
+import com.medhelp.backend.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs bulk campaigns in chunks of opted-in recipients.
+ *
+ * A node leases a running campaign, then repeatedly reads the next chunk of recipients
+ * after the campaign's checkpoint (a keyset seek, so memory stays bounded by the chunk
+ * size), renders the chunk in parallel and queues the chunk. Queueing and advancing the checkpoint are one transaction, so a restart or
+ * a takeover by another node resumes exactly after the last queued recipient. The
+ * checkpoint update only matches while the campaign is still running with the expected
+ * checkpoint, which is also how a pause, a cancel or a lost lease stops the loop.
+ *
+ * Email campaigns are queued in the email outbox, whose workers hold sends to the
+ * provider rate. Queueing pauses while the outbox backlog is above max-outbox-backlog, so
+ * transactional mail is never stuck behind a whole campaign.
+ */
+@Slf4j
+@Component
+public class CampaignRunner {
+
+    private final CampaignRepository campaignRepository;
+    private final EmailOutboxRepository outboxRepository;
+    private final EmailTemplateRenderer templateRenderer;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private volatile boolean running;
+    private Semaphore slots;
+    private ExecutorService campaignThreads;
+    private ExecutorService renderThreads;
+
+    @Value("${application.mail.frontend-url}")
+    private String frontendUrl;
+
+    @Value("${application.campaign.concurrency:2}")
+    private int concurrency;
+
+    @Value("${application.campaign.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${application.campaign.render-threads:4}")
+    private int renderThreadCount;
+
+    @Value("${application.campaign.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${application.campaign.max-outbox-backlog:5000}")
+    private long maxOutboxBacklog;
+
+    public CampaignRunner(CampaignRepository campaignRepository, EmailOutboxRepository outboxRepository,
+            EmailTemplateRenderer templateRenderer, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.campaignRepository = campaignRepository;
+        this.outboxRepository = outboxRepository;
+        this.templateRenderer = templateRenderer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Start the thread pools and resume campaigns left running by a previous run
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        slots = new Semaphore(concurrency);
+        campaignThreads = Executors.newFixedThreadPool(concurrency, daemonThreads("campaign-"));
+        renderThreads = Executors.newFixedThreadPool(renderThreadCount, daemonThreads("campaign-render-"));
+        running = true;
+        poll();
+    }
+
+    /**
+     * Stop after the chunk in hand and hand the leases back, so a restart resumes at once
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (campaignThreads != null) {
+            campaignThreads.shutdown();
+            if (!campaignThreads.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Campaign threads did not stop within 30 seconds");
+            }
+            renderThreads.shutdownNow();
+        }
+    }
+
+    /**
+     * Pick up campaigns that were just started, called after the start commits
+     */
+    public void wakeUp() {
+        poll();
+    }
+
+    /**
+     * Lease runnable campaigns while there are free slots (runs every 15 seconds). This
+     * also takes over campaigns whose node stopped without handing its lease back.
+     */
+    @Scheduled(fixedDelayString = "${application.campaign.poll-interval-ms:15000}")
+    public synchronized void poll() {
+        if (!running) {
+            return;
+        }
+        while (slots.tryAcquire()) {
+            LocalDateTime now = LocalDateTime.now();
+            Optional<Campaign> claimed = campaignRepository.claimRunnable(now, now.plusSeconds(leaseSeconds));
+            if (claimed.isEmpty()) {
+                slots.release();
+                return;
+            }
+            Campaign campaign = claimed.get();
+            campaignThreads.submit(() -> {
+                try {
+                    run(campaign);
+                } finally {
+                    slots.release();
+                }
+            });
+        }
+    }
+
+    void run(Campaign campaign) {
+        if (campaign.getChannel() != Campaign.Channel.EMAIL) {
+            log.error("No {} provider is configured, pausing campaign {}", campaign.getChannel(), campaign.getId());
+            campaignRepository.transition(campaign.getId(), List.of(Campaign.Status.RUNNING), Campaign.Status.PAUSED);
+            return;
+        }
+
+        log.info("Running campaign {} from user id {}", campaign.getId(), campaign.getLastUserId());
+        long lastUserId = campaign.getLastUserId();
+        try {
+            while (running) {
+                awaitOutboxBacklog();
+                List<CampaignRecipient> recipients = campaignRepository.findRecipients(
+                        campaign.getChannel(), campaign.getTopic(), lastUserId, chunkSize);
+                if (recipients.isEmpty()) {
+                    campaignRepository.complete(campaign.getId());
+                    log.info("Campaign {} completed", campaign.getId());
+                    return;
+                }
+
+                List<EmailOutboxMessage> messages = renderEmails(campaign, recipients);
+                long nextUserId = recipients.get(recipients.size() - 1).userId();
+                if (!queueChunk(campaign.getId(), lastUserId, nextUserId, messages)) {
+                    log.info("Campaign {} was paused, cancelled or taken over, stopping", campaign.getId());
+                    return;
+                }
+                meterRegistry.counter("campaign.queued", "channel", campaign.getChannel().name())
+                        .increment(messages.size());
+                lastUserId = nextUserId;
+            }
+            campaignRepository.releaseLease(campaign.getId());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            campaignRepository.releaseLease(campaign.getId());
+        } catch (RuntimeException | ExecutionException e) {
+            // The lease runs out and the campaign is retried from its checkpoint
+            log.error("Campaign {} failed at user id {}", campaign.getId(), lastUserId, e);
+        }
+    }
+
+    private boolean queueChunk(Long campaignId, long lastUserId, long nextUserId, List<EmailOutboxMessage> messages) {
+        Boolean queued = transactionTemplate.execute(status -> {
+            int updated = campaignRepository.checkpoint(campaignId, lastUserId, nextUserId, messages.size(),
+                    LocalDateTime.now().plusSeconds(leaseSeconds));
+            if (updated == 0) {
+                return false;
+            }
+            outboxRepository.insertAll(messages);
+            return true;
+        });
+        return Boolean.TRUE.equals(queued);
+    }
+
+    private void awaitOutboxBacklog() throws InterruptedException {
+        while (running && outboxRepository.countByStatus(EmailOutboxMessage.Status.PENDING) > maxOutboxBacklog) {
+            TimeUnit.SECONDS.sleep(1);
+        }
+    }
+
+    // Slices rendered in parallel, results kept in recipient order
+    private List<EmailOutboxMessage> renderEmails(Campaign campaign, List<CampaignRecipient> recipients)
+            throws InterruptedException, ExecutionException {
+        int sliceSize = Math.max(1, (recipients.size() + renderThreadCount - 1) / renderThreadCount);
+        List<Future<List<EmailOutboxMessage>>> slices = new ArrayList<>();
+        for (int from = 0; from < recipients.size(); from += sliceSize) {
+            List<CampaignRecipient> slice = recipients.subList(from, Math.min(from + sliceSize, recipients.size()));
+            slices.add(renderThreads.submit(() -> slice.stream()
+                    .map(recipient -> renderEmail(campaign, recipient))
+                    .toList()));
+        }
+
+        List<EmailOutboxMessage> messages = new ArrayList<>(recipients.size());
+        for (Future<List<EmailOutboxMessage>> slice : slices) {
+            messages.addAll(slice.get());
+        }
+        return messages;
+    }
+
+    private EmailOutboxMessage renderEmail(Campaign campaign, CampaignRecipient recipient) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", recipient.username() != null ? recipient.username() : recipient.email());
+        variables.put("subject", campaign.getSubject());
+        variables.put("body", campaign.getBody());
+        variables.put("preferencesUrl", frontendUrl + "/settings/notifications");
+
+        Locale locale = recipient.language() != null ? Locale.forLanguageTag(recipient.language()) : Locale.ENGLISH;
+        return EmailOutboxMessage.builder()
+                .recipient(recipient.email())
+                .subject(campaign.getSubject())
+                .bodyHtml(templateRenderer.render("email/campaign", locale, variables))
+                .build();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,98 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.dto.CampaignRequest;
+import com.medhelp.backend.model.Campaign;
+import com.medhelp.backend.model.User;
+import com.medhelp.backend.repository.CampaignRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Admin operations on campaigns. Sending is done by {@link CampaignRunner}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CampaignService {
+
+    private final CampaignRepository campaignRepository;
+    private final CampaignRunner campaignRunner;
+
+    public List<Campaign> getCampaigns() {
+        return campaignRepository.findAllByOrderByCreatedAtDesc();
+    }
+
+    public Campaign getCampaign(Long id) {
+        return campaignRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Campaign not found"));
+    }
+
+    @Transactional
+    public Campaign createCampaign(CampaignRequest request, User admin) {
+        if (request.getChannel() != Campaign.Channel.EMAIL) {
+            throw new RuntimeException("No " + request.getChannel() + " provider is configured");
+        }
+
+        Campaign campaign = campaignRepository.save(Campaign.builder()
+                .name(request.getName())
+                .channel(request.getChannel())
+                .topic(request.getTopic())
+                .subject(request.getSubject())
+                .body(request.getBody())
+                .createdBy(admin.getId())
+                .build());
+        log.info("Campaign {} created by {}", campaign.getId(), admin.getEmail());
+        return campaign;
+    }
+
+    /**
+     * Start a draft, or resume a paused campaign from its checkpoint
+     */
+    @Transactional
+    public Campaign startCampaign(Long id) {
+        if (campaignRepository.start(id, List.of(Campaign.Status.DRAFT, Campaign.Status.PAUSED)) == 0) {
+            throw new RuntimeException("Only draft or paused campaigns can be started");
+        }
+        wakeRunnerAfterCommit();
+        log.info("Campaign {} started", id);
+        return getCampaign(id);
+    }
+
+    /**
+     * Pause a running campaign; the runner stops at its next checkpoint
+     */
+    @Transactional
+    public Campaign pauseCampaign(Long id) {
+        if (campaignRepository.transition(id, List.of(Campaign.Status.RUNNING), Campaign.Status.PAUSED) == 0) {
+            throw new RuntimeException("Only running campaigns can be paused");
+        }
+        log.info("Campaign {} paused", id);
+        return getCampaign(id);
+    }
+
+    @Transactional
+    public Campaign cancelCampaign(Long id) {
+        if (campaignRepository.transition(id,
+                List.of(Campaign.Status.DRAFT, Campaign.Status.RUNNING, Campaign.Status.PAUSED),
+                Campaign.Status.CANCELLED) == 0) {
+            throw new RuntimeException("Only draft, running or paused campaigns can be cancelled");
+        }
+        log.info("Campaign {} cancelled", id);
+        return getCampaign(id);
+    }
+
+    private void wakeRunnerAfterCommit() {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                campaignRunner.wakeUp();
+            }
+        });
+    }
+}
@@ -0,0 +1,98 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.repository.AuthDeviceBatchRepository.DeviceSighting;
+import com.medhelp.backend.repository.AuthDeviceRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind buffer for device last-seen updates.
+ *
+ * Logins only record the sighting in memory; repeated logins from the same device
+ * coalesce into one entry holding the latest sighting. The buffer is flushed as a single
+ * batched update on a fixed delay and once more on shutdown. The flush only updates
+ * existing devices, so a sighting of a device removed meanwhile, on any node, is
+ * dropped. Sightings that fail to flush are put back and retried with the next flush.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeviceActivityBuffer {
+
+    private final AuthDeviceRepository deviceRepository;
+
+    private final Map<DeviceKey, DeviceSighting> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Record a login from a known device, keeping only the latest sighting per device
+     */
+    public void record(DeviceSighting sighting) {
+        pending.merge(new DeviceKey(sighting.userId(), sighting.deviceFingerprint()), sighting,
+                DeviceActivityBuffer::latest);
+    }
+
+    /**
+     * Drop a pending sighting of a removed device, which the next flush would skip anyway
+     */
+    public void discard(Long userId, String deviceFingerprint) {
+        pending.remove(new DeviceKey(userId, deviceFingerprint));
+    }
+
+    /**
+     * Write all pending sightings in one batch (runs every few seconds)
+     */
+    @Scheduled(fixedDelayString = "${application.auth.device.flush-interval-ms:5000}")
+    public void flush() {
+        List<DeviceSighting> batch = drain();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            deviceRepository.updateLastSeen(batch);
+            log.debug("Flushed {} device sightings", batch.size());
+        } catch (RuntimeException e) {
+            batch.forEach(this::record);
+            log.warn("Failed to flush {} device sightings, will retry: {}", batch.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+        if (!pending.isEmpty()) {
+            log.error("Lost {} device sightings on shutdown", pending.size());
+        }
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    // Removing key by key means a sighting recorded mid-drain lands in this batch or the next
+    private List<DeviceSighting> drain() {
+        List<DeviceSighting> batch = new ArrayList<>(pending.size());
+        for (DeviceKey key : pending.keySet()) {
+            DeviceSighting sighting = pending.remove(key);
+            if (sighting != null) {
+                batch.add(sighting);
+            }
+        }
+        return batch;
+    }
+
+    private static DeviceSighting latest(DeviceSighting a, DeviceSighting b) {
+        return b.seenAt().isBefore(a.seenAt()) ? a : b;
+    }
+
+    private record DeviceKey(Long userId, String deviceFingerprint) {
+    }
+}
@@ -2,6 +2,7 @@ package com.medhelp.backend.service;
 
 import com.medhelp.backend.model.AuthDevice;
 import com.medhelp.backend.model.User;
+import com.medhelp.backend.repository.AuthDeviceBatchRepository.DeviceSighting;
 import com.medhelp.backend.repository.AuthDeviceRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -18,39 +19,42 @@ import java.util.Optional;
 public class DeviceService {
 
     private final AuthDeviceRepository deviceRepository;
-    private final EmailService emailService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final DeviceActivityBuffer deviceActivityBuffer;
+    private final UserAgentService userAgentService;
 
     /**
      * Track device login
+     *
+     * First-seen detection stays synchronous: one insert-if-absent decides whether this is
+     * a new device and triggers the alert. Last-seen updates of known devices are handed to
+     * the write-behind buffer. Returns true if the device was seen for the first time.
      */
-    @Transactional
-    public AuthDevice trackDevice(User user, String deviceFingerprint, String ipAddress, String userAgent) {
-        Optional<AuthDevice> existingDevice = deviceRepository.findByUserAndDeviceFingerprint(user, deviceFingerprint);
-
-        if (existingDevice.isPresent()) {
-            // Update existing device
-            AuthDevice device = existingDevice.get();
-            device.updateLastSeen(ipAddress, userAgent);
-            return deviceRepository.save(device);
-        } else {
-            // New device - create and send alert
-            AuthDevice newDevice = AuthDevice.builder()
-                    .user(user)
-                    .deviceFingerprint(deviceFingerprint)
-                    .deviceName(extractDeviceName(userAgent))
-                    .lastIp(ipAddress)
-                    .lastUserAgent(userAgent)
-                    .isTrusted(false)
-                    .build();
+    public boolean trackDevice(User user, String deviceFingerprint, String ipAddress, String userAgent) {
+        String deviceName = userAgentService.parse(userAgent).displayName();
+        Long userAgentId = userAgentService.intern(userAgent);
+        Optional<Long> newDeviceId = deviceRepository.insertIfAbsent(user.getId(), deviceFingerprint, deviceName,
+                ipAddress, userAgentId);
+
+        if (newDeviceId.isEmpty()) {
+            deviceActivityBuffer.record(new DeviceSighting(user.getId(), deviceFingerprint, ipAddress, userAgentId,
+                    LocalDateTime.now()));
+            return false;
+        }
 
-            AuthDevice saved = deviceRepository.save(newDevice);
+        // New device - send alert
+        notificationDispatcher.dispatch(
+                new NotificationEvent.NewDeviceLogin(user, deviceName, ipAddress, LocalDateTime.now()));
 
-            // Send new device alert email
-            emailService.sendNewDeviceLoginAlert(user, saved.getDeviceName(), ipAddress, LocalDateTime.now());
+        log.info("New device registered for user: {}", user.getEmail());
+        return true;
+    }
 
-            log.info("New device registered for user: {}", user.getEmail());
-            return saved;
-        }
+    /**
+     * Find one device of a user
+     */
+    public Optional<AuthDevice> findDevice(User user, String deviceFingerprint) {
+        return deviceRepository.findByUserAndDeviceFingerprint(user, deviceFingerprint);
     }
 
     /**
@@ -82,32 +86,9 @@ public class DeviceService {
         deviceRepository.findById(deviceId).ifPresent(device -> {
             if (device.getUser().getId().equals(user.getId())) {
                 deviceRepository.delete(device);
+                deviceActivityBuffer.discard(user.getId(), device.getDeviceFingerprint());
                 log.info("Device {} removed for user: {}", deviceId, user.getEmail());
             }
         });
     }
-
-    /**
-     * Extract device name from user agent
-     */
-    private String extractDeviceName(String userAgent) {
-        if (userAgent == null) {
-            return "Unknown Device";
-        }
-
-        userAgent = userAgent.toLowerCase();
-
-        // Mobile devices
-        if (userAgent.contains("iphone")) return "iPhone";
-        if (userAgent.contains("ipad")) return "iPad";
-        if (userAgent.contains("android")) return "Android Device";
-
-        // Browsers
-        if (userAgent.contains("chrome")) return "Chrome Browser";
-        if (userAgent.contains("firefox")) return "Firefox Browser";
-        if (userAgent.contains("safari")) return "Safari Browser";
-        if (userAgent.contains("edge")) return "Edge Browser";
-
-        return "Web Browser";
-    }
 }
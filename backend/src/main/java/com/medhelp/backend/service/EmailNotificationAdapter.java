@@ -0,0 +1,39 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.User;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Email channel: queues the events' email in the outbox, which handles SMTP delivery.
+ * Security alerts go through the {@link SecurityAlertCoalescer}, so a burst of them
+ * reaches the user as one digest.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EmailNotificationAdapter implements NotificationChannelAdapter {
+
+    private final SecurityAlertCoalescer securityAlertCoalescer;
+
+    @Override
+    public NotificationChannel channel() {
+        return NotificationChannel.EMAIL;
+    }
+
+    @Override
+    public Optional<LocalDateTime> send(User user, List<NotificationEvent> events) {
+        List<NotificationEvent> alerts = events.stream()
+                .filter(event -> event.type() == NotificationType.SECURITY_ALERT)
+                .toList();
+        if (alerts.size() < events.size()) {
+            log.warn("No email for {} notifications of user {}", events.size() - alerts.size(), user.getId());
+        }
+        return alerts.isEmpty() ? Optional.empty() : securityAlertCoalescer.send(user, alerts);
+    }
+}
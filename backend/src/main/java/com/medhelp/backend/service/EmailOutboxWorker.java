@@ -0,0 +1,322 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.EmailOutboxMessage;
+import com.medhelp.backend.repository.EmailOutboxRepository;
+import com.medhelp.backend.util.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers the email outbox with a fixed pool of worker threads.
+ *
+ * Each worker claims a small batch of due messages, sends them over one pooled SMTP
+ * connection and deletes the ones that went out. A failed message is retried with
+ * exponential backoff and jitter until max-attempts, then kept as a DEAD letter. A claim
+ * is a lease: if the node dies mid-send the message becomes due again once the lease runs
+ * out, so delivery is at-least-once. A slow batch renews the lease on its unsent messages
+ * once half of it has passed, and skips any it no longer holds, so a live worker never
+ * races another over the same message. All workers of a node share one token bucket
+ * that holds sends to this node's share of the provider rate, whatever queued the mail.
+ * Idle workers poll, and are woken early when a transaction commits mail.
+ */
+@Slf4j
+@Component
+public class EmailOutboxWorker {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final EmailOutboxRepository outboxRepository;
+    private final SmtpTransportPool transportPool;
+    private final TokenBucket rateLimiter;
+
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter deadCounter;
+    private final Timer sendTimer;
+    private final Timer deliveryLatency;
+    private final AtomicLong pendingDepth = new AtomicLong();
+    private final AtomicLong deadDepth = new AtomicLong();
+
+    private final Object wakeUpSignal = new Object();
+    private volatile boolean running;
+    private ExecutorService workers;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${application.email.from-name:MedHelp}")
+    private String fromName;
+
+    @Value("${application.email.outbox.workers:4}")
+    private int workerCount;
+
+    @Value("${application.email.outbox.batch-size:10}")
+    private int batchSize;
+
+    @Value("${application.email.outbox.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+
+    @Value("${application.email.outbox.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${application.email.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${application.email.outbox.backoff-base-seconds:30}")
+    private long backoffBaseSeconds;
+
+    @Value("${application.email.outbox.backoff-max-seconds:3600}")
+    private long backoffMaxSeconds;
+
+    public EmailOutboxWorker(EmailOutboxRepository outboxRepository, SmtpTransportPool transportPool,
+            MeterRegistry meterRegistry,
+            @Value("${application.email.outbox.rate-per-second:50}") double ratePerSecond) {
+        this.outboxRepository = outboxRepository;
+        this.transportPool = transportPool;
+        this.rateLimiter = new TokenBucket(ratePerSecond, Math.max(1, ratePerSecond));
+        this.sentCounter = meterRegistry.counter("email.outbox.sent");
+        this.retriedCounter = meterRegistry.counter("email.outbox.retried");
+        this.deadCounter = meterRegistry.counter("email.outbox.dead");
+        this.sendTimer = meterRegistry.timer("email.outbox.send");
+        this.deliveryLatency = meterRegistry.timer("email.outbox.delivery.latency");
+        meterRegistry.gauge("email.outbox.depth.pending", pendingDepth);
+        meterRegistry.gauge("email.outbox.depth.dead", deadDepth);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        AtomicInteger threadNumber = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "email-outbox-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.submit(this::runWorker);
+        }
+        log.info("Started {} email outbox workers", workerCount);
+    }
+
+    /**
+     * Let workers finish the batch in hand; unsent claims become due again after the lease
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        wakeUp();
+        if (workers != null) {
+            workers.shutdown();
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Email outbox workers did not stop within 30 seconds");
+            }
+        }
+    }
+
+    /**
+     * Wake idle workers, called after a transaction that queued mail commits
+     */
+    public void wakeUp() {
+        synchronized (wakeUpSignal) {
+            wakeUpSignal.notifyAll();
+        }
+    }
+
+    /**
+     * Refresh the queue depth gauges (runs every 30 seconds)
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void refreshDepthMetrics() {
+        pendingDepth.set(outboxRepository.countByStatus(EmailOutboxMessage.Status.PENDING));
+        deadDepth.set(outboxRepository.countByStatus(EmailOutboxMessage.Status.DEAD));
+    }
+
+    /**
+     * Drop dead letters older than 30 days (runs daily at 6 AM)
+     */
+    @Scheduled(cron = "0 0 6 * * *")
+    public void cleanupDeadLetters() {
+        int deleted = outboxRepository.deleteDeadOlderThan(LocalDateTime.now().minusDays(30));
+        log.info("Cleaned up {} dead email outbox messages", deleted);
+    }
+
+    /**
+     * Claim and deliver one batch. Returns the number of messages claimed.
+     */
+    int processBatch() throws InterruptedException {
+        ClaimedBatch claim = new ClaimedBatch(LocalDateTime.now());
+        List<EmailOutboxMessage> batch = outboxRepository.claimDue(claim.claimedAt, claim.leaseUntil, batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        batch.forEach(message -> claim.held.add(message.getId()));
+
+        try (SmtpTransportPool.Lease connection = transportPool.borrow()) {
+            for (int i = 0; i < batch.size(); i++) {
+                EmailOutboxMessage message = batch.get(i);
+                rateLimiter.acquire(1);
+                if (claim.isHalfOver()) {
+                    claim.renew(batch.subList(i, batch.size()));
+                }
+                if (claim.held.contains(message.getId())) {
+                    deliver(connection, message);
+                } else {
+                    log.warn("Lost the lease on email {} before sending it, leaving it to its new owner",
+                            message.getId());
+                }
+            }
+        } catch (MessagingException e) {
+            batch.forEach(message -> handleFailure(message, e));
+        }
+        return batch.size();
+    }
+
+    private void runWorker() {
+        while (running) {
+            try {
+                if (processBatch() == 0) {
+                    awaitWork();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Email outbox worker failed to claim messages", e);
+                try {
+                    awaitWork();
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void awaitWork() throws InterruptedException {
+        synchronized (wakeUpSignal) {
+            if (running) {
+                wakeUpSignal.wait(pollIntervalMs);
+            }
+        }
+    }
+
+    private void deliver(SmtpTransportPool.Lease connection, EmailOutboxMessage message) {
+        try {
+            sendTimer.recordCallable(() -> {
+                connection.send(buildHtmlEmail(message.getRecipient(), message.getSubject(), message.getBodyHtml()));
+                return null;
+            });
+        } catch (Exception e) {
+            handleFailure(message, e);
+            return;
+        }
+
+        outboxRepository.deleteDelivered(message.getId());
+        sentCounter.increment();
+        deliveryLatency.record(Duration.between(message.getCreatedAt(), LocalDateTime.now()));
+        log.info("Sent email \"{}\" to: {}", message.getSubject(), message.getRecipient());
+    }
+
+    private void handleFailure(EmailOutboxMessage message, Exception e) {
+        String error = truncate(e.getClass().getSimpleName() + ": " + e.getMessage());
+        if (message.getAttempts() >= maxAttempts) {
+            outboxRepository.markDead(message.getId(), error);
+            deadCounter.increment();
+            log.error("Giving up on email \"{}\" to {} after {} attempts: {}",
+                    message.getSubject(), message.getRecipient(), message.getAttempts(), error);
+            return;
+        }
+
+        outboxRepository.reschedule(message.getId(), LocalDateTime.now().plus(backoff(message.getAttempts())), error);
+        retriedCounter.increment();
+        log.warn("Failed to send email \"{}\" to {} (attempt {}), will retry: {}",
+                message.getSubject(), message.getRecipient(), message.getAttempts(), error);
+    }
+
+    // Exponential backoff with up to 20% jitter so a failed burst does not retry in lockstep
+    Duration backoff(int attempts) {
+        long seconds = Math.min(backoffBaseSeconds << Math.min(attempts - 1, 20), backoffMaxSeconds);
+        long jitterMillis = ThreadLocalRandom.current().nextLong(seconds * 200 + 1);
+        return Duration.ofSeconds(seconds).plusMillis(jitterMillis);
+    }
+
+    private MimeMessage buildHtmlEmail(String to, String subject, String htmlContent) throws MessagingException {
+        MimeMessage message = transportPool.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message,
+                MimeMessageHelper.MULTIPART_MODE_MIXED_RELATED,
+                StandardCharsets.UTF_8.name());
+
+        try {
+            helper.setFrom(fromEmail, fromName);
+        } catch (UnsupportedEncodingException e) {
+            helper.setFrom(fromEmail); // Fallback if encoding is not supported
+            log.warn(
+                    "UnsupportedEncodingException when setting 'from' address for email to {}. Using plain email address.",
+                    to, e);
+        }
+        helper.setTo(to);
+        helper.setSubject(subject);
+        helper.setText(htmlContent, true);
+        return message;
+    }
+
+    /**
+     * Lease on one claimed batch. Lease ends are kept to the millisecond so they compare
+     * equal to what the database stored, which is how a renewal recognizes its own claim.
+     */
+    private class ClaimedBatch {
+        private final LocalDateTime claimedAt;
+        private final Set<Long> held = new HashSet<>();
+        private LocalDateTime leaseUntil;
+        private long renewAtNanos;
+
+        ClaimedBatch(LocalDateTime now) {
+            this.claimedAt = now.truncatedTo(ChronoUnit.MILLIS);
+            this.leaseUntil = claimedAt.plusSeconds(leaseSeconds);
+            this.renewAtNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(leaseSeconds) / 2;
+        }
+
+        boolean isHalfOver() {
+            return System.nanoTime() - renewAtNanos >= 0;
+        }
+
+        void renew(List<EmailOutboxMessage> unsent) {
+            LocalDateTime renewed = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS).plusSeconds(leaseSeconds);
+            List<Long> renewedIds = outboxRepository.renewLease(
+                    unsent.stream().map(EmailOutboxMessage::getId).toList(), leaseUntil, renewed);
+            held.retainAll(renewedIds);
+            leaseUntil = renewed;
+            renewAtNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(leaseSeconds) / 2;
+        }
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -1,166 +1,155 @@
 package com.medhelp.backend.service;
 
+import com.medhelp.backend.model.EmailOutboxMessage;
 import com.medhelp.backend.model.User;
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
+import com.medhelp.backend.repository.EmailOutboxRepository;
+import com.medhelp.backend.repository.UserPreferencesRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.context.Context;
-import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.io.UnsupportedEncodingException;
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Renders emails and queues them in the email outbox.
+ *
+ * The outbox row is written in the caller's transaction, so an email goes out if and
+ * only if the change that triggered it commits, and the request never waits for SMTP.
+ * Delivery is done by {@link EmailOutboxWorker}. Templates are rendered in the language
+ * from the recipient's preferences by {@link EmailTemplateRenderer}.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class EmailService {
 
-    private final JavaMailSender mailSender;
-    private final SpringTemplateEngine templateEngine;
+    private final EmailTemplateRenderer templateRenderer;
+    private final UserPreferencesRepository userPreferencesRepository;
+    private final EmailOutboxRepository outboxRepository;
+    private final EmailOutboxWorker outboxWorker;
 
     @Value("${spring.mail.username}")
     private String fromEmail;
 
-    @Value("${application.email.from-name:MedHelp}")
-    private String fromName;
-
     @Value("${application.mail.frontend-url}")
     private String frontendUrl;
 
-    @Async
     public void sendWelcomeEmail(User user) {
-        try {
-            Context context = new Context();
-            context.setVariable("userName", user.getUsername() != null ? user.getUsername() : user.getEmail());
-            context.setVariable("email", user.getEmail());
-
-            String subject = "Welcome to MedHelp!";
-            String htmlContent = templateEngine.process("email/welcome", context);
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", user.getUsername() != null ? user.getUsername() : user.getEmail());
+        variables.put("email", user.getEmail());
 
-            sendHtmlEmail(user.getEmail(), subject, htmlContent);
-            log.info("Sent welcome email to: {}", user.getEmail());
-        } catch (Exception e) {
-            log.error("Failed to send welcome email to: {}", user.getEmail(), e);
-        }
+        queue(user, "Welcome to MedHelp!", "email/welcome", variables);
     }
 
-    @Async
     public void sendVerificationEmail(User user, String token) {
-        try {
-            Context context = new Context();
-            context.setVariable("userName", user.getUsername() != null ? user.getUsername() : user.getEmail());
-            context.setVariable("verificationLink", frontendUrl + "/auth/verify-email?token=" + token);
-            context.setVariable("expiryHours", 24);
-
-            String subject = "Verify Your Email Address";
-            String htmlContent = templateEngine.process("email/verify-email", context);
-
-            sendHtmlEmail(user.getEmail(), subject, htmlContent);
-            log.info("Sent verification email to: {}", user.getEmail());
-        } catch (Exception e) {
-            log.error("Failed to send verification email to: {}", user.getEmail(), e);
-        }
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", user.getUsername() != null ? user.getUsername() : user.getEmail());
+        variables.put("verificationLink", frontendUrl + "/auth/verify-email?token=" + token);
+        variables.put("expiryHours", 24);
+
+        queue(user, "Verify Your Email Address", "email/verify-email", variables);
     }
 
-    @Async
     public void sendPasswordResetEmail(User user, String token) {
-        try {
-            Context context = new Context();
-            context.setVariable("userName", user.getUsername() != null ? user.getUsername() : user.getEmail());
-            context.setVariable("resetLink", frontendUrl + "/auth/reset-password?token=" + token);
-            context.setVariable("expiryHours", 1);
-
-            String subject = "Reset Your Password";
-            String htmlContent = templateEngine.process("email/reset-password", context);
-
-            sendHtmlEmail(user.getEmail(), subject, htmlContent);
-            log.info("Sent password reset email to: {}", user.getEmail());
-        } catch (Exception e) {
-            log.error("Failed to send password reset email to: {}", user.getEmail(), e);
-        }
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", user.getUsername() != null ? user.getUsername() : user.getEmail());
+        variables.put("resetLink", frontendUrl + "/auth/reset-password?token=" + token);
+        variables.put("expiryHours", 1);
+
+        queue(user, "Reset Your Password", "email/reset-password", variables);
     }
 
-    @Async
     public void sendNewDeviceLoginAlert(User user, String deviceName, String ipAddress, LocalDateTime loginTime) {
-        try {
-            Context context = new Context();
-            context.setVariable("userName", user.getUsername() != null ? user.getUsername() : user.getEmail());
-            context.setVariable("deviceName", deviceName);
-            context.setVariable("ipAddress", ipAddress);
-            context.setVariable("loginTime", loginTime);
-            context.setVariable("securityUrl", frontendUrl + "/settings/security");
-
-            String subject = "New Device Login Detected";
-            String htmlContent = templateEngine.process("email/new-device-alert", context);
-
-            sendHtmlEmail(user.getEmail(), subject, htmlContent);
-            log.info("Sent new device alert email to: {}", user.getEmail());
-        } catch (Exception e) {
-            log.error("Failed to send new device alert email to: {}", user.getEmail(), e);
-        }
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", user.getUsername() != null ? user.getUsername() : user.getEmail());
+        variables.put("deviceName", deviceName);
+        variables.put("ipAddress", ipAddress);
+        variables.put("loginTime", loginTime);
+        variables.put("securityUrl", frontendUrl + "/settings/security");
+
+        queue(user, "New Device Login Detected", "email/new-device-alert", variables);
     }
 
-    @Async
     public void sendAccountLockedEmail(User user, int lockDurationMinutes) {
-        try {
-            Context context = new Context();
-            context.setVariable("userName", user.getUsername() != null ? user.getUsername() : user.getEmail());
-            context.setVariable("lockDurationMinutes", lockDurationMinutes);
-            context.setVariable("supportEmail", fromEmail);
-
-            String subject = "Your Account Has Been Locked";
-            String htmlContent = templateEngine.process("email/account-locked", context);
-
-            sendHtmlEmail(user.getEmail(), subject, htmlContent);
-            log.info("Sent account locked email to: {}", user.getEmail());
-        } catch (Exception e) {
-            log.error("Failed to send account locked email to: {}", user.getEmail(), e);
-        }
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", user.getUsername() != null ? user.getUsername() : user.getEmail());
+        variables.put("lockDurationMinutes", lockDurationMinutes);
+        variables.put("supportEmail", fromEmail);
+
+        queue(user, "Your Account Has Been Locked", "email/account-locked", variables);
     }
 
-    @Async
     public void sendPasswordChangedEmail(User user) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", user.getUsername() != null ? user.getUsername() : user.getEmail());
+        variables.put("changeTime", LocalDateTime.now());
+        variables.put("supportEmail", fromEmail);
+
+        queue(user, "Your Password Has Been Changed", "email/password-changed", variables);
+    }
+
+    public void sendSecurityDigest(User user, List<SecurityAlertCoalescer.DigestItem> alerts, int omittedCount) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", user.getUsername() != null ? user.getUsername() : user.getEmail());
+        variables.put("alerts", alerts);
+        variables.put("omittedCount", omittedCount);
+        variables.put("securityUrl", frontendUrl + "/settings/security");
+        variables.put("supportEmail", fromEmail);
+
+        queue(user, "Security Activity on Your Account", "email/security-digest", variables);
+    }
+
+    /**
+     * Render the template and insert the message into the outbox. A template error is
+     * logged and the email dropped, as before; database errors fail the caller's
+     * transaction like any other write.
+     */
+    private void queue(User user, String subject, String template, Map<String, Object> variables) {
+        String to = user.getEmail();
+        String htmlContent;
         try {
-            Context context = new Context();
-            context.setVariable("userName", user.getUsername() != null ? user.getUsername() : user.getEmail());
-            context.setVariable("changeTime", LocalDateTime.now());
-            context.setVariable("supportEmail", fromEmail);
-
-            String subject = "Your Password Has Been Changed";
-            String htmlContent = templateEngine.process("email/password-changed", context);
-
-            sendHtmlEmail(user.getEmail(), subject, htmlContent);
-            log.info("Sent password changed email to: {}", user.getEmail());
-        } catch (Exception e) {
-            log.error("Failed to send password changed email to: {}", user.getEmail(), e);
+            htmlContent = templateRenderer.render(template, resolveLocale(user), variables);
+        } catch (RuntimeException e) {
+            log.error("Failed to render {} email to: {}", template, to, e);
+            return;
         }
+
+        outboxRepository.save(EmailOutboxMessage.builder()
+                .recipient(to)
+                .subject(subject)
+                .bodyHtml(htmlContent)
+                .build());
+        wakeWorkersAfterCommit();
+        log.info("Queued {} email to: {}", template, to);
     }
 
-    private void sendHtmlEmail(String to, String subject, String htmlContent) throws MessagingException {
-        MimeMessage message = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(message,
-                MimeMessageHelper.MULTIPART_MODE_MIXED_RELATED,
-                StandardCharsets.UTF_8.name());
-
-        try { // Added try-catch for UnsupportedEncodingException
-            helper.setFrom(fromEmail, fromName);
-        } catch (UnsupportedEncodingException e) {
-            helper.setFrom(fromEmail); // Fallback if encoding is not supported
-            log.warn(
-                    "UnsupportedEncodingException when setting 'from' address for email to {}. Using plain email address.",
-                    to, e);
+    private Locale resolveLocale(User user) {
+        if (user.getId() == null) {
+            return Locale.ENGLISH;
         }
-        helper.setTo(to);
-        helper.setSubject(subject);
-        helper.setText(htmlContent, true);
+        return userPreferencesRepository.findLanguageByUserId(user.getId())
+                .map(Locale::forLanguageTag)
+                .orElse(Locale.ENGLISH);
+    }
 
-        mailSender.send(message);
+    private void wakeWorkersAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            outboxWorker.wakeUp();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                outboxWorker.wakeUp();
+            }
+        });
     }
 }
@@ -0,0 +1,201 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.util.LruCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.unbescape.html.HtmlEscape;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Renders email templates from a per-locale precompiled form.
+ *
+ * The first render of a template in a locale runs Thymeleaf twice with unique sentinel
+ * strings in place of every variable and splits the output at the sentinels. That leaves
+ * the static HTML segments and, between them, the variable printed at each point.
+ * Later renders append the segments and the HTML-escaped values into a reused per-thread
+ * buffer, with no template parsing or expression evaluation.
+ *
+ * The two sentinel renders must succeed and produce the same segments. If they do not,
+ * the template does more than print its variables (conditionals, formatting, iteration),
+ * and it is always rendered by Thymeleaf instead. So is any render with a null value
+ * (th:href drops the attribute) or with a different set of variables than the template
+ * was compiled for.
+ */
+@Slf4j
+@Component
+public class EmailTemplateRenderer {
+
+    // Buffers that grew past this are dropped rather than kept per thread
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    private final SpringTemplateEngine templateEngine;
+    private final LruCache<TemplateKey, CompiledTemplate> compiled;
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(8 * 1024));
+
+    public EmailTemplateRenderer(SpringTemplateEngine templateEngine,
+            @Value("${application.email.template-cache-size:256}") int cacheSize) {
+        this.templateEngine = templateEngine;
+        this.compiled = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * Render a template in the given locale. Values are printed with their toString(),
+     * as Thymeleaf does for ${...} expressions.
+     */
+    public String render(String template, Locale locale, Map<String, ?> variables) {
+        TemplateKey key = new TemplateKey(template, locale);
+        CompiledTemplate compiledTemplate = compiled.get(key);
+        if (compiledTemplate == null) {
+            compiledTemplate = compile(template, locale, variables.keySet());
+            compiled.put(key, compiledTemplate);
+        }
+
+        if (!compiledTemplate.accepts(variables)) {
+            return process(template, locale, variables);
+        }
+        return compiledTemplate.render(variables, buffers.get());
+    }
+
+    private CompiledTemplate compile(String template, Locale locale, Set<String> variableNames) {
+        List<String> names = List.copyOf(variableNames);
+        String first = newSentinelPrefix();
+        String second = newSentinelPrefix();
+        CompiledTemplate compiledTemplate;
+        CompiledTemplate check;
+        try {
+            compiledTemplate = split(process(template, locale, sentinels(names, first)), names, first);
+            check = split(process(template, locale, sentinels(names, second)), names, second);
+        } catch (RuntimeException e) {
+            // Expressions that need the real values (comparisons, arithmetic) fail on sentinels
+            compiledTemplate = null;
+            check = null;
+        }
+
+        if (compiledTemplate == null || !compiledTemplate.equals(check)) {
+            log.info("Email template {} does not only print its variables, rendering it with Thymeleaf", template);
+            return CompiledTemplate.dynamic(variableNames);
+        }
+        log.debug("Precompiled email template {} for locale {} into {} segments",
+                template, locale, compiledTemplate.segments.length);
+        return compiledTemplate;
+    }
+
+    private String process(String template, Locale locale, Map<String, ?> variables) {
+        Context context = new Context(locale);
+        variables.forEach(context::setVariable);
+        return templateEngine.process(template, context);
+    }
+
+    private static Map<String, String> sentinels(List<String> names, String prefix) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            values.put(names.get(i), prefix + i + "z");
+        }
+        return values;
+    }
+
+    // Lowercase letters and digits only, so HTML escaping leaves sentinels intact
+    private static String newSentinelPrefix() {
+        byte[] random = new byte[12];
+        secureRandom.nextBytes(random);
+        return "tplslot" + HexFormat.of().formatHex(random) + "v";
+    }
+
+    // Null if the output contains something that looks like a slot for an unknown variable
+    private static CompiledTemplate split(String html, List<String> names, String prefix) {
+        List<String> segments = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        int from = 0;
+        int at;
+        while ((at = html.indexOf(prefix, from)) >= 0) {
+            int end = html.indexOf('z', at + prefix.length());
+            if (end < 0) {
+                return null;
+            }
+            int index;
+            try {
+                index = Integer.parseInt(html, at + prefix.length(), end, 10);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (index < 0 || index >= names.size()) {
+                return null;
+            }
+            segments.add(html.substring(from, at));
+            slots.add(names.get(index));
+            from = end + 1;
+        }
+        segments.add(html.substring(from));
+        return new CompiledTemplate(Set.copyOf(names), segments.toArray(String[]::new), slots.toArray(String[]::new));
+    }
+
+    private record TemplateKey(String template, Locale locale) {
+    }
+
+    private static final class CompiledTemplate {
+
+        private final Set<String> variableNames;
+        // Null when the template has to go through Thymeleaf every time
+        private final String[] segments;
+        private final String[] slots;
+        private final int staticLength;
+
+        private CompiledTemplate(Set<String> variableNames, String[] segments, String[] slots) {
+            this.variableNames = variableNames;
+            this.segments = segments;
+            this.slots = slots;
+            this.staticLength = segments == null ? 0 : Arrays.stream(segments).mapToInt(String::length).sum();
+        }
+
+        private static CompiledTemplate dynamic(Set<String> variableNames) {
+            return new CompiledTemplate(Set.copyOf(variableNames), null, null);
+        }
+
+        private boolean accepts(Map<String, ?> variables) {
+            return segments != null
+                    && variables.keySet().equals(variableNames)
+                    && variables.values().stream().allMatch(value -> value != null);
+        }
+
+        private String render(Map<String, ?> variables, StringBuilder buffer) {
+            buffer.setLength(0);
+            buffer.ensureCapacity(staticLength + 256);
+            for (int i = 0; i < slots.length; i++) {
+                buffer.append(segments[i]);
+                buffer.append(HtmlEscape.escapeHtml4Xml(variables.get(slots[i]).toString()));
+            }
+            buffer.append(segments[slots.length]);
+            String html = buffer.toString();
+            if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+                buffer.setLength(0);
+                buffer.trimToSize();
+            }
+            return html;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof CompiledTemplate that
+                    && Arrays.equals(segments, that.segments)
+                    && Arrays.equals(slots, that.slots);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(segments);
+        }
+    }
+}
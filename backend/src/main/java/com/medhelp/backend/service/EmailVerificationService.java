@@ -1,30 +1,31 @@
 package com.medhelp.backend.service;
 
-import com.medhelp.backend.model.EmailVerificationToken;
 import com.medhelp.backend.model.User;
-import com.medhelp.backend.repository.EmailVerificationTokenRepository;
+import com.medhelp.backend.repository.UserRepository;
+import com.medhelp.backend.service.SignedTokenService.Purpose;
+import com.medhelp.backend.service.SignedTokenService.VerifiedToken;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Base64;
 import java.util.Optional;
 
+/**
+ * Email verification with stateless signed tokens, see {@link SignedTokenService}
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class EmailVerificationService {
 
-    private final EmailVerificationTokenRepository tokenRepository;
+    private final SignedTokenService signedTokenService;
     private final EmailService emailService;
     private final UserService userService;
-
-    private static final SecureRandom secureRandom = new SecureRandom();
+    private final UserRepository userRepository;
 
     @Value("${application.email.verification.expiry-hours:24}")
     private int expiryHours;
@@ -34,20 +35,7 @@ public class EmailVerificationService {
      */
     @Transactional
     public void sendVerificationEmail(User user) {
-        // Delete any existing verification tokens for this user
-        tokenRepository.deleteByUser(user);
-
-        // Generate new token
-        String token = generateToken();
-        LocalDateTime expiresAt = LocalDateTime.now().plusHours(expiryHours);
-
-        EmailVerificationToken verificationToken = EmailVerificationToken.builder()
-                .user(user)
-                .token(token)
-                .expiresAt(expiresAt)
-                .build();
-
-        tokenRepository.save(verificationToken);
+        String token = signedTokenService.issue(Purpose.EMAIL_VERIFICATION, user, Duration.ofHours(expiryHours));
 
         // Send email
         emailService.sendVerificationEmail(user, token);
@@ -55,32 +43,29 @@ public class EmailVerificationService {
     }
 
     /**
-     * Verify email with token
+     * Verify email with token. The token is spent by the verification itself: it only
+     * applies while the email it was issued for is unverified.
      */
     @Transactional
     public boolean verifyEmail(String token) {
-        Optional<EmailVerificationToken> optionalToken = tokenRepository.findByToken(token);
-
-        if (optionalToken.isEmpty()) {
-            log.warn("Verification token not found");
+        Optional<VerifiedToken> verifiedToken = signedTokenService.verify(Purpose.EMAIL_VERIFICATION, token);
+        if (verifiedToken.isEmpty()) {
+            log.warn("Verification token is invalid or expired");
             return false;
         }
 
-        EmailVerificationToken verificationToken = optionalToken.get();
-
-        if (!verificationToken.isValid()) {
-            log.warn("Verification token is invalid or expired");
+        Optional<User> optionalUser = userRepository.findById(verifiedToken.get().userId());
+        if (optionalUser.isEmpty() || !signedTokenService.matchesState(verifiedToken.get(), optionalUser.get())) {
+            log.warn("Verification token was already used");
             return false;
         }
 
         // Mark user as verified
-        User user = verificationToken.getUser();
-        user.verifyEmail();
-        userService.saveUser(user);
-
-        // Mark token as used
-        verificationToken.setVerifiedAt(LocalDateTime.now());
-        tokenRepository.save(verificationToken);
+        User user = optionalUser.get();
+        if (userRepository.verifyEmailIfUnverified(user.getId(), user.getEmail(), LocalDateTime.now()) == 0) {
+            log.warn("Verification token was already used");
+            return false;
+        }
 
         log.info("Email verified for user: {}", user.getEmail());
         return true;
@@ -99,20 +84,4 @@ public class EmailVerificationService {
 
         sendVerificationEmail(user);
     }
-
-    private String generateToken() {
-        byte[] randomBytes = new byte[32];
-        secureRandom.nextBytes(randomBytes);
-        return Base64.getUrlEncoder().withoutPadding().encodeToString(randomBytes);
-    }
-
-    /**
-     * Cleanup expired tokens (runs daily at 4 AM)
-     */
-    @Scheduled(cron = "0 0 4 * * *")
-    @Transactional
-    public void cleanupExpiredTokens() {
-        tokenRepository.deleteExpiredOrUsed(LocalDateTime.now());
-        log.info("Cleaned up expired email verification tokens");
-    }
 }
@@ -0,0 +1,99 @@
+package com.medhelp.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Node-local MFA session store, only suitable for a single instance.
+ *
+ * Entries hold only the user id and request metadata and carry their own expiry; a
+ * single scheduled sweeper removes expired ones, and lookups ignore them in between.
+ * The number of pending sessions is capped so a login burst cannot grow it unbounded.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "application.auth.mfa.session-store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryMfaSessionStore implements MfaSessionStore {
+
+    private final Map<String, PendingMfaSession> sessions = new ConcurrentHashMap<>();
+
+    private final Counter createdCounter;
+    private final Counter expiredCounter;
+    private final Counter rejectedCounter;
+
+    @Value("${application.auth.mfa.session-ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${application.auth.mfa.session-max-entries:10000}")
+    private int maxEntries;
+
+    public InMemoryMfaSessionStore(MeterRegistry meterRegistry) {
+        this.createdCounter = meterRegistry.counter("auth.mfa.sessions.created");
+        this.expiredCounter = meterRegistry.counter("auth.mfa.sessions.expired");
+        this.rejectedCounter = meterRegistry.counter("auth.mfa.sessions.rejected");
+        meterRegistry.gaugeMapSize("auth.mfa.sessions.pending", Tags.empty(), sessions);
+    }
+
+    @Override
+    public String create(Long userId, String deviceFingerprint, String ipAddress, String userAgent) {
+        if (sessions.size() >= maxEntries) {
+            evictExpired();
+            if (sessions.size() >= maxEntries) {
+                rejectedCounter.increment();
+                log.warn("Pending MFA session limit of {} reached", maxEntries);
+                throw new RuntimeException("Too many pending 2FA sessions, please try again later");
+            }
+        }
+
+        String sessionId = UUID.randomUUID().toString();
+        sessions.put(sessionId, new PendingMfaSession(userId, deviceFingerprint, ipAddress, userAgent,
+                Instant.now().plusSeconds(ttlSeconds)));
+        createdCounter.increment();
+        return sessionId;
+    }
+
+    @Override
+    public Optional<PendingMfaSession> find(String sessionId) {
+        PendingMfaSession session = sessions.get(sessionId);
+        if (session == null || session.isExpired(Instant.now())) {
+            return Optional.empty();
+        }
+        return Optional.of(session);
+    }
+
+    @Override
+    public boolean consume(String sessionId) {
+        PendingMfaSession session = sessions.remove(sessionId);
+        return session != null && !session.isExpired(Instant.now());
+    }
+
+    /**
+     * Remove expired sessions (runs every 30 seconds)
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void evictExpired() {
+        Instant now = Instant.now();
+        int before = sessions.size();
+        sessions.values().removeIf(session -> session.isExpired(now));
+        int evicted = before - sessions.size();
+        if (evicted > 0) {
+            expiredCounter.increment(evicted);
+        }
+    }
+
+    int size() {
+        return sessions.size();
+    }
+}
@@ -0,0 +1,84 @@
+package com.medhelp.backend.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * MFA session store shared by all replicas through the UNLOGGED mfa_pending_sessions table.
+ * Expired rows are invisible to lookups and removed by a scheduled sweep.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "application.auth.mfa.session-store", havingValue = "jdbc")
+public class JdbcMfaSessionStore implements MfaSessionStore {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${application.auth.mfa.session-ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Override
+    public String create(Long userId, String deviceFingerprint, String ipAddress, String userAgent) {
+        UUID sessionId = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO mfa_pending_sessions (session_id, user_id, device_fingerprint, " +
+                        "ip_address, user_agent, expires_at) VALUES (?, ?, ?, ?, ?, ?)",
+                sessionId, userId, deviceFingerprint, ipAddress, userAgent,
+                Timestamp.from(Instant.now().plusSeconds(ttlSeconds)));
+        return sessionId.toString();
+    }
+
+    @Override
+    public Optional<PendingMfaSession> find(String sessionId) {
+        return parse(sessionId).flatMap(id -> jdbcTemplate.query(
+                "SELECT user_id, device_fingerprint, ip_address, user_agent, expires_at " +
+                        "FROM mfa_pending_sessions WHERE session_id = ? AND expires_at > ?",
+                (rs, rowNum) -> new PendingMfaSession(
+                        rs.getLong("user_id"),
+                        rs.getString("device_fingerprint"),
+                        rs.getString("ip_address"),
+                        rs.getString("user_agent"),
+                        rs.getTimestamp("expires_at").toInstant()),
+                id, Timestamp.from(Instant.now())).stream().findFirst());
+    }
+
+    @Override
+    public boolean consume(String sessionId) {
+        return parse(sessionId)
+                .map(id -> jdbcTemplate.update(
+                        "DELETE FROM mfa_pending_sessions WHERE session_id = ? AND expires_at > ?",
+                        id, Timestamp.from(Instant.now())) == 1)
+                .orElse(false);
+    }
+
+    /**
+     * Remove expired sessions (runs every minute)
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        int deleted = jdbcTemplate.update("DELETE FROM mfa_pending_sessions WHERE expires_at <= ?",
+                Timestamp.from(Instant.now()));
+        if (deleted > 0) {
+            log.debug("Removed {} expired MFA sessions", deleted);
+        }
+    }
+
+    // Session ids come from clients; anything that is not a UUID cannot exist
+    private static Optional<UUID> parse(String sessionId) {
+        try {
+            return Optional.of(UUID.fromString(sessionId));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return Optional.empty();
+        }
+    }
+}
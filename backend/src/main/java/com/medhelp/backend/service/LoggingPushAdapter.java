@@ -0,0 +1,31 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Local stand-in for a push provider: logs the notification instead of sending it. Only
+ * active when the push provider is set to "logging".
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "application.notifications.channels.push.provider", havingValue = "logging")
+public class LoggingPushAdapter implements NotificationChannelAdapter {
+
+    @Override
+    public NotificationChannel channel() {
+        return NotificationChannel.PUSH;
+    }
+
+    @Override
+    public Optional<LocalDateTime> send(User user, List<NotificationEvent> events) {
+        events.forEach(event -> log.info("Push to user {}: {}", user.getId(), event.summary()));
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,47 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Local stand-in for an SMS provider: logs the message, with the phone number masked,
+ * instead of sending it. Only active when the SMS provider is set to "logging".
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "application.notifications.channels.sms.provider", havingValue = "logging")
+public class LoggingSmsAdapter implements NotificationChannelAdapter {
+
+    @Override
+    public NotificationChannel channel() {
+        return NotificationChannel.SMS;
+    }
+
+    @Override
+    public Optional<LocalDateTime> send(User user, List<NotificationEvent> events) {
+        String phone = user.getPhone();
+        if (phone == null || phone.isBlank()) {
+            log.debug("No phone number for user {}, skipping SMS", user.getId());
+            return Optional.empty();
+        }
+        events.forEach(event -> log.info("SMS to {}: {}", mask(phone), event.summary()));
+        return Optional.empty();
+    }
+
+    // Only the last two digits, enough to tell test numbers apart
+    static String mask(String phone) {
+        int visibleFrom = Math.max(0, phone.length() - 2);
+        StringBuilder masked = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            masked.append(i < visibleFrom && Character.isDigit(c) ? '*' : c);
+        }
+        return masked.toString();
+    }
+}
@@ -0,0 +1,164 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.AuthDevice;
+import com.medhelp.backend.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scores password-verified logins of 2FA users to decide whether the second factor can
+ * be skipped.
+ *
+ * Only a device the user explicitly trusted, seen from the same IP address as last time,
+ * can skip 2FA. The fingerprint is client-supplied and not secret, so an IP address
+ * different from the device's last one always scores at least the threshold. On top of
+ * that the score adds up signals: failed attempts for the account and the IP address (the
+ * counts the rate limiter already fetched), a device idle for too long, and the number of
+ * logins for the user in the velocity window (kept in memory per node). Logins scoring
+ * below the threshold skip 2FA. Disabled by default.
+ */
+@Slf4j
+@Component
+public class LoginRiskEngine {
+
+    private static final int UNTRUSTED_DEVICE_SCORE = 100;
+    private static final int STALE_DEVICE_SCORE = 40;
+    private static final int FAILED_ATTEMPT_SCORE = 10;
+    private static final int MAX_FAILED_ATTEMPTS_SCORE = 60;
+    private static final int HIGH_VELOCITY_SCORE = 50;
+
+    private final DeviceService deviceService;
+    private final Counter skippedCounter;
+    private final Counter requiredCounter;
+
+    // Fixed-window login counters per user id
+    private final Map<Long, VelocityWindow> velocity = new ConcurrentHashMap<>();
+
+    @Value("${application.auth.mfa.risk-based.enabled:false}")
+    private boolean enabled;
+
+    @Value("${application.auth.mfa.risk-based.threshold:30}")
+    private int threshold;
+
+    @Value("${application.auth.mfa.risk-based.max-device-idle-days:30}")
+    private long maxDeviceIdleDays;
+
+    @Value("${application.auth.mfa.risk-based.velocity-window-seconds:600}")
+    private long velocityWindowSeconds;
+
+    @Value("${application.auth.mfa.risk-based.velocity-max-logins:5}")
+    private int velocityMaxLogins;
+
+    public LoginRiskEngine(DeviceService deviceService, MeterRegistry meterRegistry) {
+        this.deviceService = deviceService;
+        this.skippedCounter = meterRegistry.counter("auth.mfa.risk.decisions", "outcome", "skipped");
+        this.requiredCounter = meterRegistry.counter("auth.mfa.risk.decisions", "outcome", "required");
+    }
+
+    /**
+     * Assess a login whose password was just verified. Every call counts towards the
+     * user's login velocity.
+     */
+    public RiskAssessment assess(User user, String deviceFingerprint, String ipAddress,
+            RateLimitService.LoginRateStatus rateStatus) {
+        if (!enabled) {
+            return RiskAssessment.MFA_REQUIRED;
+        }
+
+        Set<RiskSignal> signals = EnumSet.noneOf(RiskSignal.class);
+        int score = 0;
+
+        Optional<AuthDevice> device = deviceFingerprint == null
+                ? Optional.empty()
+                : deviceService.findDevice(user, deviceFingerprint);
+        if (device.isEmpty() || !Boolean.TRUE.equals(device.get().getIsTrusted())) {
+            signals.add(RiskSignal.UNTRUSTED_DEVICE);
+            score += UNTRUSTED_DEVICE_SCORE;
+        } else {
+            AuthDevice trusted = device.get();
+            if (trusted.getLastSeen().isBefore(LocalDateTime.now().minusDays(maxDeviceIdleDays))) {
+                signals.add(RiskSignal.STALE_DEVICE);
+                score += STALE_DEVICE_SCORE;
+            }
+            if (ipAddress != null && !ipAddress.equals(trusted.getLastIp())) {
+                signals.add(RiskSignal.IP_CHANGED);
+                // On its own enough to require 2FA, whatever the configured threshold
+                score += threshold;
+            }
+        }
+
+        long failedAttempts = rateStatus.failedByEmail() + rateStatus.failedByIpAddress();
+        if (failedAttempts > 0) {
+            signals.add(RiskSignal.RECENT_FAILED_ATTEMPTS);
+            score += (int) Math.min(failedAttempts * FAILED_ATTEMPT_SCORE, MAX_FAILED_ATTEMPTS_SCORE);
+        }
+
+        if (recordLogin(user.getId()) > velocityMaxLogins) {
+            signals.add(RiskSignal.HIGH_VELOCITY);
+            score += HIGH_VELOCITY_SCORE;
+        }
+
+        boolean lowRisk = score < threshold;
+        (lowRisk ? skippedCounter : requiredCounter).increment();
+        log.debug("Login risk for user {}: score {} signals {}", user.getId(), score, signals);
+        return new RiskAssessment(score, signals, lowRisk);
+    }
+
+    /**
+     * Drop velocity windows that have ended (runs every minute)
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void pruneVelocity() {
+        long now = System.nanoTime();
+        velocity.values().removeIf(window -> window.isOver(now, windowNanos()));
+    }
+
+    private int recordLogin(Long userId) {
+        long now = System.nanoTime();
+        return velocity.compute(userId, (id, window) -> window == null || window.isOver(now, windowNanos())
+                ? new VelocityWindow(now, 1)
+                : new VelocityWindow(window.start(), window.count() + 1)).count();
+    }
+
+    private long windowNanos() {
+        return TimeUnit.SECONDS.toNanos(velocityWindowSeconds);
+    }
+
+    private record VelocityWindow(long start, int count) {
+        boolean isOver(long now, long windowNanos) {
+            return now - start > windowNanos;
+        }
+    }
+
+    public enum RiskSignal {
+        UNTRUSTED_DEVICE, STALE_DEVICE, IP_CHANGED, RECENT_FAILED_ATTEMPTS, HIGH_VELOCITY
+    }
+
+    /**
+     * Outcome of one assessment
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class RiskAssessment {
+        static final RiskAssessment MFA_REQUIRED = new RiskAssessment(UNTRUSTED_DEVICE_SCORE,
+                EnumSet.noneOf(RiskSignal.class), false);
+
+        private final int score;
+        private final Set<RiskSignal> signals;
+        private final boolean mfaSkippable;
+    }
+}
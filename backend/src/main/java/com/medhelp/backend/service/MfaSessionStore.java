@@ -0,0 +1,50 @@
+package com.medhelp.backend.service;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Pending MFA sessions between a password login and its 2FA verification.
+ *
+ * The implementation is selected with application.auth.mfa.session-store:
+ * memory (default, single node), jdbc (Postgres UNLOGGED table) or redis (native TTLs).
+ * The jdbc and redis stores let /verify-2fa land on a different replica than /login.
+ */
+public interface MfaSessionStore {
+
+    /**
+     * Store a new pending session and return its id
+     */
+    String create(Long userId, String deviceFingerprint, String ipAddress, String userAgent);
+
+    /**
+     * Look up a session that has not expired yet
+     */
+    Optional<PendingMfaSession> find(String sessionId);
+
+    /**
+     * Atomically delete the session. Returns true only for the one caller that removed a
+     * live session, so a code can never complete the same login twice.
+     */
+    boolean consume(String sessionId);
+
+    /**
+     * A password-verified login waiting for its second factor
+     */
+    @Getter
+    @RequiredArgsConstructor
+    class PendingMfaSession {
+        private final Long userId;
+        private final String deviceFingerprint;
+        private final String ipAddress;
+        private final String userAgent;
+        private final Instant expiresAt;
+
+        boolean isExpired(Instant now) {
+            return now.isAfter(expiresAt);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.medhelp.backend.service;
+
+public enum NotificationChannel {
+    EMAIL, SMS, PUSH
+}
@@ -0,0 +1,22 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.User;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Delivers notification events on one channel. Any exception counts as a failed attempt
+ * and is retried by the dispatcher.
+ */
+public interface NotificationChannelAdapter {
+
+    NotificationChannel channel();
+
+    /**
+     * Deliver the events claimed for one user. Returns empty once they are sent, or the
+     * time to hold all of them until, for an adapter that merges them with later ones.
+     */
+    Optional<LocalDateTime> send(User user, List<NotificationEvent> events) throws Exception;
+}
@@ -0,0 +1,313 @@
+package com.medhelp.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medhelp.backend.config.NotificationProperties;
+import com.medhelp.backend.model.NotificationOutboxMessage;
+import com.medhelp.backend.model.User;
+import com.medhelp.backend.repository.NotificationOutboxRepository;
+import com.medhelp.backend.repository.UserRepository;
+import com.medhelp.backend.util.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Fans notification events out to every channel that has an adapter, through the
+ * notification outbox.
+ *
+ * Dispatching inserts one notification_outbox row per channel in the caller's
+ * transaction, so an event is sent if and only if the change that caused it commits, and
+ * survives a full channel, a restart or a crash. Each channel has its own worker threads, rate limit
+ * and retry policy, so a slow or failing channel only ever backs up its own rows. Workers
+ * claim due rows of their channel with a lease, skip users who opted out of the event's
+ * type on that channel, hand each user's remaining rows to the adapter together and
+ * delete them once sent. An adapter may instead hold them until a later time, to merge
+ * them with what arrives meanwhile. A failed row is retried with exponential
+ * backoff until max-attempts, then kept as a DEAD letter. Idle workers poll, and are woken
+ * early when a transaction dispatches an event.
+ */
+@Slf4j
+@Component
+public class NotificationDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final UserRepository userRepository;
+    private final NotificationSettingsService notificationSettingsService;
+    private final NotificationProperties properties;
+    private final NotificationEventCodec codec;
+    private final MeterRegistry meterRegistry;
+    private final Map<NotificationChannel, ChannelWorkers> channels = new EnumMap<>(NotificationChannel.class);
+
+    public NotificationDispatcher(List<NotificationChannelAdapter> adapters,
+            NotificationOutboxRepository outboxRepository, UserRepository userRepository,
+            NotificationSettingsService notificationSettingsService, NotificationProperties properties,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.userRepository = userRepository;
+        this.notificationSettingsService = notificationSettingsService;
+        this.properties = properties;
+        this.codec = new NotificationEventCodec(objectMapper);
+        this.meterRegistry = meterRegistry;
+        for (NotificationChannelAdapter adapter : adapters) {
+            channels.put(adapter.channel(), new ChannelWorkers(adapter, properties.channel(adapter.channel())));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        channels.values().forEach(ChannelWorkers::start);
+        log.info("Started notification channels: {}", channels.keySet());
+    }
+
+    /**
+     * Let workers finish the row in hand; unsent claims become due again after the lease
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        for (ChannelWorkers workers : channels.values()) {
+            workers.stop();
+        }
+    }
+
+    /**
+     * Queue the event on every channel, in the current transaction if there is one
+     */
+    public void dispatch(NotificationEvent event) {
+        if (channels.isEmpty()) {
+            return;
+        }
+        String kind = codec.kind(event);
+        String payload = codec.payload(event);
+        outboxRepository.insertAll(channels.keySet().stream()
+                .map(channel -> NotificationOutboxMessage.builder()
+                        .userId(event.user().getId())
+                        .channel(channel)
+                        .eventKind(kind)
+                        .payload(payload)
+                        .build())
+                .toList());
+        wakeWorkersAfterCommit();
+    }
+
+    /**
+     * Drop dead letters older than 30 days (runs daily at 6 AM)
+     */
+    @Scheduled(cron = "0 0 6 * * *")
+    public void cleanupDeadLetters() {
+        int deleted = outboxRepository.deleteDeadOlderThan(LocalDateTime.now().minusDays(30));
+        log.info("Cleaned up {} dead notification outbox rows", deleted);
+    }
+
+    /**
+     * Claim and deliver one batch of a channel's rows. Returns the number of rows claimed.
+     */
+    int processBatch(NotificationChannel channel) throws InterruptedException {
+        return channels.get(channel).processBatch();
+    }
+
+    private void wakeWorkersAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            channels.values().forEach(ChannelWorkers::wakeUp);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                channels.values().forEach(ChannelWorkers::wakeUp);
+            }
+        });
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private record Pending(NotificationOutboxMessage message, NotificationEvent event) {
+    }
+
+    private final class ChannelWorkers {
+
+        private final NotificationChannelAdapter adapter;
+        private final NotificationProperties.Channel config;
+        private final TokenBucket rateLimiter;
+        private final Counter sentCounter;
+        private final Counter skippedCounter;
+        private final Counter retriedCounter;
+        private final Counter failedCounter;
+        private final Object wakeUpSignal = new Object();
+        private ExecutorService workers;
+        private volatile boolean running;
+
+        private ChannelWorkers(NotificationChannelAdapter adapter, NotificationProperties.Channel config) {
+            String channel = adapter.channel().name();
+            this.adapter = adapter;
+            this.config = config;
+            this.rateLimiter = new TokenBucket(config.getRatePerSecond(), Math.max(1, config.getRatePerSecond()));
+            this.sentCounter = meterRegistry.counter("notification.sent", "channel", channel);
+            this.skippedCounter = meterRegistry.counter("notification.skipped", "channel", channel);
+            this.retriedCounter = meterRegistry.counter("notification.retried", "channel", channel);
+            this.failedCounter = meterRegistry.counter("notification.failed", "channel", channel);
+        }
+
+        private void start() {
+            running = true;
+            AtomicInteger threadNumber = new AtomicInteger();
+            String prefix = "notification-" + adapter.channel().name().toLowerCase() + "-";
+            workers = Executors.newFixedThreadPool(config.getWorkers(), runnable -> {
+                Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (int i = 0; i < config.getWorkers(); i++) {
+                workers.submit(this::runWorker);
+            }
+        }
+
+        private void stop() throws InterruptedException {
+            running = false;
+            wakeUp();
+            if (workers != null) {
+                workers.shutdown();
+                if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("{} notification workers did not stop within 10 seconds", adapter.channel());
+                }
+            }
+        }
+
+        private void wakeUp() {
+            synchronized (wakeUpSignal) {
+                wakeUpSignal.notifyAll();
+            }
+        }
+
+        private void runWorker() {
+            while (running) {
+                try {
+                    if (processBatch() == 0) {
+                        awaitWork();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    log.error("{} notification worker failed to claim rows", adapter.channel(), e);
+                    try {
+                        awaitWork();
+                    } catch (InterruptedException interrupted) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void awaitWork() throws InterruptedException {
+            synchronized (wakeUpSignal) {
+                if (running) {
+                    wakeUpSignal.wait(properties.getPollIntervalMs());
+                }
+            }
+        }
+
+        private int processBatch() throws InterruptedException {
+            LocalDateTime now = LocalDateTime.now();
+            List<NotificationOutboxMessage> batch = outboxRepository.claimDue(adapter.channel().name(), now,
+                    now.plusSeconds(properties.getLeaseSeconds()), properties.getBatchSize());
+            if (batch.isEmpty()) {
+                return 0;
+            }
+
+            Map<Long, User> users = userRepository.findAllById(batch.stream()
+                            .map(NotificationOutboxMessage::getUserId)
+                            .distinct()
+                            .toList())
+                    .stream()
+                    .collect(Collectors.toMap(User::getId, Function.identity()));
+            Map<Long, List<Pending>> byUser = new LinkedHashMap<>();
+            for (NotificationOutboxMessage message : batch) {
+                User user = users.get(message.getUserId());
+                if (user == null) {
+                    // Deleted since; the foreign key cascade removes the row
+                    continue;
+                }
+                try {
+                    NotificationEvent event = codec.decode(message.getEventKind(), message.getPayload(), user);
+                    if (notificationSettingsService.isEnabled(user.getId(), adapter.channel(), event.type())) {
+                        byUser.computeIfAbsent(user.getId(), id -> new ArrayList<>()).add(new Pending(message, event));
+                    } else {
+                        outboxRepository.deleteDelivered(message.getId());
+                        skippedCounter.increment();
+                    }
+                } catch (RuntimeException e) {
+                    handleFailure(message, e);
+                }
+            }
+            for (Map.Entry<Long, List<Pending>> entry : byUser.entrySet()) {
+                deliver(users.get(entry.getKey()), entry.getValue());
+            }
+            return batch.size();
+        }
+
+        // All of a user's rows in the batch go to the adapter together, so it can merge them
+        private void deliver(User user, List<Pending> pending) throws InterruptedException {
+            Optional<LocalDateTime> holdUntil;
+            try {
+                rateLimiter.acquire(pending.size());
+                holdUntil = adapter.send(user, pending.stream().map(Pending::event).toList());
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                pending.forEach(item -> handleFailure(item.message(), e));
+                return;
+            }
+
+            if (holdUntil.isPresent()) {
+                outboxRepository.hold(pending.stream().map(item -> item.message().getId()).toList(), holdUntil.get());
+                return;
+            }
+            pending.forEach(item -> outboxRepository.deleteDelivered(item.message().getId()));
+            sentCounter.increment(pending.size());
+        }
+
+        private void handleFailure(NotificationOutboxMessage message, Exception e) {
+            String error = truncate(e.getClass().getSimpleName() + ": " + e.getMessage());
+            if (message.getAttempts() >= config.getMaxAttempts()) {
+                outboxRepository.markDead(message.getId(), error);
+                failedCounter.increment();
+                log.error("Giving up on {} {} notification for user {} after {} attempts: {}", adapter.channel(),
+                        message.getEventKind(), message.getUserId(), message.getAttempts(), error);
+                return;
+            }
+
+            long delayMs = config.getRetryBackoffMs() << Math.min(message.getAttempts() - 1, 10);
+            outboxRepository.reschedule(message.getId(), LocalDateTime.now().plus(Duration.ofMillis(delayMs)), error);
+            retriedCounter.increment();
+            log.warn("Failed to send {} {} notification for user {} (attempt {}), will retry: {}", adapter.channel(),
+                    message.getEventKind(), message.getUserId(), message.getAttempts(), error);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * Something a user is notified about on every channel they enabled for its type.
+ * The summary is the short text used by the SMS and push channels.
+ */
+public interface NotificationEvent {
+
+    User user();
+
+    NotificationType type();
+
+    String summary();
+
+    record NewDeviceLogin(User user, String deviceName, String ipAddress, LocalDateTime loginTime)
+            implements NotificationEvent {
+
+        @Override
+        public NotificationType type() {
+            return NotificationType.SECURITY_ALERT;
+        }
+
+        @Override
+        public String summary() {
+            return "MedHelp: new sign-in from " + deviceName + " (" + ipAddress + "). Not you? Secure your account.";
+        }
+    }
+
+    record AccountLocked(User user, int lockDurationMinutes) implements NotificationEvent {
+
+        @Override
+        public NotificationType type() {
+            return NotificationType.SECURITY_ALERT;
+        }
+
+        @Override
+        public String summary() {
+            return "MedHelp: your account was locked for " + lockDurationMinutes
+                    + " minutes after repeated failed sign-ins.";
+        }
+    }
+
+    record PasswordChanged(User user) implements NotificationEvent {
+
+        @Override
+        public NotificationType type() {
+            return NotificationType.SECURITY_ALERT;
+        }
+
+        @Override
+        public String summary() {
+            return "MedHelp: your password was changed. Not you? Contact support now.";
+        }
+    }
+}
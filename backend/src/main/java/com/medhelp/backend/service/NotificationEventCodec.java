@@ -0,0 +1,72 @@
+package com.medhelp.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medhelp.backend.model.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * Turns notification events into notification_outbox rows and back. The user is stored as
+ * the row's user_id and everything else as a small JSON payload.
+ */
+final class NotificationEventCodec {
+
+    static final String NEW_DEVICE_LOGIN = "NEW_DEVICE_LOGIN";
+    static final String ACCOUNT_LOCKED = "ACCOUNT_LOCKED";
+    static final String PASSWORD_CHANGED = "PASSWORD_CHANGED";
+
+    private final ObjectMapper objectMapper;
+
+    NotificationEventCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    String kind(NotificationEvent event) {
+        if (event instanceof NotificationEvent.NewDeviceLogin) {
+            return NEW_DEVICE_LOGIN;
+        }
+        if (event instanceof NotificationEvent.AccountLocked) {
+            return ACCOUNT_LOCKED;
+        }
+        if (event instanceof NotificationEvent.PasswordChanged) {
+            return PASSWORD_CHANGED;
+        }
+        throw new IllegalArgumentException("Unknown notification event " + event.getClass().getSimpleName());
+    }
+
+    String payload(NotificationEvent event) {
+        StoredEvent stored;
+        if (event instanceof NotificationEvent.NewDeviceLogin login) {
+            stored = new StoredEvent(login.deviceName(), login.ipAddress(), login.loginTime(), null);
+        } else if (event instanceof NotificationEvent.AccountLocked locked) {
+            stored = new StoredEvent(null, null, null, locked.lockDurationMinutes());
+        } else {
+            stored = new StoredEvent(null, null, null, null);
+        }
+        try {
+            return objectMapper.writeValueAsString(stored);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize notification event", e);
+        }
+    }
+
+    NotificationEvent decode(String kind, String payload, User user) {
+        StoredEvent stored;
+        try {
+            stored = objectMapper.readValue(payload, StoredEvent.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to deserialize notification event", e);
+        }
+        return switch (kind) {
+            case NEW_DEVICE_LOGIN -> new NotificationEvent.NewDeviceLogin(user, stored.deviceName(),
+                    stored.ipAddress(), stored.loginTime());
+            case ACCOUNT_LOCKED -> new NotificationEvent.AccountLocked(user, stored.lockDurationMinutes());
+            case PASSWORD_CHANGED -> new NotificationEvent.PasswordChanged(user);
+            default -> throw new IllegalStateException("Unknown notification event kind " + kind);
+        };
+    }
+
+    record StoredEvent(String deviceName, String ipAddress, LocalDateTime loginTime, Integer lockDurationMinutes) {
+    }
+}
@@ -1,76 +1,149 @@
 package com.medhelp.backend.service;
 
 import com.medhelp.backend.dto.NotificationSettingsRequest;
+import com.medhelp.backend.model.NotificationFlag;
 import com.medhelp.backend.model.NotificationSettings;
-import com.medhelp.backend.model.User;
 import com.medhelp.backend.repository.NotificationSettingsRepository;
-import lombok.RequiredArgsConstructor;
+import com.medhelp.backend.repository.UserRepository;
+import com.medhelp.backend.util.EntityTags;
+import com.medhelp.backend.util.LruCache;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class NotificationSettingsService {
 
     private final NotificationSettingsRepository notificationSettingsRepository;
+    private final UserRepository userRepository;
 
-    @Transactional
+    // Stored opt-in flags per user for the notification dispatcher, evicted locally on every
+    // change and expired after the TTL so other nodes catch up
+    private final LruCache<Long, CachedFlags> enabledCache;
+    private final long enabledCacheTtlMillis;
+
+    public NotificationSettingsService(
+            NotificationSettingsRepository notificationSettingsRepository,
+            UserRepository userRepository,
+            @Value("${application.notifications.settings-cache-size:10000}") int enabledCacheSize,
+            @Value("${application.notifications.settings-cache-ttl-seconds:60}") long enabledCacheTtlSeconds) {
+        this.notificationSettingsRepository = notificationSettingsRepository;
+        this.userRepository = userRepository;
+        this.enabledCache = new LruCache<>(enabledCacheSize);
+        this.enabledCacheTtlMillis = TimeUnit.SECONDS.toMillis(enabledCacheTtlSeconds);
+    }
+
+    /**
+     * The saved notification settings, or the defaults if the user never saved any. Does not write.
+     */
+    @Transactional(readOnly = true)
     public NotificationSettings getNotificationSettings(Long userId) {
         return notificationSettingsRepository.findByUserId(userId)
-                .orElseGet(() -> createDefaultSettings(userId));
+                .orElseGet(() -> NotificationSettings.builder().build());
     }
 
+    /**
+     * Replace the notification settings. With an If-Match header the write only goes ahead
+     * if it is based on the current version.
+     */
     @Transactional
-    public NotificationSettings updateNotificationSettings(Long userId, NotificationSettingsRequest request) {
-        NotificationSettings settings = notificationSettingsRepository.findByUserId(userId)
-                .orElseGet(() -> createDefaultSettings(userId));
+    public NotificationSettings updateNotificationSettings(Long userId, NotificationSettingsRequest request,
+            String ifMatch) {
+        NotificationSettings current = notificationSettingsRepository.findByUserId(userId).orElse(null);
+        EntityTags.checkIfMatch(ifMatch,
+                EntityTags.of(EntityTags.NOTIFICATIONS, userId, current != null ? current.getVersion() : null));
+        NotificationSettings settings = current != null ? current : createDefaultSettings(userId);
 
         // Email notifications
-        settings.setEmailPrescriptionReady(request.getEmailPrescriptionReady());
-        settings.setEmailOrderUpdates(request.getEmailOrderUpdates());
-        settings.setEmailPromotions(request.getEmailPromotions());
-        settings.setEmailNewsletter(request.getEmailNewsletter());
-        settings.setEmailSecurityAlerts(request.getEmailSecurityAlerts());
+        settings.setEnabled(NotificationFlag.EMAIL_PRESCRIPTION_READY, request.getEmailPrescriptionReady());
+        settings.setEnabled(NotificationFlag.EMAIL_ORDER_UPDATES, request.getEmailOrderUpdates());
+        settings.setEnabled(NotificationFlag.EMAIL_PROMOTIONS, request.getEmailPromotions());
+        settings.setEnabled(NotificationFlag.EMAIL_NEWSLETTER, request.getEmailNewsletter());
+        settings.setEnabled(NotificationFlag.EMAIL_SECURITY_ALERTS, request.getEmailSecurityAlerts());
 
         // SMS notifications
-        settings.setSmsPrescriptionReady(request.getSmsPrescriptionReady());
-        settings.setSmsOrderUpdates(request.getSmsOrderUpdates());
-        settings.setSmsPromotions(request.getSmsPromotions());
-        settings.setSmsSecurityAlerts(request.getSmsSecurityAlerts());
+        settings.setEnabled(NotificationFlag.SMS_PRESCRIPTION_READY, request.getSmsPrescriptionReady());
+        settings.setEnabled(NotificationFlag.SMS_ORDER_UPDATES, request.getSmsOrderUpdates());
+        settings.setEnabled(NotificationFlag.SMS_PROMOTIONS, request.getSmsPromotions());
+        settings.setEnabled(NotificationFlag.SMS_SECURITY_ALERTS, request.getSmsSecurityAlerts());
 
         // Push notifications
-        settings.setPushPrescriptionReady(request.getPushPrescriptionReady());
-        settings.setPushOrderUpdates(request.getPushOrderUpdates());
-        settings.setPushPromotions(request.getPushPromotions());
-        settings.setPushSecurityAlerts(request.getPushSecurityAlerts());
+        settings.setEnabled(NotificationFlag.PUSH_PRESCRIPTION_READY, request.getPushPrescriptionReady());
+        settings.setEnabled(NotificationFlag.PUSH_ORDER_UPDATES, request.getPushOrderUpdates());
+        settings.setEnabled(NotificationFlag.PUSH_PROMOTIONS, request.getPushPromotions());
+        settings.setEnabled(NotificationFlag.PUSH_SECURITY_ALERTS, request.getPushSecurityAlerts());
 
+        enabledCache.remove(userId);
         return notificationSettingsRepository.save(settings);
     }
 
+    /**
+     * Change only the given flags, keyed by their JSON property, e.g. {"emailPromotions": true}.
+     * The other flags keep whatever value they have, even if another request changes them
+     * at the same time. With an If-Match header the write only goes ahead if it is based on
+     * the current version.
+     */
+    @Transactional
+    public NotificationSettings patchNotificationSettings(Long userId, Map<String, Boolean> changes,
+            String ifMatch) {
+        if (changes.isEmpty()) {
+            throw new RuntimeException("No notification settings to change");
+        }
+        int mask = 0;
+        int values = 0;
+        for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+            NotificationFlag flag = NotificationFlag.fromProperty(change.getKey())
+                    .orElseThrow(() -> new RuntimeException("Unknown notification setting: " + change.getKey()));
+            if (change.getValue() == null) {
+                throw new RuntimeException("Notification setting " + change.getKey() + " must be true or false");
+            }
+            mask |= flag.bit();
+            if (change.getValue()) {
+                values |= flag.bit();
+            }
+        }
+
+        if (ifMatch != null) {
+            // Locked, so the row cannot change between this check and the write
+            NotificationSettings current = notificationSettingsRepository.findForUpdateByUserId(userId).orElse(null);
+            EntityTags.checkIfMatch(ifMatch,
+                    EntityTags.of(EntityTags.NOTIFICATIONS, userId, current != null ? current.getVersion() : null));
+        }
+
+        notificationSettingsRepository.patchFlags(userId, mask, values, NotificationFlag.DEFAULTS,
+                LocalDateTime.now());
+        enabledCache.remove(userId);
+        return notificationSettingsRepository.findByUserId(userId)
+                .orElseThrow(() -> new RuntimeException("Notification settings not found"));
+    }
+
+    /**
+     * Whether the user wants this type of notification on this channel. Users without a
+     * settings row get the defaults, without creating the row.
+     */
+    public boolean isEnabled(Long userId, NotificationChannel channel, NotificationType type) {
+        long now = System.currentTimeMillis();
+        CachedFlags cached = enabledCache.get(userId);
+        if (cached == null || cached.expiresAt() <= now) {
+            int flags = notificationSettingsRepository.findFlagsByUserId(userId).orElse(NotificationFlag.DEFAULTS);
+            cached = new CachedFlags(flags, now + enabledCacheTtlMillis);
+            enabledCache.put(userId, cached);
+        }
+        return (cached.flags() & type.flag(channel).bit()) != 0;
+    }
+
     @Transactional
     public NotificationSettings createDefaultSettings(Long userId) {
         log.info("Creating default notification settings for user: {}", userId);
 
-        User user = new User();
-        user.setId(userId);
-
         NotificationSettings settings = NotificationSettings.builder()
-                .user(user)
-                .emailPrescriptionReady(true)
-                .emailOrderUpdates(true)
-                .emailPromotions(false)
-                .emailNewsletter(true)
-                .emailSecurityAlerts(true)
-                .smsPrescriptionReady(true)
-                .smsOrderUpdates(false)
-                .smsPromotions(false)
-                .smsSecurityAlerts(true)
-                .pushPrescriptionReady(true)
-                .pushOrderUpdates(true)
-                .pushPromotions(false)
-                .pushSecurityAlerts(true)
+                .user(userRepository.getReferenceById(userId))
                 .build();
 
         return notificationSettingsRepository.save(settings);
@@ -79,5 +152,9 @@ public class NotificationSettingsService {
     @Transactional
     public void deleteNotificationSettings(Long userId) {
         notificationSettingsRepository.deleteByUserId(userId);
+        enabledCache.remove(userId);
+    }
+
+    private record CachedFlags(int flags, long expiresAt) {
     }
 }
@@ -0,0 +1,41 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.NotificationFlag;
+import com.medhelp.backend.model.NotificationSettings;
+
+/**
+ * Kinds of notification a user can opt in to or out of per channel
+ */
+public enum NotificationType {
+    PRESCRIPTION_READY, ORDER_UPDATE, PROMOTION, SECURITY_ALERT;
+
+    /**
+     * The settings flag that opts in to this type on the channel
+     */
+    public NotificationFlag flag(NotificationChannel channel) {
+        return switch (channel) {
+            case EMAIL -> switch (this) {
+                case PRESCRIPTION_READY -> NotificationFlag.EMAIL_PRESCRIPTION_READY;
+                case ORDER_UPDATE -> NotificationFlag.EMAIL_ORDER_UPDATES;
+                case PROMOTION -> NotificationFlag.EMAIL_PROMOTIONS;
+                case SECURITY_ALERT -> NotificationFlag.EMAIL_SECURITY_ALERTS;
+            };
+            case SMS -> switch (this) {
+                case PRESCRIPTION_READY -> NotificationFlag.SMS_PRESCRIPTION_READY;
+                case ORDER_UPDATE -> NotificationFlag.SMS_ORDER_UPDATES;
+                case PROMOTION -> NotificationFlag.SMS_PROMOTIONS;
+                case SECURITY_ALERT -> NotificationFlag.SMS_SECURITY_ALERTS;
+            };
+            case PUSH -> switch (this) {
+                case PRESCRIPTION_READY -> NotificationFlag.PUSH_PRESCRIPTION_READY;
+                case ORDER_UPDATE -> NotificationFlag.PUSH_ORDER_UPDATES;
+                case PROMOTION -> NotificationFlag.PUSH_PROMOTIONS;
+                case SECURITY_ALERT -> NotificationFlag.PUSH_SECURITY_ALERTS;
+            };
+        };
+    }
+
+    public boolean isEnabled(NotificationSettings settings, NotificationChannel channel) {
+        return settings.isEnabled(flag(channel));
+    }
+}
@@ -1,33 +1,35 @@
 package com.medhelp.backend.service;
 
-import com.medhelp.backend.model.PasswordResetToken;
 import com.medhelp.backend.model.User;
-import com.medhelp.backend.repository.PasswordResetTokenRepository;
+import com.medhelp.backend.repository.UserRepository;
+import com.medhelp.backend.service.SignedTokenService.Purpose;
+import com.medhelp.backend.service.SignedTokenService.VerifiedToken;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Base64;
 import java.util.Optional;
 
+/**
+ * Password reset with stateless signed tokens, see {@link SignedTokenService}
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class PasswordResetService {
 
-    private final PasswordResetTokenRepository tokenRepository;
+    private final SignedTokenService signedTokenService;
     private final EmailService emailService;
     private final UserService userService;
+    private final UserRepository userRepository;
+    private final NotificationDispatcher notificationDispatcher;
     private final PasswordEncoder passwordEncoder;
 
-    private static final SecureRandom secureRandom = new SecureRandom();
-
     @Value("${application.email.reset.expiry-hours:1}")
     private int expiryHours;
 
@@ -39,20 +41,8 @@ public class PasswordResetService {
         try {
             User user = userService.getUserByEmail(email);
 
-            // Delete any existing reset tokens for this user
-            tokenRepository.deleteByUser(user);
-
             // Generate new token
-            String token = generateToken();
-            LocalDateTime expiresAt = LocalDateTime.now().plusHours(expiryHours);
-
-            PasswordResetToken resetToken = PasswordResetToken.builder()
-                    .user(user)
-                    .token(token)
-                    .expiresAt(expiresAt)
-                    .build();
-
-            tokenRepository.save(resetToken);
+            String token = signedTokenService.issue(Purpose.PASSWORD_RESET, user, Duration.ofHours(expiryHours));
 
             // Send email
             emailService.sendPasswordResetEmail(user, token);
@@ -64,36 +54,26 @@ public class PasswordResetService {
     }
 
     /**
-     * Reset password with token
+     * Reset password with token. The token is spent by the reset itself: it only applies
+     * while the password is the one it was issued for.
      */
     @Transactional
     public boolean resetPassword(String token, String newPassword) {
-        Optional<PasswordResetToken> optionalToken = tokenRepository.findByToken(token);
-
-        if (optionalToken.isEmpty()) {
-            log.warn("Reset token not found");
+        Optional<User> optionalUser = findUserForToken(token);
+        if (optionalUser.isEmpty()) {
             return false;
         }
 
-        PasswordResetToken resetToken = optionalToken.get();
-
-        if (!resetToken.isValid()) {
-            log.warn("Reset token is invalid or expired");
+        // Update user password and reset any lockout
+        User user = optionalUser.get();
+        if (userRepository.resetPasswordIfUnchanged(user.getId(), user.getPassword(),
+                passwordEncoder.encode(newPassword), LocalDateTime.now()) == 0) {
+            log.warn("Reset token was already used");
             return false;
         }
 
-        // Update user password
-        User user = resetToken.getUser();
-        user.setPassword(passwordEncoder.encode(newPassword));
-        user.resetFailedAttempts(); // Reset any lockout
-        userService.saveUser(user);
-
-        // Mark token as used
-        resetToken.setUsedAt(LocalDateTime.now());
-        tokenRepository.save(resetToken);
-
-        // Send confirmation email
-        emailService.sendPasswordChangedEmail(user);
+        // Send confirmation
+        notificationDispatcher.dispatch(new NotificationEvent.PasswordChanged(user));
 
         log.info("Password reset successful for user: {}", user.getEmail());
         return true;
@@ -103,24 +83,22 @@ public class PasswordResetService {
      * Validate reset token without using it
      */
     public boolean validateResetToken(String token) {
-        return tokenRepository.findByToken(token)
-                .map(PasswordResetToken::isValid)
-                .orElse(false);
+        return findUserForToken(token).isPresent();
     }
 
-    private String generateToken() {
-        byte[] randomBytes = new byte[32];
-        secureRandom.nextBytes(randomBytes);
-        return Base64.getUrlEncoder().withoutPadding().encodeToString(randomBytes);
-    }
+    // Signature and expiry are checked before the user is loaded
+    private Optional<User> findUserForToken(String token) {
+        Optional<VerifiedToken> verifiedToken = signedTokenService.verify(Purpose.PASSWORD_RESET, token);
+        if (verifiedToken.isEmpty()) {
+            log.warn("Reset token is invalid or expired");
+            return Optional.empty();
+        }
 
-    /**
-     * Cleanup expired tokens (runs daily at 5 AM)
-     */
-    @Scheduled(cron = "0 0 5 * * *")
-    @Transactional
-    public void cleanupExpiredTokens() {
-        tokenRepository.deleteExpiredOrUsed(LocalDateTime.now());
-        log.info("Cleaned up expired password reset tokens");
+        Optional<User> user = userRepository.findById(verifiedToken.get().userId())
+                .filter(candidate -> signedTokenService.matchesState(verifiedToken.get(), candidate));
+        if (user.isEmpty()) {
+            log.warn("Reset token was already used");
+        }
+        return user;
     }
 }
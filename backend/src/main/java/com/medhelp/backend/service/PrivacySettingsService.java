@@ -2,8 +2,9 @@ package com.medhelp.backend.service;
 
 import com.medhelp.backend.dto.PrivacySettingsRequest;
 import com.medhelp.backend.model.PrivacySettings;
-import com.medhelp.backend.model.User;
 import com.medhelp.backend.repository.PrivacySettingsRepository;
+import com.medhelp.backend.repository.UserRepository;
+import com.medhelp.backend.util.EntityTags;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -15,17 +16,27 @@ import org.springframework.transaction.annotation.Transactional;
 public class PrivacySettingsService {
 
     private final PrivacySettingsRepository privacySettingsRepository;
+    private final UserRepository userRepository;
 
-    @Transactional
+    /**
+     * The saved privacy settings, or the defaults if the user never saved any. Does not write.
+     */
+    @Transactional(readOnly = true)
     public PrivacySettings getPrivacySettings(Long userId) {
         return privacySettingsRepository.findByUserId(userId)
-                .orElseGet(() -> createDefaultSettings(userId));
+                .orElseGet(() -> PrivacySettings.builder().build());
     }
 
+    /**
+     * Replace the privacy settings. With an If-Match header the write only goes ahead if it
+     * is based on the current version.
+     */
     @Transactional
-    public PrivacySettings updatePrivacySettings(Long userId, PrivacySettingsRequest request) {
-        PrivacySettings settings = privacySettingsRepository.findByUserId(userId)
-                .orElseGet(() -> createDefaultSettings(userId));
+    public PrivacySettings updatePrivacySettings(Long userId, PrivacySettingsRequest request, String ifMatch) {
+        PrivacySettings current = privacySettingsRepository.findByUserId(userId).orElse(null);
+        EntityTags.checkIfMatch(ifMatch,
+                EntityTags.of(EntityTags.PRIVACY, userId, current != null ? current.getVersion() : null));
+        PrivacySettings settings = current != null ? current : createDefaultSettings(userId);
 
         settings.setShareDataWithPartners(request.getShareDataWithPartners());
         settings.setMarketingCommunications(request.getMarketingCommunications());
@@ -39,11 +50,8 @@ public class PrivacySettingsService {
     public PrivacySettings createDefaultSettings(Long userId) {
         log.info("Creating default privacy settings for user: {}", userId);
 
-        User user = new User();
-        user.setId(userId);
-
         PrivacySettings settings = PrivacySettings.builder()
-                .user(user)
+                .user(userRepository.getReferenceById(userId))
                 .shareDataWithPartners(false)
                 .marketingCommunications(false)
                 .profileVisibility(true)
@@ -3,6 +3,7 @@ package com.medhelp.backend.service;
 import com.medhelp.backend.model.LoginAttempt;
 import com.medhelp.backend.model.User;
 import com.medhelp.backend.repository.LoginAttemptRepository;
+import com.medhelp.backend.repository.LoginAttemptRepository.FailedAttemptCounts;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -18,6 +19,7 @@ import java.time.LocalDateTime;
 public class RateLimitService {
 
     private final LoginAttemptRepository loginAttemptRepository;
+    private final UserAgentService userAgentService;
 
     @Value("${application.auth.rate-limit.login-attempts:10}")
     private int maxLoginAttempts;
@@ -33,13 +35,18 @@ public class RateLimitService {
 
     /**
      * Record a login attempt
+     *
+     * Only successful attempts reference their user agent in the dictionary. Failed ones can
+     * come from anyone with any header, and interning those would let the user_agents
+     * dictionary grow without bound, so they keep the (truncated) header on the row instead.
      */
     @Transactional
     public void recordLoginAttempt(String email, String ipAddress, String userAgent, boolean success, String failureReason) {
         LoginAttempt attempt = LoginAttempt.builder()
                 .email(email)
                 .ipAddress(ipAddress)
-                .userAgent(userAgent)
+                .userAgentId(success ? userAgentService.intern(userAgent) : null)
+                .userAgent(success ? null : UserAgentService.normalize(userAgent))
                 .success(success)
                 .failureReason(failureReason)
                 .build();
@@ -47,6 +54,25 @@ public class RateLimitService {
         loginAttemptRepository.save(attempt);
     }
 
+    /**
+     * Check email and IP address limits together and keep the failed attempt counts,
+     * which the login risk engine reuses as the IP and account reputation
+     */
+    public LoginRateStatus checkLoginRate(String email, String ipAddress) {
+        LocalDateTime since = LocalDateTime.now().minusSeconds(windowSeconds);
+        FailedAttemptCounts counts = loginAttemptRepository.countFailedAttempts(email, ipAddress, since);
+
+        boolean limited = false;
+        if (counts.getByEmail() >= maxLoginAttempts) {
+            log.warn("Rate limit exceeded for email: {}", email);
+            limited = true;
+        } else if (counts.getByIpAddress() >= maxLoginAttempts) {
+            log.warn("Rate limit exceeded for IP: {}", ipAddress);
+            limited = true;
+        }
+        return new LoginRateStatus(counts.getByEmail(), counts.getByIpAddress(), limited);
+    }
+
     /**
      * Check if email has exceeded rate limit
      */
@@ -94,10 +120,22 @@ public class RateLimitService {
 
     /**
      * Handle successful login
+     *
+     * @return true if the user had lockout state that was cleared and needs saving
      */
     @Transactional
-    public void handleSuccessfulLogin(User user) {
+    public boolean handleSuccessfulLogin(User user) {
+        if (user.getFailedLoginAttempts() == 0 && !Boolean.TRUE.equals(user.getAccountLocked())) {
+            return false;
+        }
         user.resetFailedAttempts();
+        return true;
+    }
+
+    /**
+     * Failed attempts within the rate limit window and whether the limit is reached
+     */
+    public record LoginRateStatus(long failedByEmail, long failedByIpAddress, boolean limited) {
     }
 
     /**
@@ -0,0 +1,75 @@
+package com.medhelp.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * MFA session store shared by all replicas through Redis. Each session is one JSON value
+ * written with SET ... EX, so Redis expires it natively and no sweeper is needed.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "application.auth.mfa.session-store", havingValue = "redis")
+public class RedisMfaSessionStore implements MfaSessionStore {
+
+    private static final String KEY_PREFIX = "mfa:session:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${application.auth.mfa.session-ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Override
+    public String create(Long userId, String deviceFingerprint, String ipAddress, String userAgent) {
+        String sessionId = UUID.randomUUID().toString();
+        StoredSession stored = new StoredSession(userId, deviceFingerprint, ipAddress, userAgent,
+                Instant.now().plusSeconds(ttlSeconds).toEpochMilli());
+        redisTemplate.opsForValue().set(KEY_PREFIX + sessionId, write(stored), Duration.ofSeconds(ttlSeconds));
+        return sessionId;
+    }
+
+    @Override
+    public Optional<PendingMfaSession> find(String sessionId) {
+        return Optional.ofNullable(redisTemplate.opsForValue().get(KEY_PREFIX + sessionId))
+                .map(this::read)
+                .map(stored -> new PendingMfaSession(stored.userId(), stored.deviceFingerprint(),
+                        stored.ipAddress(), stored.userAgent(), Instant.ofEpochMilli(stored.expiresAt())));
+    }
+
+    @Override
+    public boolean consume(String sessionId) {
+        // DEL is atomic: only one caller sees the key removed
+        return Boolean.TRUE.equals(redisTemplate.delete(KEY_PREFIX + sessionId));
+    }
+
+    private String write(StoredSession stored) {
+        try {
+            return objectMapper.writeValueAsString(stored);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize MFA session", e);
+        }
+    }
+
+    private StoredSession read(String json) {
+        try {
+            return objectMapper.readValue(json, StoredSession.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to deserialize MFA session", e);
+        }
+    }
+
+    record StoredSession(Long userId, String deviceFingerprint, String ipAddress, String userAgent,
+            long expiresAt) {
+    }
+}
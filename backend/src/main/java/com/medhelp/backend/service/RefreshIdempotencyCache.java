@@ -0,0 +1,121 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.dto.LoginResponse;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Short-lived, in-memory idempotency window for refresh calls.
+ *
+ * Several tabs of the SPA refresh at the same moment with the same cookie. The first
+ * caller rotates the token; every other caller presenting the same token while the
+ * rotation is running, or within the window after it completed, receives that same
+ * result instead of hitting the database and failing as a replay. Entries are keyed
+ * by the token hash, so raw presented tokens are never held.
+ */
+@Slf4j
+@Component
+public class RefreshIdempotencyCache {
+
+    @Value("${application.auth.refresh-token.idempotency-window-seconds:5}")
+    private long windowSeconds;
+
+    private final Map<ByteBuffer, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Return the refresh result for the given token hash, running the rotation only if no
+     * rotation for it is in flight or completed within the window. Failures are shared
+     * with the concurrent callers but not cached.
+     */
+    public RefreshedSession getOrRotate(byte[] tokenHash, Supplier<RefreshedSession> rotation) {
+        ByteBuffer key = ByteBuffer.wrap(tokenHash);
+        long now = System.nanoTime();
+        Entry candidate = new Entry();
+        Entry current = entries.compute(key,
+                (k, existing) -> existing == null || existing.isExpired(now, windowNanos()) ? candidate : existing);
+
+        if (current != candidate) {
+            log.debug("Refresh already rotated within the idempotency window, reusing result");
+            return await(current);
+        }
+
+        try {
+            RefreshedSession session = rotation.get();
+            candidate.complete(session);
+            return session;
+        } catch (Throwable e) {
+            // Errors too: an entry left in flight would block every later caller until restart
+            entries.remove(key, candidate);
+            candidate.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Evict results older than the window (runs every minute)
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long now = System.nanoTime();
+        entries.values().removeIf(entry -> entry.isExpired(now, windowNanos()));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private long windowNanos() {
+        return TimeUnit.SECONDS.toNanos(windowSeconds);
+    }
+
+    private static RefreshedSession await(Entry entry) {
+        try {
+            return entry.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static class Entry {
+        private final CompletableFuture<RefreshedSession> future = new CompletableFuture<>();
+        private volatile long completedAt;
+
+        void complete(RefreshedSession session) {
+            completedAt = System.nanoTime();
+            future.complete(session);
+        }
+
+        // In-flight rotations never expire; completed ones expire a window after completion
+        boolean isExpired(long now, long windowNanos) {
+            return future.isDone() && now - completedAt > windowNanos;
+        }
+    }
+
+    /**
+     * Outcome of one rotation, handed to every caller within the window
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class RefreshedSession {
+        private final String refreshToken;
+        private final LoginResponse response;
+    }
+}
@@ -0,0 +1,184 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Sends security alert emails, at most one per user per window.
+ *
+ * An email opens a window for its user in security_alert_windows. Alerts that reach the
+ * email worker while the window is open are held in the notification outbox until it
+ * closes, then sent together, which opens the next window. So the first alert goes out
+ * at once, and a brute-force run or a burst of new devices costs the user one email per
+ * window rather than one per event. A lone alert is sent as its usual email and anything
+ * more as a single digest, repeats of the same alert (the same device, another lockout)
+ * only raising its count. A digest lists at most max-alerts distinct alerts and counts
+ * the rest.
+ *
+ * Both the window and the held alerts are in the database, so nothing is lost when a
+ * node stops, and every node sees the same window.
+ */
+@Slf4j
+@Component
+public class SecurityAlertCoalescer {
+
+    private final EmailService emailService;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${application.notifications.security-digest.window-seconds:120}")
+    private long windowSeconds;
+
+    @Value("${application.notifications.security-digest.max-alerts:20}")
+    private int maxAlerts;
+
+    public SecurityAlertCoalescer(EmailService emailService, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.emailService = emailService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Email a user's pending security alerts and open a window, or, while the last window
+     * is still open, return when it closes so the alerts are held until then. The window
+     * and the queued email commit together.
+     */
+    @Transactional
+    public Optional<LocalDateTime> send(User user, List<NotificationEvent> alerts) {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<LocalDateTime> openUntil = openWindow(user.getId(), now);
+        if (openUntil.isPresent()) {
+            meterRegistry.counter("notification.coalesced").increment(alerts.size());
+            return openUntil;
+        }
+
+        if (alerts.size() == 1) {
+            sendSingle(alerts.get(0));
+        } else {
+            Digest digest = new Digest();
+            alerts.forEach(alert -> digest.add(alert, now, maxAlerts));
+            emailService.sendSecurityDigest(user, digest.items(), digest.omitted);
+            meterRegistry.counter("notification.digest.sent").increment();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Drop windows closed for more than a day (runs daily at 5 AM)
+     */
+    @Scheduled(cron = "0 0 5 * * *")
+    public void cleanupWindows() {
+        int deleted = jdbcTemplate.update("DELETE FROM security_alert_windows WHERE closes_at < ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(1)));
+        log.info("Cleaned up {} closed security alert windows", deleted);
+    }
+
+    // One statement decides between nodes: only a closed (or missing) window is replaced
+    private Optional<LocalDateTime> openWindow(Long userId, LocalDateTime now) {
+        int opened = jdbcTemplate.update("INSERT INTO security_alert_windows (user_id, closes_at) VALUES (?, ?) " +
+                        "ON CONFLICT (user_id) DO UPDATE SET closes_at = EXCLUDED.closes_at " +
+                        "WHERE security_alert_windows.closes_at <= ?",
+                userId, Timestamp.valueOf(now.plusSeconds(windowSeconds)), Timestamp.valueOf(now));
+        if (opened == 1) {
+            return Optional.empty();
+        }
+        return jdbcTemplate.query("SELECT closes_at FROM security_alert_windows WHERE user_id = ?",
+                (rs, rowNum) -> rs.getTimestamp("closes_at").toLocalDateTime(), userId).stream().findFirst();
+    }
+
+    private void sendSingle(NotificationEvent event) {
+        if (event instanceof NotificationEvent.NewDeviceLogin login) {
+            emailService.sendNewDeviceLoginAlert(login.user(), login.deviceName(), login.ipAddress(), login.loginTime());
+        } else if (event instanceof NotificationEvent.AccountLocked locked) {
+            emailService.sendAccountLockedEmail(locked.user(), locked.lockDurationMinutes());
+        } else if (event instanceof NotificationEvent.PasswordChanged changed) {
+            emailService.sendPasswordChangedEmail(changed.user());
+        } else {
+            log.warn("No email for security alert {}", event.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * One line of a digest: an alert and how often it happened in the window
+     */
+    public record DigestItem(String title, String detail, int count, LocalDateTime lastTime) {
+    }
+
+    private static final class Digest {
+
+        private final Map<String, AlertGroup> groups = new LinkedHashMap<>();
+        private int omitted;
+
+        private void add(NotificationEvent event, LocalDateTime now, int maxAlerts) {
+            LocalDateTime at = event instanceof NotificationEvent.NewDeviceLogin login ? login.loginTime() : now;
+            String key = groupKey(event);
+            AlertGroup group = groups.get(key);
+            if (group != null) {
+                group.count++;
+                if (at.isAfter(group.lastTime)) {
+                    group.lastTime = at;
+                }
+            } else if (groups.size() < maxAlerts) {
+                groups.put(key, AlertGroup.of(event, at));
+            } else {
+                omitted++;
+            }
+        }
+
+        private List<DigestItem> items() {
+            return groups.values().stream().map(AlertGroup::toItem).toList();
+        }
+
+        private static String groupKey(NotificationEvent event) {
+            if (event instanceof NotificationEvent.NewDeviceLogin login) {
+                return "new-device:" + login.deviceName() + ":" + login.ipAddress();
+            }
+            return event.getClass().getSimpleName();
+        }
+    }
+
+    private static final class AlertGroup {
+
+        private final String title;
+        private final String detail;
+        private int count = 1;
+        private LocalDateTime lastTime;
+
+        private AlertGroup(String title, String detail, LocalDateTime lastTime) {
+            this.title = title;
+            this.detail = detail;
+            this.lastTime = lastTime;
+        }
+
+        private static AlertGroup of(NotificationEvent event, LocalDateTime at) {
+            if (event instanceof NotificationEvent.NewDeviceLogin login) {
+                return new AlertGroup("New device login", login.deviceName() + ", " + login.ipAddress(), at);
+            }
+            if (event instanceof NotificationEvent.AccountLocked locked) {
+                return new AlertGroup("Account locked",
+                        "Locked for " + locked.lockDurationMinutes() + " minutes after repeated failed sign-ins", at);
+            }
+            if (event instanceof NotificationEvent.PasswordChanged) {
+                return new AlertGroup("Password changed", "Your password was changed", at);
+            }
+            return new AlertGroup("Security alert", event.summary(), at);
+        }
+
+        private DigestItem toItem() {
+            return new DigestItem(title, detail, count, lastTime);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Self-validating tokens for email links (email verification, password reset).
+ *
+ * A token is {@code payload.signature}, both base64url. The payload holds a version, the
+ * purpose, the user id, the expiry and a fingerprint of the user state the token acts
+ * on; the signature is an HMAC-SHA256 of the payload. A forged, altered, expired or
+ * wrong-purpose token is rejected from the token alone, without touching the database.
+ *
+ * Nothing is stored: a token stops working once the state it was issued for changes.
+ * A reset token is bound to the password hash, so resetting the password spends it; a
+ * verification token is bound to the email and its verified flag, so verifying spends
+ * it. The fingerprint is keyed, so the token reveals nothing about that state.
+ */
+@Service
+public class SignedTokenService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 1;
+    private static final int FINGERPRINT_LENGTH = 16;
+    private static final int PAYLOAD_LENGTH = 1 + 1 + Long.BYTES + Long.BYTES + FINGERPRINT_LENGTH;
+    private static final Base64.Encoder base64 = Base64.getUrlEncoder().withoutPadding();
+
+    // Mac instances are not thread-safe, so each thread keeps its own initialized one
+    private final ThreadLocal<Mac> hmac = ThreadLocal.withInitial(this::newHmac);
+
+    @Value("${application.auth.signed-token.key}")
+    private String key;
+
+    public enum Purpose {
+        EMAIL_VERIFICATION,
+        PASSWORD_RESET
+    }
+
+    /**
+     * A token that passed the signature, purpose and expiry checks
+     */
+    public record VerifiedToken(Purpose purpose, Long userId, Instant expiresAt, byte[] fingerprint) {
+    }
+
+    /**
+     * Issue a token for acting on the user's current state
+     */
+    public String issue(Purpose purpose, User user, Duration ttl) {
+        ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_LENGTH)
+                .put(VERSION)
+                .put((byte) purpose.ordinal())
+                .putLong(user.getId())
+                .putLong(Instant.now().plus(ttl).getEpochSecond())
+                .put(fingerprint(purpose, user));
+        byte[] payloadBytes = payload.array();
+        return base64.encodeToString(payloadBytes) + "." + base64.encodeToString(sign(payloadBytes));
+    }
+
+    /**
+     * Check the token's signature, purpose and expiry. Needs no database access.
+     */
+    public Optional<VerifiedToken> verify(Purpose purpose, String token) {
+        if (token == null) {
+            return Optional.empty();
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return Optional.empty();
+        }
+
+        byte[] payloadBytes;
+        byte[] signature;
+        try {
+            payloadBytes = Base64.getUrlDecoder().decode(token.substring(0, dot));
+            signature = Base64.getUrlDecoder().decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (payloadBytes.length != PAYLOAD_LENGTH || !MessageDigest.isEqual(sign(payloadBytes), signature)) {
+            return Optional.empty();
+        }
+
+        ByteBuffer payload = ByteBuffer.wrap(payloadBytes);
+        if (payload.get() != VERSION || payload.get() != purpose.ordinal()) {
+            return Optional.empty();
+        }
+        long userId = payload.getLong();
+        Instant expiresAt = Instant.ofEpochSecond(payload.getLong());
+        if (!Instant.now().isBefore(expiresAt)) {
+            return Optional.empty();
+        }
+        byte[] fingerprint = new byte[FINGERPRINT_LENGTH];
+        payload.get(fingerprint);
+        return Optional.of(new VerifiedToken(purpose, userId, expiresAt, fingerprint));
+    }
+
+    /**
+     * Whether the user is still in the state the token was issued for, i.e. it is unspent
+     */
+    public boolean matchesState(VerifiedToken token, User user) {
+        return token.userId().equals(user.getId())
+                && MessageDigest.isEqual(token.fingerprint(), fingerprint(token.purpose(), user));
+    }
+
+    private byte[] fingerprint(Purpose purpose, User user) {
+        String state = switch (purpose) {
+            case EMAIL_VERIFICATION -> user.getEmail() + "\n" + user.getEmailVerified();
+            case PASSWORD_RESET -> user.getPassword();
+        };
+        byte[] input = (purpose.name() + "\n" + state).getBytes(StandardCharsets.UTF_8);
+        return Arrays.copyOf(hmac.get().doFinal(input), FINGERPRINT_LENGTH);
+    }
+
+    private byte[] sign(byte[] payload) {
+        return hmac.get().doFinal(payload);
+    }
+
+    private Mac newHmac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("Failed to initialize signed token HMAC", e);
+        }
+    }
+}
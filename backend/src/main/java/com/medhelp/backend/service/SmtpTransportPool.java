@@ -0,0 +1,236 @@
+package com.medhelp.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of authenticated SMTP connections shared by the email outbox workers.
+ *
+ * JavaMailSender opens a connection, negotiates STARTTLS and authenticates for every
+ * message. Here a worker borrows a connection for a whole batch and hands it back open,
+ * so the handshake is paid once per connection rather than once per message. Idle
+ * connections are reused most-recently-used first and checked with a NOOP before reuse
+ * once they have been idle for a while; connections that are too old, have sent too many
+ * messages, fail the check or fail a send are closed instead of returned.
+ *
+ * Connection settings (host, port, credentials, protocol, mail.* properties) come from
+ * the Spring Boot mail configuration. Connect, read and write timeouts default to 10
+ * seconds when not configured there.
+ */
+@Slf4j
+@Component
+public class SmtpTransportPool {
+
+    private static final String DEFAULT_TIMEOUT_MILLIS = "10000";
+
+    private final Session session;
+    private final String protocol;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+
+    private final Semaphore permits;
+    private final BlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+
+    @Value("${application.email.smtp.pool.borrow-timeout-ms:30000}")
+    private long borrowTimeoutMillis;
+
+    @Value("${application.email.smtp.pool.max-idle-seconds:60}")
+    private long maxIdleSeconds;
+
+    @Value("${application.email.smtp.pool.validate-after-idle-seconds:5}")
+    private long validateAfterIdleSeconds;
+
+    @Value("${application.email.smtp.pool.max-age-seconds:600}")
+    private long maxAgeSeconds;
+
+    @Value("${application.email.smtp.pool.max-messages-per-connection:500}")
+    private int maxMessagesPerConnection;
+
+    public SmtpTransportPool(JavaMailSenderImpl mailSender,
+            @Value("${application.email.smtp.pool.max-connections:4}") int maxConnections) {
+        this.protocol = mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp";
+        this.host = mailSender.getHost();
+        this.port = mailSender.getPort();
+        this.username = mailSender.getUsername();
+        this.password = mailSender.getPassword();
+        this.session = Session.getInstance(withTimeouts(mailSender.getJavaMailProperties(), protocol));
+        this.permits = new Semaphore(maxConnections, true);
+    }
+
+    public MimeMessage createMimeMessage() {
+        return new MimeMessage(session);
+    }
+
+    /**
+     * Borrow a connection, waiting while all of them are in use. The connection is opened
+     * lazily on the first send and must be handed back by closing the lease.
+     */
+    public Lease borrow() throws MessagingException {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("Timed out waiting for an SMTP connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted waiting for an SMTP connection", e);
+        }
+        return new Lease(takeHealthyIdle());
+    }
+
+    /**
+     * Close idle connections past their idle or age limit or failing a NOOP (runs every 30 seconds)
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        int checked = idle.size();
+        for (int i = 0; i < checked; i++) {
+            PooledTransport pooled = idle.pollLast();
+            if (pooled == null) {
+                return;
+            }
+            if (isExpired(pooled, now) || !pooled.transport.isConnected()) {
+                pooled.close();
+            } else {
+                idle.offerLast(pooled);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        PooledTransport pooled;
+        while ((pooled = idle.poll()) != null) {
+            pooled.close();
+        }
+    }
+
+    int idleCount() {
+        return idle.size();
+    }
+
+    // Most recently used first: keeps a few connections hot and lets the rest age out
+    private PooledTransport takeHealthyIdle() {
+        long now = System.currentTimeMillis();
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            boolean stale = now - pooled.lastUsedAt > TimeUnit.SECONDS.toMillis(validateAfterIdleSeconds);
+            if (!isExpired(pooled, now) && (!stale || pooled.transport.isConnected())) {
+                return pooled;
+            }
+            pooled.close();
+        }
+        return null;
+    }
+
+    private boolean isExpired(PooledTransport pooled, long now) {
+        return now - pooled.lastUsedAt > TimeUnit.SECONDS.toMillis(maxIdleSeconds)
+                || now - pooled.createdAt > TimeUnit.SECONDS.toMillis(maxAgeSeconds)
+                || pooled.messagesSent >= maxMessagesPerConnection;
+    }
+
+    private PooledTransport open() throws MessagingException {
+        Transport transport = session.getTransport(protocol);
+        transport.connect(host, port, username, password);
+        log.debug("Opened SMTP connection to {}:{}", host, port);
+        return new PooledTransport(transport);
+    }
+
+    private static Properties withTimeouts(Properties configured, String protocol) {
+        Properties properties = new Properties();
+        properties.putAll(configured);
+        properties.putIfAbsent("mail." + protocol + ".connectiontimeout", DEFAULT_TIMEOUT_MILLIS);
+        properties.putIfAbsent("mail." + protocol + ".timeout", DEFAULT_TIMEOUT_MILLIS);
+        properties.putIfAbsent("mail." + protocol + ".writetimeout", DEFAULT_TIMEOUT_MILLIS);
+        return properties;
+    }
+
+    /**
+     * A borrowed connection, used by one thread at a time for any number of messages
+     */
+    public class Lease implements AutoCloseable {
+
+        private PooledTransport pooled;
+        private boolean closed;
+
+        private Lease(PooledTransport pooled) {
+            this.pooled = pooled;
+        }
+
+        /**
+         * Send one message, reconnecting if an earlier send on this lease broke the connection.
+         * A failed send closes the connection, since the session state is unknown after it.
+         */
+        public void send(MimeMessage message) throws MessagingException {
+            if (pooled == null) {
+                pooled = open();
+            }
+            try {
+                if (message.getSentDate() == null) {
+                    message.setSentDate(new Date());
+                }
+                message.saveChanges();
+                pooled.transport.sendMessage(message, message.getAllRecipients());
+                pooled.messagesSent++;
+                pooled.lastUsedAt = System.currentTimeMillis();
+            } catch (MessagingException | RuntimeException e) {
+                pooled.close();
+                pooled = null;
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (pooled != null) {
+                if (isExpired(pooled, System.currentTimeMillis())) {
+                    pooled.close();
+                } else {
+                    idle.offerFirst(pooled);
+                }
+            }
+            permits.release();
+        }
+    }
+
+    private static final class PooledTransport {
+
+        private final Transport transport;
+        private final long createdAt = System.currentTimeMillis();
+        private long lastUsedAt = createdAt;
+        private int messagesSent;
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+
+        private void close() {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Error closing SMTP connection: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -1,19 +1,32 @@
 package com.medhelp.backend.service;
 
 import com.medhelp.backend.config.JwtConfigProperties;
+import com.medhelp.backend.dto.DeviceSessionsResponse;
+import com.medhelp.backend.dto.SessionPageResponse;
+import com.medhelp.backend.dto.SessionResponse;
 import com.medhelp.backend.model.RefreshToken;
 import com.medhelp.backend.model.User;
 import com.medhelp.backend.repository.RefreshTokenRepository;
 import com.medhelp.backend.security.JwtUtils;
+import com.medhelp.backend.util.UserAgentParser.UserAgentInfo;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
@@ -22,6 +35,7 @@ import java.util.Arrays;
 import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 @Slf4j
 @Service
@@ -29,11 +43,30 @@ import java.util.Optional;
 public class TokenService {
 
     private static final String REFRESH_TOKEN_COOKIE_NAME = "refresh_token";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int MAX_SESSION_PAGE_SIZE = 100;
     private static final SecureRandom secureRandom = new SecureRandom();
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(TokenService::newSha256);
+
+    // Mac instances are not thread-safe, so each thread keeps its own initialized one
+    private final ThreadLocal<Mac> hmac = ThreadLocal.withInitial(this::newHmac);
 
     private final RefreshTokenRepository refreshTokenRepository;
     private final JwtConfigProperties jwtConfig;
     private final JwtUtils jwtUtils;
+    private final UserAgentService userAgentService;
+
+    @Value("${application.auth.refresh-token.reuse-grace-seconds:5}")
+    private int reuseGraceSeconds;
+
+    @Value("${application.auth.refresh-token.partition-lead-weeks:2}")
+    private int partitionLeadWeeks;
+
+    @Value("${application.auth.refresh-token.hash-key}")
+    private String hashKey;
+
+    @Value("${application.auth.refresh-token.legacy-hash-fallback:true}")
+    private boolean legacyHashFallback;
 
     /**
      * Generate a random refresh token
@@ -45,25 +78,78 @@ public class TokenService {
     }
 
     /**
-     * Hash a token using SHA-256
+     * Hash a token with the keyed HMAC-SHA256 stored in token_hash (32 bytes)
+     */
+    byte[] hashToken(String token) {
+        return hmac.get().doFinal(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Unkeyed SHA-256 used before token hashes were keyed, only for tokens issued back then
      */
-    private String hashToken(String token) {
+    private byte[] legacyHashToken(String token) {
+        return sha256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newHmac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(hashKey.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("Failed to initialize refresh token HMAC", e);
+        }
+    }
+
+    private static MessageDigest newSha256() {
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(token.getBytes());
-            return Base64.getEncoder().encodeToString(hash);
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Failed to hash token", e);
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Revoke the presented token if it is active, falling back to its legacy hash
+     */
+    private Optional<RefreshToken> revokeIfActive(String token, byte[] tokenHash, LocalDateTime now) {
+        Optional<RefreshToken> revoked = refreshTokenRepository.revokeIfActive(tokenHash, now);
+        if (revoked.isEmpty() && legacyHashFallback) {
+            revoked = refreshTokenRepository.revokeIfActive(legacyHashToken(token), now);
+        }
+        return revoked;
+    }
+
+    /**
+     * Revoke the family of a replayed token, falling back to its legacy hash, so a token
+     * issued before keyed hashing is caught as well
+     */
+    private int revokeFamilyIfReused(String token, byte[] tokenHash, LocalDateTime now) {
+        LocalDateTime graceCutoff = now.minusSeconds(reuseGraceSeconds);
+        int revoked = refreshTokenRepository.revokeFamilyOfReusedToken(tokenHash, graceCutoff, now);
+        if (revoked == 0 && legacyHashFallback) {
+            revoked = refreshTokenRepository.revokeFamilyOfReusedToken(legacyHashToken(token), graceCutoff, now);
         }
+        return revoked;
     }
 
     /**
-     * Create and persist a refresh token
+     * Create and persist a refresh token that starts a new token family (login)
      */
     @Transactional
     public String createRefreshToken(User user, String deviceFingerprint, String ipAddress, String userAgent) {
+        return createRefreshToken(user, deviceFingerprint, ipAddress, userAgentService.intern(userAgent),
+                UUID.randomUUID());
+    }
+
+    /**
+     * Create and persist a refresh token within an existing family (rotation)
+     */
+    @Transactional
+    public String createRefreshToken(User user, String deviceFingerprint, String ipAddress, Long userAgentId,
+            UUID familyId) {
         String token = generateRandomToken();
-        String tokenHash = hashToken(token);
+        byte[] tokenHash = hashToken(token);
 
         LocalDateTime expiresAt = LocalDateTime.now()
                 .plusSeconds(jwtConfig.getRefreshTokenExpiration() / 1000);
@@ -71,58 +157,62 @@ public class TokenService {
         RefreshToken refreshToken = RefreshToken.builder()
                 .tokenHash(tokenHash)
                 .user(user)
+                .familyId(familyId)
                 .deviceFingerprint(deviceFingerprint)
                 .ipAddress(ipAddress)
-                .userAgent(userAgent)
+                .userAgentId(userAgentId)
                 .expiresAt(expiresAt)
                 .isRevoked(false)
                 .build();
 
         refreshTokenRepository.save(refreshToken);
-        log.debug("Created refresh token for user: {}", user.getEmail());
+        log.debug("Created refresh token for user id: {}", user.getId());
 
         return token;
     }
 
     /**
      * Validate and rotate refresh token
+     *
+     * The presented token is revoked with a single conditional UPDATE and exactly one
+     * replacement is inserted. When several requests present the same token at once,
+     * the first UPDATE wins and the others see no active row, so they get an empty result
+     * instead of racing each other into extra tokens.
+     *
+     * A token that was rotated or revoked longer than the grace period ago is treated as
+     * stolen: its whole family is revoked in the same (failure-only) statement.
      */
     @Transactional
-    public Optional<RefreshToken> validateAndRotate(String token) {
-        String tokenHash = hashToken(token);
-        
-        Optional<RefreshToken> optionalRefreshToken = refreshTokenRepository.findByTokenHash(tokenHash);
-        
-        if (optionalRefreshToken.isEmpty()) {
-            log.warn("Refresh token not found in database");
-            return Optional.empty();
-        }
+    public Optional<RotatedRefreshToken> validateAndRotate(String token) {
+        byte[] tokenHash = hashToken(token);
 
-        RefreshToken refreshToken = optionalRefreshToken.get();
+        LocalDateTime now = LocalDateTime.now();
+        Optional<RefreshToken> revokedToken = revokeIfActive(token, tokenHash, now);
 
-        // Check if token is valid
-        if (!refreshToken.isValid()) {
-            log.warn("Refresh token is invalid (expired or revoked) for user: {}", 
-                    refreshToken.getUser().getEmail());
+        if (revokedToken.isEmpty()) {
+            int revoked = revokeFamilyIfReused(token, tokenHash, now);
+            if (revoked > 0) {
+                log.warn("Refresh token reuse detected, revoked {} active token(s) in its family", revoked);
+            } else {
+                log.warn("Refresh token is unknown, expired or already rotated");
+            }
             return Optional.empty();
         }
 
-        // Revoke the old token
-        refreshToken.setIsRevoked(true);
-        refreshToken.setRevokedAt(LocalDateTime.now());
-        refreshTokenRepository.save(refreshToken);
+        RefreshToken previous = revokedToken.get();
 
-        // Create a new refresh token (rotation)
+        // Create the replacement token (rotation)
         String newToken = createRefreshToken(
-                refreshToken.getUser(),
-                refreshToken.getDeviceFingerprint(),
-                refreshToken.getIpAddress(),
-                refreshToken.getUserAgent()
+                previous.getUser(),
+                previous.getDeviceFingerprint(),
+                previous.getIpAddress(),
+                previous.getUserAgentId(),
+                previous.getFamilyId()
         );
 
-        log.debug("Rotated refresh token for user: {}", refreshToken.getUser().getEmail());
+        log.debug("Rotated refresh token for user id: {}", previous.getUser().getId());
 
-        return Optional.of(refreshToken);
+        return Optional.of(new RotatedRefreshToken(newToken, previous));
     }
 
     /**
@@ -130,13 +220,8 @@ public class TokenService {
      */
     @Transactional
     public void revokeToken(String token) {
-        String tokenHash = hashToken(token);
-        refreshTokenRepository.findByTokenHash(tokenHash).ifPresent(refreshToken -> {
-            refreshToken.setIsRevoked(true);
-            refreshToken.setRevokedAt(LocalDateTime.now());
-            refreshTokenRepository.save(refreshToken);
-            log.debug("Revoked refresh token for user: {}", refreshToken.getUser().getEmail());
-        });
+        revokeIfActive(token, hashToken(token), LocalDateTime.now()).ifPresent(refreshToken ->
+                log.debug("Revoked refresh token for user id: {}", refreshToken.getUser().getId()));
     }
 
     /**
@@ -149,10 +234,45 @@ public class TokenService {
     }
 
     /**
-     * Get all active sessions for a user
+     * Get one page of a user's active (unrevoked, unexpired) sessions, newest first.
+     * Pass the previous page's nextCursor to continue; a null cursor starts at the top.
+     */
+    @Transactional(readOnly = true)
+    public SessionPageResponse getActiveSessions(Long userId, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_SESSION_PAGE_SIZE));
+        LocalDateTime now = LocalDateTime.now();
+
+        // Fetch one extra row to learn whether another page exists
+        List<SessionResponse> sessions;
+        if (cursor == null || cursor.isBlank()) {
+            sessions = refreshTokenRepository.findActiveSessions(userId, now, Limit.of(pageSize + 1));
+        } else {
+            SessionCursor position = SessionCursor.decode(cursor);
+            sessions = refreshTokenRepository.findActiveSessionsAfter(userId, now, position.createdAt(),
+                    position.id(), Limit.of(pageSize + 1));
+        }
+
+        String nextCursor = null;
+        if (sessions.size() > pageSize) {
+            sessions = sessions.subList(0, pageSize);
+            SessionResponse last = sessions.get(pageSize - 1);
+            nextCursor = new SessionCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        sessions.forEach(this::describeUserAgent);
+
+        return SessionPageResponse.builder()
+                .sessions(sessions)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Get a user's active sessions grouped per device
      */
-    public List<RefreshToken> getActiveTokensForUser(User user) {
-        return refreshTokenRepository.findAllByUserAndIsRevokedFalse(user);
+    @Transactional(readOnly = true)
+    public List<DeviceSessionsResponse> getActiveSessionsByDevice(Long userId) {
+        return refreshTokenRepository.countActiveSessionsByDevice(userId, LocalDateTime.now());
     }
 
     /**
@@ -199,12 +319,61 @@ public class TokenService {
     }
 
     /**
-     * Scheduled job to clean up expired/revoked tokens (runs daily at 2 AM)
+     * Keep the expires_at partitions ahead of the longest possible token lifetime and drop
+     * the ones that only hold expired tokens (runs on startup and daily at 2 AM). Every
+     * node runs it; the database functions serialise concurrent runs. A failure is only
+     * logged, since tokens past the last partition still land in the default partition.
      */
+    @EventListener(ApplicationReadyEvent.class)
     @Scheduled(cron = "0 0 2 * * *")
-    @Transactional
-    public void cleanupExpiredTokens() {
-        refreshTokenRepository.deleteExpiredOrRevoked(LocalDateTime.now());
-        log.info("Cleaned up expired and revoked refresh tokens");
+    public void maintainPartitions() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            int created = refreshTokenRepository.createPartitionsUntil(
+                    now.plusSeconds(jwtConfig.getRefreshTokenExpiration() / 1000).plusWeeks(partitionLeadWeeks));
+            int dropped = refreshTokenRepository.dropPartitionsExpiredBefore(now);
+            log.info("Refresh token partitions maintained: {} created, {} dropped", created, dropped);
+        } catch (RuntimeException e) {
+            log.error("Failed to maintain refresh token partitions", e);
+        }
+    }
+
+    private void describeUserAgent(SessionResponse session) {
+        UserAgentInfo info = userAgentService.parse(session.getUserAgent());
+        session.setBrowser(info.browser());
+        session.setOs(info.os());
+        session.setDeviceClass(info.deviceClass().name());
+    }
+
+    /**
+     * Keyset position of the last session on a page, encoded as an opaque URL-safe string
+     */
+    record SessionCursor(LocalDateTime createdAt, Long id) {
+
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static SessionCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new SessionCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Invalid session cursor");
+            }
+        }
+    }
+
+    /**
+     * Result of a rotation: the new raw token and the row it replaced
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class RotatedRefreshToken {
+        private final String token;
+        private final RefreshToken previous;
     }
 }
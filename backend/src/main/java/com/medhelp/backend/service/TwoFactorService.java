@@ -2,29 +2,76 @@ package com.medhelp.backend.service;
 
 import com.medhelp.backend.model.MfaSettings;
 import com.medhelp.backend.model.User;
+import com.medhelp.backend.repository.MfaBackupCodeRepository;
 import com.medhelp.backend.repository.MfaSettingsRepository;
+import com.medhelp.backend.repository.UserRepository;
+import com.medhelp.backend.util.LruCache;
 import com.warrenstrange.googleauth.GoogleAuthenticator;
 import com.warrenstrange.googleauth.GoogleAuthenticatorKey;
 import com.warrenstrange.googleauth.GoogleAuthenticatorQRGenerator;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class TwoFactorService {
 
+    // GoogleAuthenticator defaults: 30 second steps, one step of clock drift either way
+    private static final long TIME_STEP_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final int WINDOW_STEPS = 1;
+    private static final int TOTP_CODE_LENGTH = 6;
+    private static final int BACKUP_CODE_COUNT = 10;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(TwoFactorService::newSha256);
+
     private final MfaSettingsRepository mfaSettingsRepository;
+    private final MfaBackupCodeRepository mfaBackupCodeRepository;
+    private final UserRepository userRepository;
     private final GoogleAuthenticator gAuth = new GoogleAuthenticator();
     private static final SecureRandom secureRandom = new SecureRandom();
 
+    // Mac instances are not thread-safe, so each thread keeps its own initialized one
+    private final ThreadLocal<Mac> hmac = ThreadLocal.withInitial(this::newHmac);
+    private final String backupCodeKey;
+    private final boolean legacyBackupCodeFallback;
+
+    // Secrets of users with 2FA enabled, evicted on every change to their MFA settings
+    private final LruCache<Long, CachedSecret> secretCache;
+    private final long secretCacheTtlMillis;
+
+    public TwoFactorService(
+            MfaSettingsRepository mfaSettingsRepository,
+            MfaBackupCodeRepository mfaBackupCodeRepository,
+            UserRepository userRepository,
+            @Value("${application.auth.mfa.secret-cache-size:10000}") int secretCacheSize,
+            @Value("${application.auth.mfa.secret-cache-ttl-seconds:300}") long secretCacheTtlSeconds,
+            @Value("${application.auth.mfa.backup-code.hash-key}") String backupCodeKey,
+            @Value("${application.auth.mfa.backup-code.legacy-hash-fallback:true}") boolean legacyBackupCodeFallback) {
+        this.mfaSettingsRepository = mfaSettingsRepository;
+        this.mfaBackupCodeRepository = mfaBackupCodeRepository;
+        this.userRepository = userRepository;
+        this.secretCache = new LruCache<>(secretCacheSize);
+        this.secretCacheTtlMillis = TimeUnit.SECONDS.toMillis(secretCacheTtlSeconds);
+        this.backupCodeKey = backupCodeKey;
+        this.legacyBackupCodeFallback = legacyBackupCodeFallback;
+    }
+
     /**
      * Enable 2FA for user
      */
@@ -38,17 +85,17 @@ public class TwoFactorService {
             settings.setEnabled(true);
         } else {
             String secret = generateNewSecret();
-            List<String> backupCodes = generateBackupCodes(10);
             
             settings = MfaSettings.builder()
                     .user(user)
                     .enabled(true)
                     .secret(secret)
-                    .backupCodes(String.join(",", backupCodes))
                     .build();
         }
         
         MfaSettings saved = mfaSettingsRepository.save(settings);
+        syncMfaEnabled(user, true);
+        secretCache.remove(user.getId());
         log.info("2FA enabled for user: {}", user.getEmail());
         return saved;
     }
@@ -63,6 +110,9 @@ public class TwoFactorService {
             mfaSettingsRepository.save(settings);
             log.info("2FA disabled for user: {}", user.getEmail());
         });
+        mfaBackupCodeRepository.deleteAllByUserId(user.getId());
+        syncMfaEnabled(user, false);
+        secretCache.remove(user.getId());
     }
 
     /**
@@ -73,17 +123,16 @@ public class TwoFactorService {
         MfaSettings settings = mfaSettingsRepository.findByUser(user)
                 .orElseGet(() -> {
                     String secret = generateNewSecret();
-                    List<String> backupCodes = generateBackupCodes(10);
                     
                     MfaSettings newSettings = MfaSettings.builder()
                             .user(user)
                             .enabled(false) // Not enabled until verified
                             .secret(secret)
-                            .backupCodes(String.join(",", backupCodes))
                             .build();
                     
                     return mfaSettingsRepository.save(newSettings);
                 });
+        secretCache.remove(user.getId());
 
         return generateQrCodeImageUri(settings.getSecret(), user.getEmail());
     }
@@ -100,11 +149,13 @@ public class TwoFactorService {
         }
 
         MfaSettings settings = optionalSettings.get();
-        boolean isValid = isOtpValid(settings.getSecret(), code);
+        boolean isValid = isOtpValid(user.getId(), settings.getSecret(), code);
         
         if (isValid && !settings.getEnabled()) {
             settings.setEnabled(true);
             mfaSettingsRepository.save(settings);
+            syncMfaEnabled(user, true);
+            secretCache.remove(user.getId());
             log.info("2FA setup verified for user: {}", user.getEmail());
         }
         
@@ -113,45 +164,65 @@ public class TwoFactorService {
 
     /**
      * Validate OTP code
+     *
+     * Six digit codes are TOTP codes checked against the cached secret; anything else is
+     * treated as a backup code and consumed by a single indexed DELETE.
      */
     public boolean validateOtp(User user, String code) {
-        return mfaSettingsRepository.findByUserAndEnabledTrue(user)
-                .map(settings -> isOtpValid(settings.getSecret(), code) || isBackupCode(settings, code))
-                .orElse(false);
+        if (code == null) {
+            return false;
+        }
+        String trimmed = code.trim();
+        if (trimmed.length() == TOTP_CODE_LENGTH) {
+            return findEnabledSecret(user)
+                    .map(secret -> isOtpValid(user.getId(), secret, trimmed))
+                    .orElse(false);
+        }
+        return findEnabledSecret(user).isPresent() && consumeBackupCode(user, trimmed);
     }
 
     /**
-     * Check if user has 2FA enabled
+     * Check if user has 2FA enabled, from the flag carried on the loaded user (no query)
      */
     public boolean is2FAEnabled(User user) {
-        return mfaSettingsRepository.existsByUserAndEnabledTrue(user);
+        return Boolean.TRUE.equals(user.getMfaEnabled());
     }
 
     /**
-     * Get backup codes for user
+     * Count the backup codes a user has left (codes are stored hashed and cannot be shown again)
      */
-    public List<String> getBackupCodes(User user) {
-        return mfaSettingsRepository.findByUser(user)
-                .map(settings -> List.of(settings.getBackupCodes().split(",")))
-                .orElse(List.of());
+    public long countRemainingBackupCodes(User user) {
+        return mfaBackupCodeRepository.countByUserId(user.getId());
     }
 
     /**
      * Regenerate backup codes
+     *
+     * Replaces all of the user's codes; the new plaintext codes are returned only here.
      */
     @Transactional
     public List<String> regenerateBackupCodes(User user) {
-        List<String> newCodes = generateBackupCodes(10);
-        
-        mfaSettingsRepository.findByUser(user).ifPresent(settings -> {
-            settings.setBackupCodes(String.join(",", newCodes));
-            mfaSettingsRepository.save(settings);
-            log.info("Backup codes regenerated for user: {}", user.getEmail());
-        });
-        
+        if (mfaSettingsRepository.findByUser(user).isEmpty()) {
+            return List.of();
+        }
+
+        List<String> newCodes = generateBackupCodes(BACKUP_CODE_COUNT);
+        mfaBackupCodeRepository.deleteAllByUserId(user.getId());
+        mfaBackupCodeRepository.insertAll(user.getId(), newCodes.stream()
+                .map(code -> hashBackupCode(user.getId(), code))
+                .toList());
+        secretCache.remove(user.getId());
+        log.info("Backup codes regenerated for user: {}", user.getEmail());
+
         return newCodes;
     }
 
+    // Targeted column update plus the in-memory copy, so the caller's user reflects it too
+    private void syncMfaEnabled(User user, boolean enabled) {
+        userRepository.updateMfaEnabled(user.getId(), enabled);
+        user.setMfaEnabled(enabled);
+    }
+
     private String generateNewSecret() {
         final GoogleAuthenticatorKey key = gAuth.createCredentials();
         return key.getKey();
@@ -162,25 +233,99 @@ public class TwoFactorService {
         return GoogleAuthenticatorQRGenerator.getOtpAuthTotpURL("MedHelp", email, key);
     }
 
-    private boolean isOtpValid(String secret, String code) {
+    private Optional<String> findEnabledSecret(User user) {
+        long now = System.currentTimeMillis();
+        CachedSecret cached = secretCache.get(user.getId());
+        if (cached != null && cached.expiresAt() > now) {
+            return Optional.of(cached.secret());
+        }
+
+        Optional<String> secret = mfaSettingsRepository.findByUserAndEnabledTrue(user).map(MfaSettings::getSecret);
+        secret.ifPresent(value -> secretCache.put(user.getId(), new CachedSecret(value, now + secretCacheTtlMillis)));
+        return secret;
+    }
+
+    /**
+     * Check the code against each time step in the window. A matching step is accepted only
+     * if it is later than the last one accepted for this user, which the database decides so
+     * that a code cannot be replayed on another node.
+     */
+    private boolean isOtpValid(Long userId, String secret, String code) {
+        int verificationCode;
         try {
-            int verificationCode = Integer.parseInt(code);
-            return gAuth.authorize(secret, verificationCode);
+            verificationCode = Integer.parseInt(code);
         } catch (NumberFormatException e) {
             return false;
         }
+
+        long current = currentStep();
+        for (long step = current - WINDOW_STEPS; step <= current + WINDOW_STEPS; step++) {
+            if (gAuth.getTotpPassword(secret, step * TIME_STEP_MILLIS) == verificationCode) {
+                return mfaSettingsRepository.markStepAccepted(userId, step) == 1;
+            }
+        }
+        return false;
+    }
+
+    private static long currentStep() {
+        return System.currentTimeMillis() / TIME_STEP_MILLIS;
+    }
+
+    private boolean consumeBackupCode(User user, String code) {
+        boolean consumed = mfaBackupCodeRepository.consume(user.getId(), hashBackupCode(user.getId(), code))
+                .isPresent();
+        if (!consumed && legacyBackupCodeFallback) {
+            consumed = mfaBackupCodeRepository.consume(user.getId(), legacyHashBackupCode(user.getId(), code))
+                    .isPresent();
+        }
+        if (consumed) {
+            log.info("Backup code used by user: {}", user.getEmail());
+        }
+        return consumed;
+    }
+
+    /**
+     * Keyed HMAC-SHA256 of the user id and code, so that a leaked table cannot be brute-forced
+     * over the 10^8 possible codes without the key
+     */
+    private byte[] hashBackupCode(Long userId, String code) {
+        return hmac.get().doFinal((userId + ":" + code).getBytes(StandardCharsets.UTF_8));
     }
 
-    private boolean isBackupCode(MfaSettings settings, String code) {
-        List<String> codes = List.of(settings.getBackupCodes().split(","));
-        return codes.contains(code.trim());
+    /**
+     * Unkeyed SHA-256 used before backup code hashes were keyed, only for codes issued back then
+     */
+    private static byte[] legacyHashBackupCode(Long userId, String code) {
+        return sha256.get().digest((userId + ":" + code).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newHmac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(backupCodeKey.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("Failed to initialize backup code HMAC", e);
+        }
     }
 
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Distinct, since each (user, code) hash is unique
     private List<String> generateBackupCodes(int count) {
-        List<String> codes = new ArrayList<>();
-        for (int i = 0; i < count; i++) {
+        Set<String> codes = new LinkedHashSet<>();
+        while (codes.size() < count) {
             codes.add(String.format("%08d", secureRandom.nextInt(100000000)));
         }
-        return codes;
+        return new ArrayList<>(codes);
+    }
+
+    private record CachedSecret(String secret, long expiresAt) {
     }
 }
@@ -0,0 +1,119 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.repository.UserAgentRepository;
+import com.medhelp.backend.util.LruCache;
+import com.medhelp.backend.util.UserAgentParser;
+import com.medhelp.backend.util.UserAgentParser.UserAgentInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Parses and interns user-agent strings.
+ *
+ * Every login repeats a handful of distinct user agents, so both the parsed result and the
+ * dictionary id are kept in bounded per-node LRU caches keyed by the (truncated) string.
+ * Only a string never seen by this node costs a database statement.
+ */
+@Service
+public class UserAgentService {
+
+    // Longer headers are cut before parsing, hashing and storing. Counted in code points, as
+    // left() does in V12, so both produce the same string and hash.
+    static final int MAX_USER_AGENT_LENGTH = 512;
+
+    private static final ThreadLocal<MessageDigest> sha256 = ThreadLocal.withInitial(UserAgentService::newSha256);
+
+    private final UserAgentRepository userAgentRepository;
+    private final LruCache<String, UserAgentInfo> parsedCache;
+    private final LruCache<String, Long> idCache;
+
+    public UserAgentService(
+            UserAgentRepository userAgentRepository,
+            @Value("${application.auth.user-agent.cache-size:2000}") int cacheSize) {
+        this.userAgentRepository = userAgentRepository;
+        this.parsedCache = new LruCache<>(cacheSize);
+        this.idCache = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * Browser, OS and device class of a user agent
+     */
+    public UserAgentInfo parse(String userAgent) {
+        String normalized = normalize(userAgent);
+        if (normalized == null) {
+            return UserAgentParser.UNKNOWN;
+        }
+
+        UserAgentInfo info = parsedCache.get(normalized);
+        if (info == null) {
+            info = UserAgentParser.parse(normalized);
+            parsedCache.put(normalized, info);
+        }
+        return info;
+    }
+
+    /**
+     * Dictionary id of a user agent, inserting it on first sight. Returns null for a
+     * missing header.
+     */
+    public Long intern(String userAgent) {
+        String normalized = normalize(userAgent);
+        if (normalized == null) {
+            return null;
+        }
+
+        Long cached = idCache.get(normalized);
+        if (cached != null) {
+            return cached;
+        }
+
+        byte[] hash = sha256.get().digest(normalized.getBytes(StandardCharsets.UTF_8));
+        Long id = userAgentRepository.intern(hash, normalized)
+                .or(() -> userAgentRepository.intern(hash, normalized))
+                .orElseThrow(() -> new IllegalStateException("Could not intern user agent"));
+        cacheAfterCommit(normalized, id);
+        return id;
+    }
+
+    // A row inserted by a transaction that later rolls back must not stay cached
+    private void cacheAfterCommit(String userAgent, Long id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            idCache.put(userAgent, id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                idCache.put(userAgent, id);
+            }
+        });
+    }
+
+    /**
+     * The header as stored: null when missing, otherwise at most MAX_USER_AGENT_LENGTH
+     * code points
+     */
+    static String normalize(String userAgent) {
+        if (userAgent == null || userAgent.isBlank()) {
+            return null;
+        }
+        if (userAgent.codePointCount(0, userAgent.length()) <= MAX_USER_AGENT_LENGTH) {
+            return userAgent;
+        }
+        return userAgent.substring(0, userAgent.offsetByCodePoints(0, MAX_USER_AGENT_LENGTH));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
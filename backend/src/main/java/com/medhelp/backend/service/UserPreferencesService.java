@@ -1,9 +1,10 @@
 package com.medhelp.backend.service;
 
 import com.medhelp.backend.dto.UserPreferencesRequest;
-import com.medhelp.backend.model.User;
 import com.medhelp.backend.model.UserPreferences;
 import com.medhelp.backend.repository.UserPreferencesRepository;
+import com.medhelp.backend.repository.UserRepository;
+import com.medhelp.backend.util.EntityTags;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -15,17 +16,27 @@ import org.springframework.transaction.annotation.Transactional;
 public class UserPreferencesService {
 
     private final UserPreferencesRepository userPreferencesRepository;
+    private final UserRepository userRepository;
 
-    @Transactional
+    /**
+     * The saved preferences, or the defaults if the user never saved any. Does not write.
+     */
+    @Transactional(readOnly = true)
     public UserPreferences getUserPreferences(Long userId) {
         return userPreferencesRepository.findByUserId(userId)
-                .orElseGet(() -> createDefaultPreferences(userId));
+                .orElseGet(() -> UserPreferences.builder().build());
     }
 
+    /**
+     * Replace the preferences. With an If-Match header the write only goes ahead if it is
+     * based on the current version.
+     */
     @Transactional
-    public UserPreferences updatePreferences(Long userId, UserPreferencesRequest request) {
-        UserPreferences preferences = userPreferencesRepository.findByUserId(userId)
-                .orElseGet(() -> createDefaultPreferences(userId));
+    public UserPreferences updatePreferences(Long userId, UserPreferencesRequest request, String ifMatch) {
+        UserPreferences current = userPreferencesRepository.findByUserId(userId).orElse(null);
+        EntityTags.checkIfMatch(ifMatch,
+                EntityTags.of(EntityTags.PREFERENCES, userId, current != null ? current.getVersion() : null));
+        UserPreferences preferences = current != null ? current : createDefaultPreferences(userId);
 
         preferences.setLanguage(request.getLanguage());
         preferences.setTimezone(request.getTimezone());
@@ -41,11 +52,8 @@ public class UserPreferencesService {
     public UserPreferences createDefaultPreferences(Long userId) {
         log.info("Creating default preferences for user: {}", userId);
 
-        User user = new User();
-        user.setId(userId);
-
         UserPreferences preferences = UserPreferences.builder()
-                .user(user)
+                .user(userRepository.getReferenceById(userId))
                 .language("en")
                 .timezone("America/New_York")
                 .dateFormat("MM/DD/YYYY")
@@ -3,11 +3,14 @@ package com.medhelp.backend.service;
 import com.medhelp.backend.dto.UpdateProfileRequest;
 import com.medhelp.backend.model.User;
 import com.medhelp.backend.repository.UserRepository;
+import com.medhelp.backend.util.EntityTags;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Optional;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
@@ -24,6 +27,17 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("User not found with email: " + email));
     }
 
+    @Transactional(readOnly = true)
+    public Optional<User> findUserByEmail(String email) {
+        return userRepository.findByEmail(email);
+    }
+
+    @Transactional(readOnly = true)
+    public User getUserWithAuthorities(Long id) {
+        return userRepository.findWithAuthoritiesById(id)
+                .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
+    }
+
     @Transactional(readOnly = true)
     public User getUserByUsername(String username) {
         return userRepository.findByUsername(username)
@@ -51,8 +65,13 @@ public class UserService {
         return userRepository.existsByUsername(username);
     }
 
+    /**
+     * Apply the non-null fields of the request. With an If-Match header the write only goes
+     * ahead if it is based on the current version.
+     */
     @Transactional
-    public User updateProfile(User user, UpdateProfileRequest request) {
+    public User updateProfile(User user, UpdateProfileRequest request, String ifMatch) {
+        EntityTags.checkIfMatch(ifMatch, EntityTags.of(EntityTags.USER, user.getId(), user.getVersion()));
         log.info("Updating profile for user: {}", user.getEmail());
 
         if (request.getFirstName() != null) {
@@ -0,0 +1,75 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.dto.UserSettingsResponse;
+import com.medhelp.backend.model.NotificationSettings;
+import com.medhelp.backend.model.PrivacySettings;
+import com.medhelp.backend.model.UserPreferences;
+import com.medhelp.backend.repository.UserRepository;
+import com.medhelp.backend.repository.UserSettingsReadRepository.UserSettingsRow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Combined read of all of a user's settings for the settings screen.
+ *
+ * One query loads the three sections; sections the user never saved are filled with the
+ * defaults in memory, so reading never writes. The ETag is derived from the sections'
+ * row versions, which change on every save, so clients can revalidate with If-None-Match
+ * and get a 304 while nothing changed.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserSettingsService {
+
+    private final UserRepository userRepository;
+
+    /**
+     * Settings together with their current ETag
+     */
+    public record VersionedSettings(UserSettingsResponse settings, String etag) {
+    }
+
+    public VersionedSettings getSettings(String email) {
+        UserSettingsRow row = userRepository.findSettingsByEmail(email)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        UserPreferences preferences = row.preferences() != null
+                ? row.preferences() : UserPreferences.builder().build();
+        NotificationSettings notifications = row.notifications() != null
+                ? row.notifications() : NotificationSettings.builder().build();
+        PrivacySettings privacy = row.privacy() != null
+                ? row.privacy() : PrivacySettings.builder().build();
+
+        UserSettingsResponse settings = UserSettingsResponse.builder()
+                .preferences(preferences)
+                .notifications(notifications)
+                .privacy(privacy)
+                .build();
+        return new VersionedSettings(settings, etag(row.userId(), preferences.getVersion(),
+                notifications.getVersion(), privacy.getVersion()));
+    }
+
+    // Hashed into one opaque tag; a section without a row counts as "-"
+    static String etag(Long userId, Long... versions) {
+        StringBuilder state = new StringBuilder().append(userId);
+        for (Long version : versions) {
+            state.append(':').append(version != null ? version : "-");
+        }
+        byte[] digest = sha256().digest(state.toString().getBytes(StandardCharsets.UTF_8));
+        return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 12)) + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.medhelp.backend.util;
+
+import com.medhelp.backend.exception.PreconditionFailedException;
+
+/**
+ * ETags for rows with a @Version column.
+ *
+ * A tag names the resource, its owning user and the row version, so a handler can answer
+ * If-None-Match from the loaded row before building the response body, and check If-Match
+ * against exactly the version it is about to write. Settings a user never saved have no
+ * row and get a "new" tag.
+ */
+public final class EntityTags {
+
+    public static final String USER = "user";
+    public static final String PREFERENCES = "preferences";
+    public static final String NOTIFICATIONS = "notifications";
+    public static final String PRIVACY = "privacy";
+
+    private EntityTags() {
+    }
+
+    public static String of(String resource, Long ownerId, Long version) {
+        return "\"" + resource + "-" + ownerId + "-" + (version != null ? version : "new") + "\"";
+    }
+
+    /**
+     * Whether an If-Match header lets a write go ahead. No header means the client asked
+     * for no precondition; weak tags never match, as If-Match uses strong comparison.
+     */
+    public static boolean matches(String ifMatch, String currentTag) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return true;
+        }
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(currentTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void checkIfMatch(String ifMatch, String currentTag) {
+        if (!matches(ifMatch, currentTag)) {
+            throw new PreconditionFailedException("The resource was changed by another request. Reload and try again.");
+        }
+    }
+}
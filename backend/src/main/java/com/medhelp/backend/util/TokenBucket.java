@@ -0,0 +1,58 @@
+package com.medhelp.backend.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe token bucket rate limiter.
+ *
+ * Tokens refill continuously at the configured rate up to the burst size. A caller that
+ * asks for more tokens than are available takes them anyway, leaving the bucket in debt,
+ * and waits until the debt would have been refilled. Later callers wait behind it, so
+ * the long-run rate holds even for requests larger than the burst.
+ */
+public class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+    private long refilledAt;
+
+    public TokenBucket(double tokensPerSecond, double burst) {
+        this(tokensPerSecond, burst, System::nanoTime);
+    }
+
+    public TokenBucket(double tokensPerSecond, double burst, LongSupplier nanoClock) {
+        if (tokensPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = burst;
+        this.nanoClock = nanoClock;
+        this.tokens = burst;
+        this.refilledAt = nanoClock.getAsLong();
+    }
+
+    /**
+     * Take the tokens and return how long the caller has to wait before using them
+     */
+    public synchronized long reserve(int permits) {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+        tokens -= permits;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+
+    /**
+     * Take the tokens, sleeping until they are available
+     */
+    public void acquire(int permits) throws InterruptedException {
+        long waitNanos = reserve(permits);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
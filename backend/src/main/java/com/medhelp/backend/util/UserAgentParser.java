@@ -0,0 +1,137 @@
+package com.medhelp.backend.util;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Structured user-agent parsing into browser, operating system and device class.
+ *
+ * Rules are ordered: Chromium-based browsers (Edge, Opera, Samsung Internet) are matched
+ * before Chrome, and Chrome before Safari, because each of them also carries the tokens
+ * of the browsers it descends from. Parsing is pure and stateless; callers cache results
+ * per user-agent string.
+ */
+public final class UserAgentParser {
+
+    public enum DeviceClass {
+        DESKTOP, MOBILE, TABLET, BOT, UNKNOWN
+    }
+
+    public record UserAgentInfo(String browser, String browserVersion, String os, String osVersion,
+            DeviceClass deviceClass) {
+
+        /**
+         * Human readable device label, e.g. "Edge on Windows"
+         */
+        public String displayName() {
+            if (deviceClass == DeviceClass.BOT) {
+                return browser != null ? browser + " (automated)" : "Automated Client";
+            }
+            if (browser != null && os != null) {
+                return browser + " on " + os;
+            }
+            if (browser != null) {
+                return browser;
+            }
+            return os != null ? os + " Device" : "Unknown Device";
+        }
+    }
+
+    public static final UserAgentInfo UNKNOWN = new UserAgentInfo(null, null, null, null, DeviceClass.UNKNOWN);
+
+    private static final List<Rule> BROWSERS = List.of(
+            new Rule("Edge", "\\bEdg(?:e|A|iOS)?/(\\d+)"),
+            new Rule("Opera", "\\b(?:OPR|OPT|Opera)/(\\d+)"),
+            new Rule("Samsung Internet", "\\bSamsungBrowser/(\\d+)"),
+            new Rule("Firefox", "\\b(?:Firefox|FxiOS)/(\\d+)"),
+            new Rule("Chrome", "\\b(?:HeadlessChrome|Chrome|CriOS)/(\\d+)"),
+            new Rule("Safari", "\\bVersion/(\\d+)\\S* (?:Mobile/\\S+ )?Safari/"),
+            new Rule("Internet Explorer", "(?:\\bMSIE |\\bTrident/.*\\brv:)(\\d+)"),
+            new Rule("curl", "^curl/(\\d+)"),
+            new Rule("Wget", "^Wget/(\\d+)"),
+            new Rule("Python Requests", "^python-requests/(\\d+)"),
+            new Rule("OkHttp", "^okhttp/(\\d+)"));
+
+    // iOS and Android before macOS and Linux, whose tokens they also carry
+    private static final List<Rule> OPERATING_SYSTEMS = List.of(
+            new Rule("iOS", "\\b(?:iPhone|iPad|iPod)\\b.*?\\bOS (\\d+)"),
+            new Rule("Android", "\\bAndroid (\\d+)"),
+            new Rule("Windows Phone", "\\bWindows Phone (\\d+)"),
+            new Rule("Windows", "\\bWindows NT (\\d+\\.\\d+)"),
+            new Rule("ChromeOS", "\\bCrOS\\b"),
+            new Rule("macOS", "\\bMac OS X (\\d+[._]\\d+)"),
+            new Rule("Linux", "\\bLinux\\b"));
+
+    // Windows 11 still reports NT 10.0
+    private static final Map<String, String> WINDOWS_VERSIONS = Map.of(
+            "10.0", "10", "6.3", "8.1", "6.2", "8", "6.1", "7", "6.0", "Vista", "5.1", "XP");
+
+    private static final Pattern BOT = Pattern.compile(
+            "(?i)bot\\b|crawl|spider|slurp|headless|^curl/|^wget/|^python-|^okhttp/|^java/|^apache-httpclient/");
+    private static final Pattern TABLET = Pattern.compile("(?i)\\biPad\\b|\\btablet\\b");
+    private static final Pattern MOBILE = Pattern.compile("\\bMobi|\\biPhone\\b|\\biPod\\b|\\bWindows Phone\\b");
+
+    private UserAgentParser() {
+    }
+
+    public static UserAgentInfo parse(String userAgent) {
+        if (userAgent == null || userAgent.isBlank()) {
+            return UNKNOWN;
+        }
+
+        String[] browser = match(BROWSERS, userAgent);
+        String[] os = match(OPERATING_SYSTEMS, userAgent);
+        String osVersion = os != null ? normalizeOsVersion(os[0], os[1]) : null;
+
+        return new UserAgentInfo(
+                browser != null ? browser[0] : null,
+                browser != null ? browser[1] : null,
+                os != null ? os[0] : null,
+                osVersion,
+                deviceClass(userAgent, os != null ? os[0] : null));
+    }
+
+    private static DeviceClass deviceClass(String userAgent, String os) {
+        if (BOT.matcher(userAgent).find()) {
+            return DeviceClass.BOT;
+        }
+        // Android phones say "Mobile", Android tablets do not
+        if (TABLET.matcher(userAgent).find() || ("Android".equals(os) && !userAgent.contains("Mobile"))) {
+            return DeviceClass.TABLET;
+        }
+        if (MOBILE.matcher(userAgent).find()) {
+            return DeviceClass.MOBILE;
+        }
+        return os != null ? DeviceClass.DESKTOP : DeviceClass.UNKNOWN;
+    }
+
+    private static String normalizeOsVersion(String os, String version) {
+        if (version == null) {
+            return null;
+        }
+        return switch (os) {
+            case "Windows" -> WINDOWS_VERSIONS.getOrDefault(version, version);
+            case "macOS" -> version.replace('_', '.');
+            default -> version;
+        };
+    }
+
+    // Returns {name, version} of the first matching rule
+    private static String[] match(List<Rule> rules, String userAgent) {
+        for (Rule rule : rules) {
+            Matcher matcher = rule.pattern().matcher(userAgent);
+            if (matcher.find()) {
+                return new String[] {rule.name(), matcher.groupCount() > 0 ? matcher.group(1) : null};
+            }
+        }
+        return null;
+    }
+
+    private record Rule(String name, Pattern pattern) {
+        Rule(String name, String regex) {
+            this(name, Pattern.compile(regex));
+        }
+    }
+}
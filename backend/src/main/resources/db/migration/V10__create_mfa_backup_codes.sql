@@ -0,0 +1,21 @@
+-- V10: Individually hashed, single-use MFA backup codes
+-- Replaces the plaintext comma-separated mfa_settings.backup_codes. Each code is stored
+-- as sha256('<user_id>:<code>'), so validation and consumption are one indexed DELETE.
+
+CREATE TABLE mfa_backup_codes (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    code_hash BYTEA NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+CREATE UNIQUE INDEX idx_mfa_backup_codes_hash ON mfa_backup_codes(code_hash);
+CREATE INDEX idx_mfa_backup_codes_user ON mfa_backup_codes(user_id);
+
+INSERT INTO mfa_backup_codes (user_id, code_hash)
+SELECT DISTINCT s.user_id, sha256(convert_to(s.user_id || ':' || trim(code), 'UTF8'))
+FROM mfa_settings s
+CROSS JOIN LATERAL unnest(string_to_array(s.backup_codes, ',')) AS code
+WHERE s.backup_codes IS NOT NULL AND trim(code) <> '';
+
+ALTER TABLE mfa_settings DROP COLUMN backup_codes;
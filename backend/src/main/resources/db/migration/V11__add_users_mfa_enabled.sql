@@ -0,0 +1,11 @@
+-- V11: Denormalize the MFA-enabled flag onto users
+-- Login, token refresh and /me responses need to know whether 2FA is on. Carrying the
+-- flag on the user row means the already-loaded user aggregate answers that without an
+-- extra mfa_settings lookup. TwoFactorService keeps both in sync.
+
+ALTER TABLE users ADD COLUMN mfa_enabled BOOLEAN DEFAULT FALSE NOT NULL;
+
+UPDATE users u
+SET mfa_enabled = TRUE
+FROM mfa_settings s
+WHERE s.user_id = u.id AND s.enabled = TRUE;
@@ -0,0 +1,56 @@
+-- V12: Intern user-agent strings
+-- refresh_tokens, auth_devices and login_attempts each stored the raw User-Agent header,
+-- repeating the same few strings on every row. They now reference a user_agents
+-- dictionary keyed by sha256 of the string (capped at 512 characters, as the
+-- application does).
+
+CREATE TABLE user_agents (
+    id BIGSERIAL PRIMARY KEY,
+    ua_hash BYTEA NOT NULL,
+    user_agent TEXT NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    CONSTRAINT user_agents_hash_length CHECK (octet_length(ua_hash) = 32)
+);
+
+CREATE UNIQUE INDEX idx_user_agents_hash ON user_agents(ua_hash);
+
+INSERT INTO user_agents (ua_hash, user_agent)
+SELECT sha256(convert_to(ua, 'UTF8')), ua
+FROM (
+    SELECT left(user_agent, 512) AS ua FROM refresh_tokens
+    UNION
+    SELECT left(last_user_agent, 512) FROM auth_devices
+    UNION
+    SELECT left(user_agent, 512) FROM login_attempts
+) agents
+WHERE ua IS NOT NULL AND btrim(ua) <> '';
+
+-- refresh_tokens
+ALTER TABLE refresh_tokens ADD COLUMN user_agent_id BIGINT REFERENCES user_agents(id);
+
+UPDATE refresh_tokens rt
+SET user_agent_id = ua.id
+FROM user_agents ua
+WHERE ua.ua_hash = sha256(convert_to(left(rt.user_agent, 512), 'UTF8'));
+
+ALTER TABLE refresh_tokens DROP COLUMN user_agent;
+
+-- auth_devices
+ALTER TABLE auth_devices ADD COLUMN last_user_agent_id BIGINT REFERENCES user_agents(id);
+
+UPDATE auth_devices d
+SET last_user_agent_id = ua.id
+FROM user_agents ua
+WHERE ua.ua_hash = sha256(convert_to(left(d.last_user_agent, 512), 'UTF8'));
+
+ALTER TABLE auth_devices DROP COLUMN last_user_agent;
+
+-- login_attempts
+ALTER TABLE login_attempts ADD COLUMN user_agent_id BIGINT REFERENCES user_agents(id);
+
+UPDATE login_attempts la
+SET user_agent_id = ua.id
+FROM user_agents ua
+WHERE ua.ua_hash = sha256(convert_to(left(la.user_agent, 512), 'UTF8'));
+
+ALTER TABLE login_attempts DROP COLUMN user_agent;
@@ -0,0 +1,22 @@
+-- V13: Transactional email outbox
+-- Emails are rendered and inserted in the same transaction as the change that triggers
+-- them, and delivered by a background worker pool. Workers claim due rows with
+-- FOR UPDATE SKIP LOCKED, pushing next_attempt_at forward as a lease; sent rows are
+-- deleted, failed ones rescheduled with backoff and finally marked DEAD.
+
+CREATE TABLE email_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    recipient VARCHAR(255) NOT NULL,
+    subject VARCHAR(255) NOT NULL,
+    body_html TEXT NOT NULL,
+    status VARCHAR(16) DEFAULT 'PENDING' NOT NULL,
+    attempts INTEGER DEFAULT 0 NOT NULL,
+    next_attempt_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    last_error TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    CONSTRAINT email_outbox_status CHECK (status IN ('PENDING', 'DEAD'))
+);
+
+-- Claim order for the workers; dead letters stay out of the index
+CREATE INDEX idx_email_outbox_due ON email_outbox(next_attempt_at) WHERE status = 'PENDING';
+CREATE INDEX idx_email_outbox_dead ON email_outbox(created_at) WHERE status = 'DEAD';
@@ -0,0 +1,7 @@
+-- V15: Stateless email verification and password reset tokens
+-- Tokens are now HMAC-signed and bound to the user state they act on (password hash,
+-- email verification flag), so nothing is stored and nothing needs cleaning up. Links
+-- sent before this migration stop working; users request a new one.
+
+DROP TABLE IF EXISTS email_verification_tokens;
+DROP TABLE IF EXISTS password_reset_tokens;
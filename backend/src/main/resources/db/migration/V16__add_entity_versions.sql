@@ -0,0 +1,11 @@
+-- V16: Optimistic versioning for user-facing rows
+-- Each row carries a version that every write bumps. Writes that started from an older
+-- version fail instead of silently overwriting a concurrent change, and the version is
+-- what the /api/v1/users ETags are built from, so revalidating a GET needs no hashing.
+-- Existing rows start at 0.
+
+ALTER TABLE users ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE user_preferences ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE notification_settings ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE privacy_settings ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE auth_devices ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
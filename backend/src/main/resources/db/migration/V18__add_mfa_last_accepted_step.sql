@@ -0,0 +1,6 @@
+-- V18: Track the last accepted TOTP time step per user in the database
+-- Replay protection was a per-node map, so a code accepted on one node could be replayed
+-- on another within its 90 second window. A conditional UPDATE on this column accepts each
+-- step at most once across all nodes.
+
+ALTER TABLE mfa_settings ADD COLUMN last_accepted_step BIGINT;
@@ -0,0 +1,26 @@
+-- V19: Durable notification outbox
+-- Notification events were queued in memory after commit, so they were lost when a queue
+-- was full, the node stopped or it crashed. They are now inserted here in the same
+-- transaction as the change that triggers them, one row per channel. Each channel's
+-- workers claim their rows with FOR UPDATE SKIP LOCKED (next_attempt_at is the lease),
+-- check the user's opt-ins, send and delete the row; failed rows are rescheduled with
+-- backoff and finally marked DEAD, as in email_outbox.
+
+CREATE TABLE notification_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    channel VARCHAR(16) NOT NULL,
+    event_kind VARCHAR(32) NOT NULL,
+    payload TEXT NOT NULL,
+    status VARCHAR(16) DEFAULT 'PENDING' NOT NULL,
+    attempts INTEGER DEFAULT 0 NOT NULL,
+    next_attempt_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    last_error TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    CONSTRAINT notification_outbox_status CHECK (status IN ('PENDING', 'DEAD'))
+);
+
+-- Claim order per channel; dead letters stay out of the index
+CREATE INDEX idx_notification_outbox_due ON notification_outbox(channel, next_attempt_at) WHERE status = 'PENDING';
+CREATE INDEX idx_notification_outbox_dead ON notification_outbox(created_at) WHERE status = 'DEAD';
+CREATE INDEX idx_notification_outbox_user ON notification_outbox(user_id);
@@ -0,0 +1,12 @@
+-- V20: Security alert digest windows
+-- A security alert email opens a window for its user. Alerts arriving while it is open
+-- stay in notification_outbox until it closes and then go out as one digest. Keeping the
+-- window here rather than in memory means no alert is held on a node that can crash, and
+-- every node sees the same window.
+
+CREATE TABLE security_alert_windows (
+    user_id BIGINT PRIMARY KEY REFERENCES users(id) ON DELETE CASCADE,
+    closes_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_security_alert_windows_closes_at ON security_alert_windows(closes_at);
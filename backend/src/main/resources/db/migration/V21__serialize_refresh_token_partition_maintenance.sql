@@ -0,0 +1,76 @@
+-- V21: Make refresh token partition maintenance safe on several nodes
+-- Every node maintains the partitions on startup and daily. Both functions now take the
+-- same transaction-scoped advisory lock, so concurrent runs queue behind each other, and
+-- create or drop with IF NOT EXISTS / IF EXISTS. A DEFAULT partition catches tokens that
+-- expire past the last weekly partition (a missed run, a refresh TTL raised without a
+-- restart) instead of failing the insert; maintenance moves them into their weekly
+-- partition once it is created.
+
+CREATE TABLE IF NOT EXISTS refresh_tokens_default PARTITION OF refresh_tokens DEFAULT;
+
+-- Creates the weekly partitions (Monday to Monday) up to and including p_until.
+-- Returns the number of partitions created.
+CREATE OR REPLACE FUNCTION refresh_tokens_create_partitions(p_until TIMESTAMP)
+RETURNS INTEGER AS $$
+DECLARE
+    week_start TIMESTAMP := date_trunc('week', LOCALTIMESTAMP);
+    week_end TIMESTAMP;
+    partition_name TEXT;
+    created INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('refresh_tokens_partitions'));
+    WHILE week_start <= p_until LOOP
+        partition_name := 'refresh_tokens_p' || to_char(week_start, 'YYYYMMDD');
+        week_end := week_start + INTERVAL '1 week';
+        IF to_regclass(partition_name) IS NULL THEN
+            IF EXISTS (SELECT 1 FROM refresh_tokens_default
+                       WHERE expires_at >= week_start AND expires_at < week_end) THEN
+                -- The new range may not overlap rows in the default partition, so move them
+                EXECUTE format('CREATE TABLE IF NOT EXISTS %I (LIKE refresh_tokens INCLUDING DEFAULTS INCLUDING CONSTRAINTS)',
+                    partition_name);
+                EXECUTE format(
+                    'WITH moved AS (DELETE FROM refresh_tokens_default WHERE expires_at >= %L AND expires_at < %L RETURNING *) '
+                    'INSERT INTO %I SELECT * FROM moved',
+                    week_start, week_end, partition_name);
+                EXECUTE format('ALTER TABLE refresh_tokens ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                    partition_name, week_start, week_end);
+            ELSE
+                EXECUTE format(
+                    'CREATE TABLE IF NOT EXISTS %I PARTITION OF refresh_tokens FOR VALUES FROM (%L) TO (%L)',
+                    partition_name, week_start, week_end);
+            END IF;
+            created := created + 1;
+        END IF;
+        week_start := week_end;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Drops the partitions whose whole range lies before p_before, and the expired rows
+-- that were kept in the default partition.
+-- Returns the number of partitions dropped.
+CREATE OR REPLACE FUNCTION refresh_tokens_drop_expired_partitions(p_before TIMESTAMP)
+RETURNS INTEGER AS $$
+DECLARE
+    partition_name TEXT;
+    dropped INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('refresh_tokens_partitions'));
+    FOR partition_name IN
+        SELECT child.relname
+        FROM pg_inherits
+        JOIN pg_class parent ON parent.oid = pg_inherits.inhparent
+        JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+        WHERE parent.relname = 'refresh_tokens'
+          AND child.relname ~ '^refresh_tokens_p[0-9]{8}$'
+          AND to_timestamp(substring(child.relname FROM 17), 'YYYYMMDD')::TIMESTAMP
+              + INTERVAL '1 week' <= p_before
+    LOOP
+        EXECUTE format('DROP TABLE IF EXISTS %I', partition_name);
+        dropped := dropped + 1;
+    END LOOP;
+    DELETE FROM refresh_tokens_default WHERE expires_at < p_before;
+    RETURN dropped;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,7 @@
+-- V22: Keep the raw user agent of failed login attempts
+-- Only successful attempts reference the user_agents dictionary, so that anyone sending
+-- arbitrary headers cannot grow it without bound. Failed attempts are what a brute-force
+-- or credential-stuffing investigation looks at, so they keep the header (capped at 512
+-- characters) on the row itself; login attempts are deleted after 30 days.
+
+ALTER TABLE login_attempts ADD COLUMN user_agent VARCHAR(512);
@@ -0,0 +1,14 @@
+-- V5: Refresh token families
+-- A family is started by every login and inherited by each rotation, so replaying a
+-- rotated token can revoke the whole chain with one indexed UPDATE.
+
+ALTER TABLE refresh_tokens
+ADD COLUMN family_id UUID;
+
+-- Existing tokens each become their own family
+UPDATE refresh_tokens SET family_id = gen_random_uuid() WHERE family_id IS NULL;
+
+ALTER TABLE refresh_tokens
+ALTER COLUMN family_id SET NOT NULL;
+
+CREATE INDEX idx_refresh_tokens_family ON refresh_tokens(family_id);
@@ -0,0 +1,98 @@
+-- V6: Range-partition refresh_tokens by expires_at
+-- Every refresh inserts a row and rows are never reused, so the table only grows.
+-- Weekly partitions let expired tokens be removed by dropping whole partitions
+-- instead of a table-wide DELETE. Uniqueness of token_hash is no longer enforced by
+-- the database (a partitioned unique index would have to include expires_at); hashes
+-- come from 256-bit random tokens.
+
+ALTER TABLE refresh_tokens RENAME TO refresh_tokens_legacy;
+ALTER TABLE refresh_tokens_legacy RENAME CONSTRAINT refresh_tokens_pkey TO refresh_tokens_legacy_pkey;
+
+CREATE TABLE refresh_tokens (
+    id BIGINT NOT NULL DEFAULT nextval('refresh_tokens_id_seq'),
+    token_hash VARCHAR(255) NOT NULL,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    family_id UUID NOT NULL,
+    device_fingerprint VARCHAR(255),
+    ip_address VARCHAR(45),
+    user_agent TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    is_revoked BOOLEAN DEFAULT FALSE NOT NULL,
+    revoked_at TIMESTAMP,
+    PRIMARY KEY (id, expires_at)
+) PARTITION BY RANGE (expires_at);
+
+-- Creates the weekly partitions (Monday to Monday) up to and including p_until.
+-- Returns the number of partitions created.
+CREATE OR REPLACE FUNCTION refresh_tokens_create_partitions(p_until TIMESTAMP)
+RETURNS INTEGER AS $$
+DECLARE
+    week_start TIMESTAMP := date_trunc('week', LOCALTIMESTAMP);
+    partition_name TEXT;
+    created INTEGER := 0;
+BEGIN
+    WHILE week_start <= p_until LOOP
+        partition_name := 'refresh_tokens_p' || to_char(week_start, 'YYYYMMDD');
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format(
+                'CREATE TABLE %I PARTITION OF refresh_tokens FOR VALUES FROM (%L) TO (%L)',
+                partition_name, week_start, week_start + INTERVAL '1 week');
+            created := created + 1;
+        END IF;
+        week_start := week_start + INTERVAL '1 week';
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Drops the partitions whose whole range lies before p_before.
+-- Returns the number of partitions dropped.
+CREATE OR REPLACE FUNCTION refresh_tokens_drop_expired_partitions(p_before TIMESTAMP)
+RETURNS INTEGER AS $$
+DECLARE
+    partition_name TEXT;
+    dropped INTEGER := 0;
+BEGIN
+    FOR partition_name IN
+        SELECT child.relname
+        FROM pg_inherits
+        JOIN pg_class parent ON parent.oid = pg_inherits.inhparent
+        JOIN pg_class child ON child.oid = pg_inherits.inhrelid
+        WHERE parent.relname = 'refresh_tokens'
+          AND child.relname ~ '^refresh_tokens_p[0-9]{8}$'
+          AND to_timestamp(substring(child.relname FROM 17), 'YYYYMMDD')::TIMESTAMP
+              + INTERVAL '1 week' <= p_before
+    LOOP
+        EXECUTE format('DROP TABLE %I', partition_name);
+        dropped := dropped + 1;
+    END LOOP;
+    RETURN dropped;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Cover every unexpired legacy token plus a few weeks of new ones; the application
+-- keeps extending this horizon on startup and daily.
+SELECT refresh_tokens_create_partitions(
+    GREATEST(LOCALTIMESTAMP + INTERVAL '4 weeks',
+             COALESCE((SELECT max(expires_at) FROM refresh_tokens_legacy), LOCALTIMESTAMP)));
+
+-- Expired tokens are not carried over
+INSERT INTO refresh_tokens (id, token_hash, user_id, family_id, device_fingerprint, ip_address,
+                            user_agent, created_at, expires_at, is_revoked, revoked_at)
+SELECT id, token_hash, user_id, family_id, device_fingerprint, ip_address,
+       user_agent, created_at, expires_at, is_revoked, revoked_at
+FROM refresh_tokens_legacy
+WHERE expires_at >= date_trunc('week', LOCALTIMESTAMP);
+
+ALTER SEQUENCE refresh_tokens_id_seq OWNED BY refresh_tokens.id;
+
+DROP TABLE refresh_tokens_legacy;
+
+-- Hot path: rotation and logout only ever look up active tokens
+CREATE INDEX idx_refresh_tokens_hash_active ON refresh_tokens(token_hash) WHERE is_revoked = false;
+-- Reuse detection looks up revoked tokens that have not expired yet
+CREATE INDEX idx_refresh_tokens_hash_revoked ON refresh_tokens(token_hash) WHERE is_revoked = true;
+CREATE INDEX idx_refresh_tokens_user_active ON refresh_tokens(user_id) WHERE is_revoked = false;
+CREATE INDEX idx_refresh_tokens_device ON refresh_tokens(user_id, device_fingerprint);
+CREATE INDEX idx_refresh_tokens_family ON refresh_tokens(family_id);
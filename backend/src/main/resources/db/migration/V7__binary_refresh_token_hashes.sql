@@ -0,0 +1,10 @@
+-- V7: Store refresh token hashes as raw 32-byte digests
+-- Base64 text in VARCHAR(255) takes 44 bytes plus header per entry and per index entry;
+-- bytea keeps the digest at its natural 32 bytes. Existing values are unkeyed SHA-256
+-- digests, the application still matches them until they expire.
+
+ALTER TABLE refresh_tokens
+ALTER COLUMN token_hash TYPE BYTEA USING decode(token_hash, 'base64');
+
+ALTER TABLE refresh_tokens
+ADD CONSTRAINT chk_refresh_tokens_hash_length CHECK (octet_length(token_hash) = 32);
@@ -0,0 +1,9 @@
+-- V8: Covering index for the active session listing
+-- Session pages and the per-device view filter on (user_id, is_revoked, expires_at);
+-- created_at and device_fingerprint are carried along so the device grouping is an
+-- index-only scan. The index also serves revoke-all, so the narrower user index goes.
+
+CREATE INDEX idx_refresh_tokens_user_sessions
+ON refresh_tokens(user_id, is_revoked, expires_at) INCLUDE (created_at, device_fingerprint);
+
+DROP INDEX idx_refresh_tokens_user_active;
@@ -0,0 +1,14 @@
+-- V9: Shared store for pending MFA sessions (application.auth.mfa.session-store=jdbc)
+-- Rows live for a few minutes and are worthless after a crash, so the table is UNLOGGED:
+-- no WAL traffic, truncated on crash recovery, not replicated to standbys.
+
+CREATE UNLOGGED TABLE mfa_pending_sessions (
+    session_id UUID PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    device_fingerprint VARCHAR(255),
+    ip_address VARCHAR(45),
+    user_agent TEXT,
+    expires_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_mfa_pending_sessions_expiry ON mfa_pending_sessions(expires_at);
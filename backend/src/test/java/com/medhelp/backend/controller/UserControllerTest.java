@@ -0,0 +1,143 @@
+package com.medhelp.backend.controller;
+
+import com.medhelp.backend.dto.UserSettingsResponse;
+import com.medhelp.backend.exception.PreconditionFailedException;
+import com.medhelp.backend.model.NotificationSettings;
+import com.medhelp.backend.model.PrivacySettings;
+import com.medhelp.backend.model.User;
+import com.medhelp.backend.model.UserPreferences;
+import com.medhelp.backend.repository.UserRepository;
+import com.medhelp.backend.service.AuthenticationService;
+import com.medhelp.backend.service.NotificationSettingsService;
+import com.medhelp.backend.service.PrivacySettingsService;
+import com.medhelp.backend.service.UserPreferencesService;
+import com.medhelp.backend.service.UserService;
+import com.medhelp.backend.service.UserSettingsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(UserController.class)
+@AutoConfigureMockMvc(addFilters = false) // Disable security filters for simplicity in unit tests
+public class UserControllerTest {
+
+    private static final String ETAG = "\"settings-v1\"";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private UserService userService;
+
+    @MockBean
+    private AuthenticationService authenticationService;
+
+    @MockBean
+    private UserPreferencesService userPreferencesService;
+
+    @MockBean
+    private NotificationSettingsService notificationSettingsService;
+
+    @MockBean
+    private PrivacySettingsService privacySettingsService;
+
+    @MockBean
+    private UserSettingsService userSettingsService;
+
+    @BeforeEach
+    void setUp() {
+        UserSettingsResponse settings = UserSettingsResponse.builder()
+                .preferences(UserPreferences.builder().build())
+                .notifications(NotificationSettings.builder().build())
+                .privacy(PrivacySettings.builder().build())
+                .build();
+        given(userSettingsService.getSettings("test@example.com"))
+                .willReturn(new UserSettingsService.VersionedSettings(settings, ETAG));
+        given(userRepository.findByEmail("test@example.com"))
+                .willReturn(Optional.of(User.builder().id(1L).email("test@example.com").version(4L).build()));
+    }
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void getSettings_ShouldReturnAllSectionsWithETag() throws Exception {
+        mockMvc.perform(get("/api/v1/users/me/settings"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                .andExpect(jsonPath("$.preferences.language").value("en"))
+                .andExpect(jsonPath("$.notifications.emailSecurityAlerts").value(true))
+                .andExpect(jsonPath("$.privacy.profileVisibility").value(true));
+    }
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void getSettings_ShouldReturnNotModifiedForMatchingETag() throws Exception {
+        mockMvc.perform(get("/api/v1/users/me/settings").header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void getSettings_ShouldReturnBodyForStaleETag() throws Exception {
+        mockMvc.perform(get("/api/v1/users/me/settings").header(HttpHeaders.IF_NONE_MATCH, "\"settings-v0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, ETAG));
+    }
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void getPrivacy_ShouldReturnVersionETag() throws Exception {
+        given(privacySettingsService.getPrivacySettings(1L))
+                .willReturn(PrivacySettings.builder().id(6L).version(2L).build());
+
+        mockMvc.perform(get("/api/v1/users/privacy"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"privacy-1-2\""))
+                .andExpect(jsonPath("$.version").value(2));
+    }
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void getCurrentUser_ShouldReturnNotModifiedForCurrentVersion() throws Exception {
+        mockMvc.perform(get("/api/v1/users/me").header(HttpHeaders.IF_NONE_MATCH, "\"user-1-4\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"user-1-4\""))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @WithMockUser(username = "test@example.com")
+    void updatePrivacy_ShouldReturnPreconditionFailedForStaleIfMatch() throws Exception {
+        given(privacySettingsService.updatePrivacySettings(eq(1L), any(), eq("\"privacy-1-1\"")))
+                .willThrow(new PreconditionFailedException("The resource was changed by another request."));
+
+        mockMvc.perform(put("/api/v1/users/privacy")
+                        .header(HttpHeaders.IF_MATCH, "\"privacy-1-1\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"shareDataWithPartners\":false,\"marketingCommunications\":false," +
+                                "\"profileVisibility\":true,\"showOnlineStatus\":true}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+}
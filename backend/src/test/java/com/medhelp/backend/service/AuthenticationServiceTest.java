@@ -0,0 +1,351 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.config.JwtConfigProperties;
+import com.medhelp.backend.dto.LoginRequest;
+import com.medhelp.backend.dto.LoginResponse;
+import com.medhelp.backend.model.AuthDevice;
+import com.medhelp.backend.model.Role;
+import com.medhelp.backend.model.User;
+import com.medhelp.backend.model.UserType;
+import com.medhelp.backend.repository.AuthDeviceRepository;
+import com.medhelp.backend.repository.BranchRepository;
+import com.medhelp.backend.repository.LoginAttemptRepository;
+import com.medhelp.backend.repository.MfaBackupCodeRepository;
+import com.medhelp.backend.repository.MfaSettingsRepository;
+import com.medhelp.backend.repository.RefreshTokenRepository;
+import com.medhelp.backend.repository.RoleRepository;
+import com.medhelp.backend.repository.UserAgentRepository;
+import com.medhelp.backend.repository.UserRepository;
+import com.medhelp.backend.security.JwtUtils;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Exercises the real login flow against mocked repositories. Every repository call is
+ * one SQL statement, which lets the tests enforce a statement budget per login.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AuthenticationService Tests")
+class AuthenticationServiceTest {
+
+    /**
+     * Upper bound on statements for a successful password login: user aggregate fetch
+     * (which carries the MFA flag), rate-limit counts, device insert-if-absent, refresh
+     * token insert and login attempt insert. Device last-seen updates are write-behind and
+     * the user agent is already interned.
+     */
+    private static final int LOGIN_STATEMENT_BUDGET = 5;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private LoginAttemptRepository loginAttemptRepository;
+
+    @Mock
+    private MfaSettingsRepository mfaSettingsRepository;
+
+    @Mock
+    private MfaBackupCodeRepository mfaBackupCodeRepository;
+
+    @Mock
+    private AuthDeviceRepository authDeviceRepository;
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Mock
+    private UserAgentRepository userAgentRepository;
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @Mock
+    private BranchRepository branchRepository;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    @Mock
+    private JwtUtils jwtUtils;
+
+    @Mock
+    private AuthenticationManager authenticationManager;
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+
+    @Mock
+    private EmailVerificationService emailVerificationService;
+
+    @Mock
+    private PasswordResetService passwordResetService;
+
+    @Mock
+    private UserPreferencesService userPreferencesService;
+
+    @Mock
+    private NotificationSettingsService notificationSettingsService;
+
+    @Mock
+    private PrivacySettingsService privacySettingsService;
+
+    @Mock
+    private LoginAttemptRepository.FailedAttemptCounts failedAttemptCounts;
+
+    private AuthenticationService authenticationService;
+
+    private RefreshIdempotencyCache refreshIdempotencyCache;
+
+    private InMemoryMfaSessionStore mfaSessionStore;
+
+    private UserAgentService userAgentService;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        JwtConfigProperties jwtConfig = new JwtConfigProperties();
+        jwtConfig.setRefreshTokenExpiration(86400000L);
+
+        userAgentService = new UserAgentService(userAgentRepository, 100);
+
+        RateLimitService rateLimitService = new RateLimitService(loginAttemptRepository, userAgentService);
+        ReflectionTestUtils.setField(rateLimitService, "maxLoginAttempts", 10);
+        ReflectionTestUtils.setField(rateLimitService, "windowSeconds", 300);
+        ReflectionTestUtils.setField(rateLimitService, "maxFailedAttempts", 5);
+        ReflectionTestUtils.setField(rateLimitService, "lockDurationMinutes", 30);
+
+        UserService userService = new UserService(userRepository, userPreferencesService,
+                notificationSettingsService, privacySettingsService);
+
+        refreshIdempotencyCache = new RefreshIdempotencyCache();
+        ReflectionTestUtils.setField(refreshIdempotencyCache, "windowSeconds", 5L);
+
+        mfaSessionStore = new InMemoryMfaSessionStore(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(mfaSessionStore, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(mfaSessionStore, "maxEntries", 100);
+
+        TokenService tokenService = new TokenService(refreshTokenRepository, jwtConfig, jwtUtils, userAgentService);
+        ReflectionTestUtils.setField(tokenService, "hashKey", "test-hash-key");
+
+        DeviceService deviceService = new DeviceService(authDeviceRepository, notificationDispatcher,
+                new DeviceActivityBuffer(authDeviceRepository), userAgentService);
+
+        LoginRiskEngine loginRiskEngine = new LoginRiskEngine(deviceService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(loginRiskEngine, "enabled", true);
+        ReflectionTestUtils.setField(loginRiskEngine, "threshold", 30);
+        ReflectionTestUtils.setField(loginRiskEngine, "maxDeviceIdleDays", 30L);
+        ReflectionTestUtils.setField(loginRiskEngine, "velocityWindowSeconds", 600L);
+        ReflectionTestUtils.setField(loginRiskEngine, "velocityMaxLogins", 5);
+
+        authenticationService = new AuthenticationService(
+                userService,
+                roleRepository,
+                branchRepository,
+                passwordEncoder,
+                jwtUtils,
+                authenticationManager,
+                new TwoFactorService(mfaSettingsRepository, mfaBackupCodeRepository, userRepository, 100, 300,
+                        "test-backup-code-key", false),
+                tokenService,
+                emailVerificationService,
+                passwordResetService,
+                rateLimitService,
+                deviceService,
+                emailService,
+                notificationDispatcher,
+                refreshIdempotencyCache,
+                mfaSessionStore,
+                loginRiskEngine);
+
+        Role role = Role.builder().name("PATIENT").permissions(Set.of()).build();
+        testUser = User.builder()
+                .id(1L)
+                .email("test@example.com")
+                .password("hashed")
+                .roles(Set.of(role))
+                .userType(UserType.EXTERNAL)
+                .enabled(true)
+                .emailVerified(true)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Successful login stays within the SQL statement budget")
+    void testLoginStatementBudget() {
+        // Arrange
+        arrangeSuccessfulLogin();
+
+        // Act
+        LoginResponse response = authenticationService.login(loginRequest(), httpRequest(),
+                new MockHttpServletResponse());
+
+        // Assert
+        assertEquals("access-token", response.getAccessToken());
+        assertFalse(response.isMfaRequired());
+        assertTrue(statementsIssued() <= LOGIN_STATEMENT_BUDGET,
+                "Login issued " + statementsIssued() + " statements, budget is " + LOGIN_STATEMENT_BUDGET);
+        verify(userRepository, times(1)).findByEmail("test@example.com");
+        verifyNoInteractions(mfaSettingsRepository);
+        verify(authDeviceRepository, never()).updateLastSeen(any());
+        verify(loginAttemptRepository, times(1)).countFailedAttempts(anyString(), anyString(), any());
+        verify(userRepository, never()).save(any(User.class));
+    }
+
+    @Test
+    @DisplayName("Successful login writes the user only when lockout state is cleared")
+    void testLoginClearsLockoutState() {
+        // Arrange
+        testUser.setFailedLoginAttempts(2);
+        arrangeSuccessfulLogin();
+
+        // Act
+        authenticationService.login(loginRequest(), httpRequest(), new MockHttpServletResponse());
+
+        // Assert
+        assertEquals(0, testUser.getFailedLoginAttempts());
+        verify(userRepository, times(1)).save(testUser);
+        assertTrue(statementsIssued() <= LOGIN_STATEMENT_BUDGET + 1);
+    }
+
+    @Test
+    @DisplayName("Low-risk login of a 2FA user from a trusted device skips the 2FA round trip")
+    void testLoginSkipsMfaOnTrustedDevice() {
+        // Arrange
+        testUser.setMfaEnabled(true);
+        arrangeSuccessfulLogin();
+        when(authDeviceRepository.findByUserAndDeviceFingerprint(testUser, "device-fp"))
+                .thenReturn(Optional.of(device(true)));
+
+        // Act
+        LoginResponse response = authenticationService.login(loginRequest(), httpRequest(),
+                new MockHttpServletResponse());
+
+        // Assert
+        assertFalse(response.isMfaRequired());
+        assertEquals("access-token", response.getAccessToken());
+        assertNull(response.getSessionId());
+        verify(loginAttemptRepository).save(argThat(attempt -> "MFA skipped (low risk)".equals(
+                attempt.getFailureReason())));
+    }
+
+    @Test
+    @DisplayName("Login of a 2FA user from an untrusted device still requires the second factor")
+    void testLoginRequiresMfaOnUntrustedDevice() {
+        // Arrange
+        testUser.setMfaEnabled(true);
+        when(loginAttemptRepository.countFailedAttempts(anyString(), anyString(), any()))
+                .thenReturn(failedAttemptCounts);
+        when(authenticationManager.authenticate(any()))
+                .thenReturn(new UsernamePasswordAuthenticationToken(testUser, null, testUser.getAuthorities()));
+        when(authDeviceRepository.findByUserAndDeviceFingerprint(testUser, "device-fp"))
+                .thenReturn(Optional.of(device(false)));
+        when(userAgentRepository.intern(any(byte[].class), eq("Mozilla/5.0"))).thenReturn(Optional.of(7L));
+
+        // Act
+        LoginResponse response = authenticationService.login(loginRequest(), httpRequest(),
+                new MockHttpServletResponse());
+
+        // Assert
+        assertTrue(response.isMfaRequired());
+        assertNull(response.getAccessToken());
+        assertNotNull(response.getSessionId());
+        verify(refreshTokenRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("Failed login records the attempt and increments failed attempts")
+    void testFailedLogin() {
+        // Arrange
+        when(loginAttemptRepository.countFailedAttempts(anyString(), anyString(), any()))
+                .thenReturn(failedAttemptCounts);
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("Bad credentials"));
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+
+        // Act & Assert
+        assertThrows(BadCredentialsException.class, () -> authenticationService.login(loginRequest(),
+                httpRequest(), new MockHttpServletResponse()));
+        assertEquals(1, testUser.getFailedLoginAttempts());
+        verify(loginAttemptRepository).save(argThat(attempt -> attempt.getUserAgentId() == null));
+        verify(userRepository).save(testUser);
+        verifyNoInteractions(userAgentRepository);
+    }
+
+    private void arrangeSuccessfulLogin() {
+        when(loginAttemptRepository.countFailedAttempts(anyString(), anyString(), any()))
+                .thenReturn(failedAttemptCounts);
+        when(userRepository.findByEmail("test@example.com")).thenReturn(Optional.of(testUser));
+        when(authenticationManager.authenticate(any())).thenAnswer(invocation -> {
+            Authentication request = invocation.getArgument(0);
+            User user = userRepository.findByEmail(request.getName()).orElseThrow();
+            return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+        });
+        when(authDeviceRepository.insertIfAbsent(eq(1L), eq("device-fp"), anyString(), any(), eq(7L)))
+                .thenReturn(Optional.empty());
+        when(userAgentRepository.intern(any(byte[].class), eq("Mozilla/5.0"))).thenReturn(Optional.of(7L));
+        userAgentService.intern("Mozilla/5.0");
+        when(jwtUtils.generateAccessToken(testUser)).thenReturn("access-token");
+        clearInvocations(userRepository, loginAttemptRepository, mfaSettingsRepository, authDeviceRepository,
+                refreshTokenRepository, userAgentRepository);
+    }
+
+    private int statementsIssued() {
+        return Stream.of(userRepository, loginAttemptRepository, mfaSettingsRepository, authDeviceRepository,
+                        refreshTokenRepository, userAgentRepository)
+                .mapToInt(repository -> mockingDetails(repository).getInvocations().size())
+                .sum();
+    }
+
+    private AuthDevice device(boolean trusted) {
+        return AuthDevice.builder()
+                .id(1L)
+                .user(testUser)
+                .deviceFingerprint("device-fp")
+                .lastIp("127.0.0.1")
+                .lastSeen(LocalDateTime.now().minusDays(1))
+                .isTrusted(trusted)
+                .build();
+    }
+
+    private LoginRequest loginRequest() {
+        return LoginRequest.builder()
+                .email("test@example.com")
+                .password("Password123!")
+                .deviceFingerprint("device-fp")
+                .build();
+    }
+
+    private MockHttpServletRequest httpRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("127.0.0.1");
+        request.addHeader("User-Agent", "Mozilla/5.0");
+        return request;
+    }
+}
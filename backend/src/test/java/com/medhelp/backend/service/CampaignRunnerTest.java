@@ -0,0 +1,160 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.Campaign;
+import com.medhelp.backend.model.EmailOutboxMessage;
+import com.medhelp.backend.repository.CampaignBatchRepository.CampaignRecipient;
+import com.medhelp.backend.repository.CampaignRepository;
+import com.medhelp.backend.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CampaignRunner Tests")
+class CampaignRunnerTest {
+
+    @Mock
+    private CampaignRepository campaignRepository;
+
+    @Mock
+    private EmailOutboxRepository outboxRepository;
+
+    @Mock
+    private EmailTemplateRenderer templateRenderer;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CampaignRunner runner;
+    private Campaign campaign;
+
+    @BeforeEach
+    void setUp() {
+        runner = new CampaignRunner(campaignRepository, outboxRepository, templateRenderer, transactionManager,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(runner, "frontendUrl", "http://localhost:3001");
+        ReflectionTestUtils.setField(runner, "concurrency", 1);
+        ReflectionTestUtils.setField(runner, "chunkSize", 2);
+        ReflectionTestUtils.setField(runner, "renderThreadCount", 2);
+        ReflectionTestUtils.setField(runner, "leaseSeconds", 120L);
+        ReflectionTestUtils.setField(runner, "maxOutboxBacklog", 5000L);
+        runner.start();
+
+        campaign = Campaign.builder()
+                .id(1L)
+                .name("October newsletter")
+                .channel(Campaign.Channel.EMAIL)
+                .topic(Campaign.Topic.NEWSLETTER)
+                .subject("MedHelp News")
+                .body("Hello")
+                .status(Campaign.Status.RUNNING)
+                .lastUserId(100L)
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        runner.stop();
+    }
+
+    @Test
+    @DisplayName("Should resume after the checkpoint, queue each chunk with its checkpoint and complete")
+    void testRunResumesAndCompletes() {
+        // Arrange
+        when(campaignRepository.findRecipients(Campaign.Channel.EMAIL, Campaign.Topic.NEWSLETTER, 100L, 2))
+                .thenReturn(List.of(recipient(101L, "de"), recipient(105L, null)));
+        when(campaignRepository.findRecipients(Campaign.Channel.EMAIL, Campaign.Topic.NEWSLETTER, 105L, 2))
+                .thenReturn(List.of(recipient(107L, null)));
+        when(campaignRepository.findRecipients(Campaign.Channel.EMAIL, Campaign.Topic.NEWSLETTER, 107L, 2))
+                .thenReturn(List.of());
+        when(campaignRepository.checkpoint(eq(1L), anyLong(), anyLong(), anyLong(), any())).thenReturn(1);
+        when(templateRenderer.render(eq("email/campaign"), any(Locale.class), anyMap())).thenReturn("<p>Hello</p>");
+
+        // Act
+        runner.run(campaign);
+
+        // Assert
+        verify(campaignRepository).checkpoint(eq(1L), eq(100L), eq(105L), eq(2L), any());
+        verify(campaignRepository).checkpoint(eq(1L), eq(105L), eq(107L), eq(1L), any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<EmailOutboxMessage>> queued = ArgumentCaptor.forClass(List.class);
+        verify(outboxRepository, times(2)).insertAll(queued.capture());
+        assertEquals(List.of("user101@example.com", "user105@example.com"),
+                queued.getAllValues().get(0).stream().map(EmailOutboxMessage::getRecipient).toList());
+        verify(templateRenderer).render(eq("email/campaign"), eq(Locale.GERMAN), anyMap());
+        verify(campaignRepository).complete(1L);
+    }
+
+    @Test
+    @DisplayName("Should stop without queueing when the campaign was paused")
+    void testRunStopsWhenPaused() {
+        // Arrange
+        when(campaignRepository.findRecipients(Campaign.Channel.EMAIL, Campaign.Topic.NEWSLETTER, 100L, 2))
+                .thenReturn(List.of(recipient(101L, null)));
+        when(campaignRepository.checkpoint(eq(1L), anyLong(), anyLong(), anyLong(), any())).thenReturn(0);
+        when(templateRenderer.render(eq("email/campaign"), any(Locale.class), anyMap())).thenReturn("<p>Hello</p>");
+
+        // Act
+        runner.run(campaign);
+
+        // Assert
+        verify(outboxRepository, never()).insertAll(any());
+        verify(campaignRepository, never()).complete(any());
+        verify(campaignRepository, times(1)).findRecipients(any(), any(), anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should wait while the outbox backlog is over the limit")
+    void testRunWaitsForOutboxBacklog() {
+        // Arrange
+        ReflectionTestUtils.setField(runner, "maxOutboxBacklog", 10L);
+        when(outboxRepository.countByStatus(EmailOutboxMessage.Status.PENDING)).thenReturn(11L, 3L);
+        when(campaignRepository.findRecipients(Campaign.Channel.EMAIL, Campaign.Topic.NEWSLETTER, 100L, 2))
+                .thenReturn(List.of());
+
+        // Act
+        runner.run(campaign);
+
+        // Assert
+        verify(outboxRepository, times(2)).countByStatus(EmailOutboxMessage.Status.PENDING);
+        verify(campaignRepository).complete(1L);
+    }
+
+    @Test
+    @DisplayName("Should pause a campaign on a channel without a provider")
+    void testRunPausesUnsupportedChannel() {
+        // Arrange
+        campaign.setChannel(Campaign.Channel.SMS);
+        campaign.setTopic(Campaign.Topic.PROMOTIONS);
+
+        // Act
+        runner.run(campaign);
+
+        // Assert
+        verify(campaignRepository).transition(1L, List.of(Campaign.Status.RUNNING), Campaign.Status.PAUSED);
+        verify(campaignRepository, never()).findRecipients(any(), any(), anyLong(), anyInt());
+    }
+
+    private static CampaignRecipient recipient(Long userId, String language) {
+        return new CampaignRecipient(userId, "user" + userId + "@example.com", null, null, language);
+    }
+}
@@ -0,0 +1,107 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.repository.AuthDeviceBatchRepository.DeviceSighting;
+import com.medhelp.backend.repository.AuthDeviceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DeviceActivityBuffer Tests")
+class DeviceActivityBufferTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @Mock
+    private AuthDeviceRepository deviceRepository;
+
+    private DeviceActivityBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        buffer = new DeviceActivityBuffer(deviceRepository);
+    }
+
+    @Test
+    @DisplayName("Should coalesce sightings per device and flush them in one batch")
+    @SuppressWarnings("unchecked")
+    void testFlushCoalescesSightings() {
+        // Arrange
+        buffer.record(sighting(1L, "laptop", "10.0.0.1", NOW));
+        buffer.record(sighting(1L, "laptop", "10.0.0.3", NOW.plusSeconds(2)));
+        buffer.record(sighting(1L, "laptop", "10.0.0.2", NOW.plusSeconds(1)));
+        buffer.record(sighting(2L, "laptop", "10.0.0.9", NOW));
+
+        // Act
+        buffer.flush();
+
+        // Assert
+        ArgumentCaptor<Collection<DeviceSighting>> batch = ArgumentCaptor.forClass(Collection.class);
+        verify(deviceRepository, times(1)).updateLastSeen(batch.capture());
+        Map<Long, DeviceSighting> byUser = batch.getValue().stream()
+                .collect(Collectors.toMap(DeviceSighting::userId, Function.identity()));
+        assertEquals(2, byUser.size());
+        assertEquals("10.0.0.3", byUser.get(1L).ipAddress());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    @DisplayName("Should skip the database when nothing is pending")
+    void testFlushEmpty() {
+        // Act
+        buffer.flush();
+
+        // Assert
+        verifyNoInteractions(deviceRepository);
+    }
+
+    @Test
+    @DisplayName("Should keep sightings for the next flush when the batch fails")
+    void testFlushFailureRequeues() {
+        // Arrange
+        buffer.record(sighting(1L, "laptop", "10.0.0.1", NOW));
+        doThrow(new DataAccessResourceFailureException("down")).doNothing()
+                .when(deviceRepository).updateLastSeen(any());
+
+        // Act
+        buffer.flush();
+        buffer.flush();
+
+        // Assert
+        verify(deviceRepository, times(2)).updateLastSeen(any());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    @DisplayName("Should not write a sighting of a removed device")
+    void testDiscard() {
+        // Arrange
+        buffer.record(sighting(1L, "laptop", "10.0.0.1", NOW));
+
+        // Act
+        buffer.discard(1L, "laptop");
+        buffer.flushOnShutdown();
+
+        // Assert
+        verifyNoInteractions(deviceRepository);
+    }
+
+    private static DeviceSighting sighting(Long userId, String fingerprint, String ip, LocalDateTime seenAt) {
+        return new DeviceSighting(userId, fingerprint, ip, 7L, seenAt);
+    }
+}
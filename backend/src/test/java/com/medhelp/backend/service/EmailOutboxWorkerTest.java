@@ -0,0 +1,183 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.EmailOutboxMessage;
+import com.medhelp.backend.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("EmailOutboxWorker Tests")
+class EmailOutboxWorkerTest {
+
+    @Mock
+    private EmailOutboxRepository outboxRepository;
+
+    @Mock
+    private SmtpTransportPool transportPool;
+
+    @Mock
+    private SmtpTransportPool.Lease connection;
+
+    private EmailOutboxWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        worker = new EmailOutboxWorker(outboxRepository, transportPool, new SimpleMeterRegistry(), 1_000_000);
+        ReflectionTestUtils.setField(worker, "fromEmail", "noreply@medhelp.com");
+        ReflectionTestUtils.setField(worker, "fromName", "MedHelp");
+        ReflectionTestUtils.setField(worker, "batchSize", 10);
+        ReflectionTestUtils.setField(worker, "leaseSeconds", 120L);
+        ReflectionTestUtils.setField(worker, "maxAttempts", 3);
+        ReflectionTestUtils.setField(worker, "backoffBaseSeconds", 30L);
+        ReflectionTestUtils.setField(worker, "backoffMaxSeconds", 3600L);
+    }
+
+    @Test
+    @DisplayName("Should send claimed messages and delete them")
+    void testProcessBatchDelivers() throws Exception {
+        // Arrange
+        when(outboxRepository.claimDue(any(), any(), eq(10))).thenReturn(List.of(message(1L, 1), message(2L, 1)));
+        when(transportPool.borrow()).thenReturn(connection);
+        when(transportPool.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+
+        // Act
+        int claimed = worker.processBatch();
+
+        // Assert
+        assertEquals(2, claimed);
+        verify(connection, times(2)).send(any(MimeMessage.class));
+        verify(transportPool).borrow();
+        verify(connection).close();
+        verify(outboxRepository).deleteDelivered(1L);
+        verify(outboxRepository).deleteDelivered(2L);
+        verify(outboxRepository, never()).reschedule(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should reschedule a failed message with backoff")
+    void testProcessBatchRetries() throws Exception {
+        // Arrange
+        when(outboxRepository.claimDue(any(), any(), eq(10))).thenReturn(List.of(message(1L, 1)));
+        when(transportPool.borrow()).thenReturn(connection);
+        when(transportPool.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+        doThrow(new MessagingException("connection refused")).when(connection).send(any(MimeMessage.class));
+        LocalDateTime before = LocalDateTime.now();
+
+        // Act
+        worker.processBatch();
+
+        // Assert
+        verify(outboxRepository).reschedule(eq(1L),
+                argThat(next -> !next.isBefore(before.plusSeconds(30)) && next.isBefore(before.plusSeconds(40))),
+                argThat(error -> error.contains("connection refused")));
+        verify(outboxRepository, never()).deleteDelivered(any());
+        verify(outboxRepository, never()).markDead(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should dead-letter a message after the last attempt")
+    void testProcessBatchDeadLetters() throws Exception {
+        // Arrange
+        when(outboxRepository.claimDue(any(), any(), eq(10))).thenReturn(List.of(message(1L, 3)));
+        when(transportPool.borrow()).thenReturn(connection);
+        when(transportPool.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+        doThrow(new MessagingException("mailbox unavailable")).when(connection).send(any(MimeMessage.class));
+
+        // Act
+        worker.processBatch();
+
+        // Assert
+        verify(outboxRepository).markDead(eq(1L), argThat(error -> error.contains("mailbox unavailable")));
+        verify(outboxRepository, never()).reschedule(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should reschedule the whole batch when no SMTP connection is available")
+    void testProcessBatchWithoutConnection() throws Exception {
+        // Arrange
+        when(outboxRepository.claimDue(any(), any(), eq(10))).thenReturn(List.of(message(1L, 1), message(2L, 1)));
+        when(transportPool.borrow()).thenThrow(new MessagingException("Timed out waiting for an SMTP connection"));
+
+        // Act
+        worker.processBatch();
+
+        // Assert
+        verify(outboxRepository).reschedule(eq(1L), any(), argThat(error -> error.contains("Timed out")));
+        verify(outboxRepository).reschedule(eq(2L), any(), argThat(error -> error.contains("Timed out")));
+        verify(outboxRepository, never()).deleteDelivered(any());
+    }
+
+    @Test
+    @DisplayName("Should not borrow a connection when nothing is due")
+    void testProcessBatchEmpty() throws Exception {
+        // Arrange
+        when(outboxRepository.claimDue(any(), any(), eq(10))).thenReturn(List.of());
+
+        // Act
+        int claimed = worker.processBatch();
+
+        // Assert
+        assertEquals(0, claimed);
+        verify(transportPool, never()).borrow();
+    }
+
+    @Test
+    @DisplayName("Should renew the lease during a slow batch and skip messages it no longer holds")
+    void testProcessBatchRenewsLease() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(worker, "leaseSeconds", 0L);
+        when(outboxRepository.claimDue(any(), any(), eq(10))).thenReturn(List.of(message(1L, 1), message(2L, 1)));
+        when(outboxRepository.renewLease(eq(List.of(1L, 2L)), any(), any())).thenReturn(List.of(1L));
+        when(outboxRepository.renewLease(eq(List.of(2L)), any(), any())).thenReturn(List.of());
+        when(transportPool.borrow()).thenReturn(connection);
+        when(transportPool.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+
+        // Act
+        worker.processBatch();
+
+        // Assert
+        verify(connection, times(1)).send(any());
+        verify(outboxRepository).deleteDelivered(1L);
+        verify(outboxRepository, never()).deleteDelivered(2L);
+        verify(outboxRepository, never()).reschedule(eq(2L), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should double the backoff per attempt up to the maximum")
+    void testBackoff() {
+        // Act & Assert
+        assertTrue(worker.backoff(1).compareTo(Duration.ofSeconds(30)) >= 0);
+        assertTrue(worker.backoff(3).compareTo(Duration.ofSeconds(120)) >= 0);
+        assertTrue(worker.backoff(3).compareTo(Duration.ofSeconds(145)) < 0);
+        assertTrue(worker.backoff(30).compareTo(Duration.ofSeconds(3600 + 721)) < 0);
+    }
+
+    private static EmailOutboxMessage message(Long id, int attempts) {
+        return EmailOutboxMessage.builder()
+                .id(id)
+                .recipient("user" + id + "@example.com")
+                .subject("Welcome to MedHelp!")
+                .bodyHtml("<p>Hello</p>")
+                .attempts(attempts)
+                .createdAt(LocalDateTime.now().minusSeconds(2))
+                .build();
+    }
+}
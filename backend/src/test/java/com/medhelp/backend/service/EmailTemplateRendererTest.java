@@ -0,0 +1,207 @@
+package com.medhelp.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import org.thymeleaf.templateresolver.StringTemplateResolver;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DisplayName("EmailTemplateRenderer Tests")
+class EmailTemplateRendererTest {
+
+    private SpringTemplateEngine templateEngine;
+    private EmailTemplateRenderer renderer;
+
+    @BeforeEach
+    void setUp() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        templateEngine = spy(new SpringTemplateEngine());
+        templateEngine.setTemplateResolver(resolver);
+        renderer = new EmailTemplateRenderer(templateEngine, 16);
+    }
+
+    @Test
+    @DisplayName("Should render every email template exactly as Thymeleaf does")
+    void testMatchesThymeleaf() {
+        // Arrange
+        Map<String, Map<String, Object>> templates = Map.of(
+                "email/welcome", Map.of("userName", "Ann <script>&\"'", "email", "ann@example.com"),
+                "email/verify-email", Map.of("userName", "Ann", "verificationLink",
+                        "http://localhost:3001/auth/verify-email?token=a&b=\"c\"", "expiryHours", 24),
+                "email/reset-password", Map.of("userName", "Ann", "resetLink",
+                        "http://localhost:3001/auth/reset-password?token=xyz", "expiryHours", 1),
+                "email/new-device-alert", Map.of("userName", "Ann", "deviceName", "Chrome 120 on Windows",
+                        "ipAddress", "203.0.113.7", "loginTime", LocalDateTime.of(2026, 1, 1, 12, 30),
+                        "securityUrl", "http://localhost:3001/settings/security"),
+                "email/account-locked", Map.of("userName", "Ann", "lockDurationMinutes", 30,
+                        "supportEmail", "support@medhelp.com"),
+                "email/password-changed", Map.of("userName", "O'Brien", "changeTime", LocalDateTime.of(2026, 1, 1, 9, 0),
+                        "supportEmail", "support@medhelp.com"),
+                "email/campaign", Map.of("userName", "Ann", "subject", "News & <updates>",
+                        "body", "Line one\nLine two", "preferencesUrl", "http://localhost:3001/settings/notifications"),
+                "email/security-digest", Map.of("userName", "Ann", "alerts", List.of(
+                                new SecurityAlertCoalescer.DigestItem("New device login", "Chrome <120>, 203.0.113.7", 1,
+                                        LocalDateTime.of(2026, 1, 1, 12, 30)),
+                                new SecurityAlertCoalescer.DigestItem("Account locked", "Locked for 30 minutes", 4,
+                                        LocalDateTime.of(2026, 1, 1, 12, 31))),
+                        "omittedCount", 2, "securityUrl", "http://localhost:3001/settings/security",
+                        "supportEmail", "support@medhelp.com"));
+
+        templates.forEach((template, variables) -> {
+            // Act
+            String first = renderer.render(template, Locale.ENGLISH, variables);
+            String second = renderer.render(template, Locale.ENGLISH, variables);
+
+            // Assert
+            String expected = thymeleaf(template, Locale.ENGLISH, variables);
+            assertEquals(expected, first, template);
+            assertEquals(expected, second, template);
+        });
+    }
+
+    @Test
+    @DisplayName("Should only run Thymeleaf to precompile, once per template and locale")
+    void testRendersFromPrecompiledForm() {
+        // Arrange
+        Map<String, Object> variables = Map.of("userName", "Ann", "email", "ann@example.com");
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            renderer.render("email/welcome", Locale.ENGLISH, variables);
+        }
+        String otherUser = renderer.render("email/welcome", Locale.ENGLISH,
+                Map.of("userName", "Bob", "email", "bob@example.com"));
+        renderer.render("email/welcome", Locale.GERMAN, variables);
+
+        // Assert
+        assertTrue(otherUser.contains("<strong>Bob</strong>"));
+        assertTrue(otherUser.contains("<strong>bob@example.com</strong>"));
+        verify(templateEngine, times(4)).process(anyString(), any(Context.class));
+    }
+
+    @Test
+    @DisplayName("Should fall back to Thymeleaf for a null value")
+    void testNullValueFallsBack() {
+        // Arrange
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("userName", "Ann");
+        variables.put("resetLink", null);
+        variables.put("expiryHours", 1);
+        renderer.render("email/reset-password", Locale.ENGLISH,
+                Map.of("userName", "Ann", "resetLink", "http://localhost/reset", "expiryHours", 1));
+
+        // Act
+        String html = renderer.render("email/reset-password", Locale.ENGLISH, variables);
+
+        // Assert
+        assertEquals(thymeleaf("email/reset-password", Locale.ENGLISH, variables), html);
+    }
+
+    @Test
+    @DisplayName("Should keep rendering templates with logic through Thymeleaf")
+    void testTemplateWithLogicIsNotPrecompiled() {
+        // Arrange
+        SpringTemplateEngine stringEngine = new SpringTemplateEngine();
+        stringEngine.setTemplateResolver(new StringTemplateResolver());
+        EmailTemplateRenderer stringRenderer = new EmailTemplateRenderer(stringEngine, 16);
+        String template = "<p th:text=\"${count > 1 ? 'many' : 'one'}\">n</p><span th:text=\"${name}\">x</span>";
+
+        // Act
+        String one = stringRenderer.render(template, Locale.ENGLISH, Map.of("count", 1, "name", "Ann"));
+        String many = stringRenderer.render(template, Locale.ENGLISH, Map.of("count", 5, "name", "Bob"));
+
+        // Assert
+        assertEquals("<p>one</p><span>Ann</span>", one);
+        assertEquals("<p>many</p><span>Bob</span>", many);
+    }
+
+    @Test
+    @DisplayName("Should list every alert of a security digest")
+    void testSecurityDigest() {
+        // Arrange
+        Map<String, Object> variables = Map.of("userName", "Ann", "alerts", List.of(
+                        new SecurityAlertCoalescer.DigestItem("New device login", "Firefox, 198.51.100.2", 1,
+                                LocalDateTime.of(2026, 1, 1, 12, 30)),
+                        new SecurityAlertCoalescer.DigestItem("Account locked", "Locked for 30 minutes", 4,
+                                LocalDateTime.of(2026, 1, 1, 12, 31))),
+                "omittedCount", 0, "securityUrl", "http://localhost:3001/settings/security",
+                "supportEmail", "support@medhelp.com");
+
+        // Act
+        String html = renderer.render("email/security-digest", Locale.ENGLISH, variables);
+
+        // Assert
+        assertTrue(html.contains("Firefox, 198.51.100.2"));
+        assertTrue(html.contains("(4 times)"));
+        assertFalse(html.contains("(1 times)"));
+        assertFalse(html.contains("more events"));
+    }
+
+    /**
+     * Run with -Demail.benchmark=true to compare render time and allocation per message
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "email.benchmark", matches = "true")
+    @DisplayName("Benchmark precompiled rendering against Thymeleaf")
+    void benchmarkRendering() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Map<String, Object> variables = Map.of("userName", "Ann", "deviceName", "Chrome 120 on Windows",
+                "ipAddress", "203.0.113.7", "loginTime", LocalDateTime.of(2026, 1, 1, 12, 30),
+                "securityUrl", "http://localhost:3001/settings/security");
+        int warmup = 2_000;
+        int messages = 20_000;
+
+        for (int i = 0; i < warmup; i++) {
+            thymeleaf("email/new-device-alert", Locale.ENGLISH, variables);
+            renderer.render("email/new-device-alert", Locale.ENGLISH, variables);
+        }
+
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            thymeleaf("email/new-device-alert", Locale.ENGLISH, variables);
+        }
+        long thymeleafNanos = System.nanoTime() - start;
+        long thymeleafBytes = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            renderer.render("email/new-device-alert", Locale.ENGLISH, variables);
+        }
+        long precompiledNanos = System.nanoTime() - start;
+        long precompiledBytes = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        System.out.printf("Thymeleaf:   %8.2f us/message %10d bytes/message%n",
+                thymeleafNanos / 1000.0 / messages, thymeleafBytes / messages);
+        System.out.printf("Precompiled: %8.2f us/message %10d bytes/message%n",
+                precompiledNanos / 1000.0 / messages, precompiledBytes / messages);
+        assertTrue(precompiledNanos < thymeleafNanos);
+    }
+
+    private String thymeleaf(String template, Locale locale, Map<String, ?> variables) {
+        Context context = new Context(locale);
+        variables.forEach(context::setVariable);
+        return templateEngine.process(template, context);
+    }
+}
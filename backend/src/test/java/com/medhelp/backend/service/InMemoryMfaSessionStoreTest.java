@@ -0,0 +1,98 @@
+package com.medhelp.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("InMemoryMfaSessionStore Tests")
+class InMemoryMfaSessionStoreTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private InMemoryMfaSessionStore store;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new InMemoryMfaSessionStore(meterRegistry);
+        ReflectionTestUtils.setField(store, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(store, "maxEntries", 2);
+    }
+
+    @Test
+    @DisplayName("Should store only the user id and request metadata")
+    void testCreateAndFind() {
+        // Act
+        String sessionId = store.create(1L, "device-fp", "127.0.0.1", "Mozilla/5.0");
+
+        // Assert
+        Optional<MfaSessionStore.PendingMfaSession> session = store.find(sessionId);
+        assertTrue(session.isPresent());
+        assertEquals(1L, session.get().getUserId());
+        assertEquals("device-fp", session.get().getDeviceFingerprint());
+        assertEquals(1.0, meterRegistry.get("auth.mfa.sessions.created").counter().count());
+        assertEquals(1.0, meterRegistry.get("auth.mfa.sessions.pending").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should let only one caller consume a session")
+    void testConsume() {
+        // Arrange
+        String sessionId = store.create(1L, "device-fp", "127.0.0.1", "Mozilla/5.0");
+
+        // Act & Assert
+        assertTrue(store.consume(sessionId));
+        assertFalse(store.consume(sessionId));
+        assertTrue(store.find(sessionId).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should hide and evict expired sessions")
+    void testExpiredSessions() {
+        // Arrange
+        ReflectionTestUtils.setField(store, "ttlSeconds", -1L);
+        String sessionId = store.create(1L, "device-fp", "127.0.0.1", "Mozilla/5.0");
+
+        // Act & Assert
+        assertTrue(store.find(sessionId).isEmpty());
+        store.evictExpired();
+        assertEquals(0, store.size());
+        assertEquals(1.0, meterRegistry.get("auth.mfa.sessions.expired").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should reject new sessions when the capacity limit is reached")
+    void testCapacityLimit() {
+        // Arrange
+        store.create(1L, "device-fp", "127.0.0.1", "Mozilla/5.0");
+        store.create(2L, "device-fp", "127.0.0.1", "Mozilla/5.0");
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> store.create(3L, "device-fp", "127.0.0.1", "Mozilla/5.0"));
+        assertEquals(2, store.size());
+        assertEquals(1.0, meterRegistry.get("auth.mfa.sessions.rejected").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should make room by evicting expired sessions before rejecting")
+    void testCapacityLimitEvictsExpiredFirst() {
+        // Arrange
+        ReflectionTestUtils.setField(store, "ttlSeconds", -1L);
+        store.create(1L, "device-fp", "127.0.0.1", "Mozilla/5.0");
+        store.create(2L, "device-fp", "127.0.0.1", "Mozilla/5.0");
+        ReflectionTestUtils.setField(store, "ttlSeconds", 300L);
+
+        // Act
+        String sessionId = store.create(3L, "device-fp", "127.0.0.1", "Mozilla/5.0");
+
+        // Assert
+        assertTrue(store.find(sessionId).isPresent());
+        assertEquals(1, store.size());
+    }
+}
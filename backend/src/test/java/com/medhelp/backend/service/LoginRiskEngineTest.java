@@ -0,0 +1,165 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.AuthDevice;
+import com.medhelp.backend.model.User;
+import com.medhelp.backend.service.LoginRiskEngine.RiskAssessment;
+import com.medhelp.backend.service.LoginRiskEngine.RiskSignal;
+import com.medhelp.backend.service.RateLimitService.LoginRateStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("LoginRiskEngine Tests")
+class LoginRiskEngineTest {
+
+    private static final LoginRateStatus CLEAN = new LoginRateStatus(0, 0, false);
+
+    @Mock
+    private DeviceService deviceService;
+
+    private LoginRiskEngine riskEngine;
+
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        riskEngine = new LoginRiskEngine(deviceService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(riskEngine, "enabled", true);
+        ReflectionTestUtils.setField(riskEngine, "threshold", 30);
+        ReflectionTestUtils.setField(riskEngine, "maxDeviceIdleDays", 30L);
+        ReflectionTestUtils.setField(riskEngine, "velocityWindowSeconds", 600L);
+        ReflectionTestUtils.setField(riskEngine, "velocityMaxLogins", 5);
+
+        testUser = new User();
+        testUser.setId(1L);
+    }
+
+    @Test
+    @DisplayName("Should let a clean login from a trusted device skip 2FA")
+    void testTrustedDeviceLowRisk() {
+        // Arrange
+        when(deviceService.findDevice(testUser, "laptop")).thenReturn(Optional.of(device(true, 1)));
+
+        // Act
+        RiskAssessment risk = riskEngine.assess(testUser, "laptop", "10.0.0.1", CLEAN);
+
+        // Assert
+        assertTrue(risk.isMfaSkippable());
+        assertEquals(0, risk.getScore());
+        assertTrue(risk.getSignals().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should require 2FA for untrusted or unknown devices")
+    void testUntrustedDevice() {
+        // Arrange
+        when(deviceService.findDevice(testUser, "laptop")).thenReturn(Optional.of(device(false, 1)));
+        when(deviceService.findDevice(testUser, "phone")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertFalse(riskEngine.assess(testUser, "laptop", "10.0.0.1", CLEAN).isMfaSkippable());
+        assertFalse(riskEngine.assess(testUser, "phone", "10.0.0.1", CLEAN).isMfaSkippable());
+        assertTrue(riskEngine.assess(testUser, null, "10.0.0.1", CLEAN).getSignals()
+                .contains(RiskSignal.UNTRUSTED_DEVICE));
+    }
+
+    @Test
+    @DisplayName("Should require 2FA when a trusted device has been idle too long")
+    void testStaleDevice() {
+        // Arrange
+        when(deviceService.findDevice(testUser, "laptop")).thenReturn(Optional.of(device(true, 45)));
+
+        // Act
+        RiskAssessment risk = riskEngine.assess(testUser, "laptop", "10.0.0.1", CLEAN);
+
+        // Assert
+        assertFalse(risk.isMfaSkippable());
+        assertTrue(risk.getSignals().contains(RiskSignal.STALE_DEVICE));
+    }
+
+    @Test
+    @DisplayName("Should require 2FA when a trusted device logs in from a new IP address")
+    void testNewIpAddress() {
+        // Arrange
+        when(deviceService.findDevice(testUser, "laptop")).thenReturn(Optional.of(device(true, 1)));
+
+        // Act
+        RiskAssessment risk = riskEngine.assess(testUser, "laptop", "10.9.9.9", CLEAN);
+
+        // Assert
+        assertFalse(risk.isMfaSkippable());
+        assertTrue(risk.getSignals().contains(RiskSignal.IP_CHANGED));
+    }
+
+    @Test
+    @DisplayName("Should add up recent failed attempts")
+    void testCombinedSignals() {
+        // Arrange
+        when(deviceService.findDevice(testUser, "laptop")).thenReturn(Optional.of(device(true, 1)));
+
+        // Act
+        RiskAssessment oneFailure = riskEngine.assess(testUser, "laptop", "10.0.0.1",
+                new LoginRateStatus(1, 0, false));
+        RiskAssessment manyFailures = riskEngine.assess(testUser, "laptop", "10.0.0.1",
+                new LoginRateStatus(2, 1, false));
+
+        // Assert
+        assertTrue(oneFailure.isMfaSkippable());
+        assertFalse(manyFailures.isMfaSkippable());
+        assertTrue(manyFailures.getSignals().contains(RiskSignal.RECENT_FAILED_ATTEMPTS));
+    }
+
+    @Test
+    @DisplayName("Should require 2FA once the user logs in too often within the window")
+    void testHighVelocity() {
+        // Arrange
+        when(deviceService.findDevice(testUser, "laptop")).thenReturn(Optional.of(device(true, 1)));
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            assertTrue(riskEngine.assess(testUser, "laptop", "10.0.0.1", CLEAN).isMfaSkippable());
+        }
+        RiskAssessment sixth = riskEngine.assess(testUser, "laptop", "10.0.0.1", CLEAN);
+
+        // Assert
+        assertFalse(sixth.isMfaSkippable());
+        assertTrue(sixth.getSignals().contains(RiskSignal.HIGH_VELOCITY));
+    }
+
+    @Test
+    @DisplayName("Should always require 2FA without touching devices when disabled")
+    void testDisabled() {
+        // Arrange
+        ReflectionTestUtils.setField(riskEngine, "enabled", false);
+
+        // Act
+        RiskAssessment risk = riskEngine.assess(testUser, "laptop", "10.0.0.1", CLEAN);
+
+        // Assert
+        assertFalse(risk.isMfaSkippable());
+        verifyNoInteractions(deviceService);
+    }
+
+    private AuthDevice device(boolean trusted, int idleDays) {
+        return AuthDevice.builder()
+                .id(1L)
+                .user(testUser)
+                .deviceFingerprint("laptop")
+                .lastIp("10.0.0.1")
+                .lastSeen(LocalDateTime.now().minusDays(idleDays))
+                .isTrusted(trusted)
+                .build();
+    }
+}
@@ -0,0 +1,212 @@
+package com.medhelp.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medhelp.backend.config.NotificationProperties;
+import com.medhelp.backend.model.NotificationOutboxMessage;
+import com.medhelp.backend.model.User;
+import com.medhelp.backend.repository.NotificationOutboxRepository;
+import com.medhelp.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("NotificationDispatcher Tests")
+class NotificationDispatcherTest {
+
+    @Mock
+    private NotificationOutboxRepository outboxRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private NotificationSettingsService notificationSettingsService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private NotificationProperties properties;
+    private NotificationDispatcher dispatcher;
+    private RecordingAdapter email;
+    private RecordingAdapter sms;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new NotificationProperties();
+        for (NotificationChannel channel : NotificationChannel.values()) {
+            NotificationProperties.Channel config = new NotificationProperties.Channel();
+            config.setRatePerSecond(1000);
+            properties.getChannels().put(channel, config);
+        }
+        email = new RecordingAdapter(NotificationChannel.EMAIL);
+        sms = new RecordingAdapter(NotificationChannel.SMS);
+        dispatcher = new NotificationDispatcher(List.of(email, sms), outboxRepository, userRepository,
+                notificationSettingsService, properties, new ObjectMapper().findAndRegisterModules(), meterRegistry);
+        user = User.builder().id(1L).email("test@example.com").phone("+15550100").build();
+    }
+
+    @Test
+    @DisplayName("Should store one outbox row per channel and deliver the event from it")
+    void testDispatchStoresRowsAndDelivers() throws Exception {
+        // Arrange
+        NotificationEvent event = new NotificationEvent.NewDeviceLogin(user, "Chrome on Windows", "10.0.0.1",
+                LocalDateTime.of(2026, 3, 1, 12, 0));
+        ArgumentCaptor<List<NotificationOutboxMessage>> rows = ArgumentCaptor.forClass(List.class);
+
+        // Act
+        dispatcher.dispatch(event);
+
+        // Assert
+        verify(outboxRepository).insertAll(rows.capture());
+        assertEquals(List.of(NotificationChannel.EMAIL, NotificationChannel.SMS),
+                rows.getValue().stream().map(NotificationOutboxMessage::getChannel).toList());
+
+        NotificationOutboxMessage row = rows.getValue().get(0);
+        row.setId(5L);
+        row.setAttempts(1);
+        when(outboxRepository.claimDue(eq("EMAIL"), any(), any(), eq(10))).thenReturn(List.of(row));
+        when(userRepository.findAllById(List.of(1L))).thenReturn(List.of(user));
+        when(notificationSettingsService.isEnabled(1L, NotificationChannel.EMAIL, NotificationType.SECURITY_ALERT))
+                .thenReturn(true);
+
+        assertEquals(1, dispatcher.processBatch(NotificationChannel.EMAIL));
+        assertEquals(List.of(List.of(event)), email.sent);
+        verify(outboxRepository).deleteDelivered(5L);
+        assertEquals(1, meterRegistry.counter("notification.sent", "channel", "EMAIL").count());
+    }
+
+    @Test
+    @DisplayName("Should drop rows for channels the user opted out of without sending")
+    void testRespectsSettings() throws Exception {
+        // Arrange
+        when(outboxRepository.claimDue(eq("SMS"), any(), any(), anyInt()))
+                .thenReturn(List.of(row(7L, NotificationChannel.SMS, 1)));
+        when(userRepository.findAllById(List.of(1L))).thenReturn(List.of(user));
+        when(notificationSettingsService.isEnabled(1L, NotificationChannel.SMS, NotificationType.SECURITY_ALERT))
+                .thenReturn(false);
+
+        // Act
+        dispatcher.processBatch(NotificationChannel.SMS);
+
+        // Assert
+        assertTrue(sms.sent.isEmpty());
+        verify(outboxRepository).deleteDelivered(7L);
+        assertEquals(1, meterRegistry.counter("notification.skipped", "channel", "SMS").count());
+    }
+
+    @Test
+    @DisplayName("Should hand a user's rows to the adapter together and hold them when it asks")
+    void testHoldsRowsTogether() throws Exception {
+        // Arrange
+        LocalDateTime closesAt = LocalDateTime.now().plusSeconds(90);
+        email.holdUntil = closesAt;
+        when(outboxRepository.claimDue(eq("EMAIL"), any(), any(), anyInt()))
+                .thenReturn(List.of(row(7L, NotificationChannel.EMAIL, 1), row(8L, NotificationChannel.EMAIL, 1)));
+        when(userRepository.findAllById(List.of(1L))).thenReturn(List.of(user));
+        when(notificationSettingsService.isEnabled(any(), any(), any())).thenReturn(true);
+
+        // Act
+        dispatcher.processBatch(NotificationChannel.EMAIL);
+
+        // Assert
+        verify(outboxRepository).hold(List.of(7L, 8L), closesAt);
+        verify(outboxRepository, never()).deleteDelivered(any());
+        assertEquals(0, meterRegistry.counter("notification.sent", "channel", "EMAIL").count());
+    }
+
+    @Test
+    @DisplayName("Should reschedule a failed send instead of dropping it")
+    void testReschedulesFailedSend() throws Exception {
+        // Arrange
+        email.failures.set(1);
+        when(outboxRepository.claimDue(eq("EMAIL"), any(), any(), anyInt()))
+                .thenReturn(List.of(row(7L, NotificationChannel.EMAIL, 1)));
+        when(userRepository.findAllById(List.of(1L))).thenReturn(List.of(user));
+        when(notificationSettingsService.isEnabled(any(), any(), any())).thenReturn(true);
+
+        // Act
+        dispatcher.processBatch(NotificationChannel.EMAIL);
+
+        // Assert
+        verify(outboxRepository).reschedule(eq(7L), any(LocalDateTime.class), eq("RuntimeException: Provider unavailable"));
+        verify(outboxRepository, never()).deleteDelivered(any());
+        assertEquals(1, meterRegistry.counter("notification.retried", "channel", "EMAIL").count());
+    }
+
+    @Test
+    @DisplayName("Should keep the row as a dead letter after the maximum number of attempts")
+    void testGivesUpAfterMaxAttempts() throws Exception {
+        // Arrange
+        email.failures.set(1);
+        when(outboxRepository.claimDue(eq("EMAIL"), any(), any(), anyInt()))
+                .thenReturn(List.of(row(7L, NotificationChannel.EMAIL, 3)));
+        when(userRepository.findAllById(List.of(1L))).thenReturn(List.of(user));
+        when(notificationSettingsService.isEnabled(any(), any(), any())).thenReturn(true);
+
+        // Act
+        dispatcher.processBatch(NotificationChannel.EMAIL);
+
+        // Assert
+        verify(outboxRepository).markDead(7L, "RuntimeException: Provider unavailable");
+        verify(outboxRepository, never()).reschedule(any(), any(), any());
+        assertEquals(1, meterRegistry.counter("notification.failed", "channel", "EMAIL").count());
+    }
+
+    private static NotificationOutboxMessage row(Long id, NotificationChannel channel, int attempts) {
+        return NotificationOutboxMessage.builder()
+                .id(id)
+                .userId(1L)
+                .channel(channel)
+                .eventKind("PASSWORD_CHANGED")
+                .payload("{}")
+                .attempts(attempts)
+                .build();
+    }
+
+    private static class RecordingAdapter implements NotificationChannelAdapter {
+
+        private final NotificationChannel channel;
+        private final List<List<NotificationEvent>> sent = new CopyOnWriteArrayList<>();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile LocalDateTime holdUntil;
+
+        private RecordingAdapter(NotificationChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public NotificationChannel channel() {
+            return channel;
+        }
+
+        @Override
+        public Optional<LocalDateTime> send(User user, List<NotificationEvent> events) {
+            if (failures.getAndDecrement() > 0) {
+                throw new RuntimeException("Provider unavailable");
+            }
+            if (holdUntil != null) {
+                return Optional.of(holdUntil);
+            }
+            sent.add(events);
+            return Optional.empty();
+        }
+    }
+}
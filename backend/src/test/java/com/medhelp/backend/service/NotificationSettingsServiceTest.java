@@ -0,0 +1,113 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.exception.PreconditionFailedException;
+import com.medhelp.backend.model.NotificationFlag;
+import com.medhelp.backend.model.NotificationSettings;
+import com.medhelp.backend.repository.NotificationSettingsRepository;
+import com.medhelp.backend.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("NotificationSettingsService Tests")
+class NotificationSettingsServiceTest {
+
+    @Mock
+    private NotificationSettingsRepository notificationSettingsRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    private NotificationSettingsService notificationSettingsService;
+
+    @BeforeEach
+    void setUp() {
+        notificationSettingsService = new NotificationSettingsService(notificationSettingsRepository, userRepository,
+                100, 60);
+    }
+
+    @Test
+    @DisplayName("Should write only the flags in the patch")
+    void testPatchWritesMask() {
+        // Arrange
+        Map<String, Boolean> changes = new LinkedHashMap<>();
+        changes.put("emailPromotions", true);
+        changes.put("smsSecurityAlerts", false);
+        NotificationSettings saved = NotificationSettings.builder().id(5L).version(1L).build();
+        when(notificationSettingsRepository.findByUserId(1L)).thenReturn(Optional.of(saved));
+
+        // Act
+        NotificationSettings result = notificationSettingsService.patchNotificationSettings(1L, changes, null);
+
+        // Assert
+        int mask = NotificationFlag.EMAIL_PROMOTIONS.bit() | NotificationFlag.SMS_SECURITY_ALERTS.bit();
+        verify(notificationSettingsRepository).patchFlags(eq(1L), eq(mask), eq(NotificationFlag.EMAIL_PROMOTIONS.bit()),
+                eq(NotificationFlag.DEFAULTS), any());
+        verify(notificationSettingsRepository, never()).findForUpdateByUserId(any());
+        assertSame(saved, result);
+    }
+
+    @Test
+    @DisplayName("Should reject unknown flags and missing values without writing")
+    void testPatchRejectsInvalidChanges() {
+        // Arrange
+        Map<String, Boolean> withNull = new LinkedHashMap<>();
+        withNull.put("emailPromotions", null);
+
+        // Act & Assert
+        assertThrows(RuntimeException.class,
+                () -> notificationSettingsService.patchNotificationSettings(1L, Map.of("emailFax", true), null));
+        assertThrows(RuntimeException.class,
+                () -> notificationSettingsService.patchNotificationSettings(1L, withNull, null));
+        assertThrows(RuntimeException.class,
+                () -> notificationSettingsService.patchNotificationSettings(1L, Map.of(), null));
+        verify(notificationSettingsRepository, never()).patchFlags(anyLong(), anyInt(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("Should refuse a patch based on an older version")
+    void testPatchChecksIfMatch() {
+        // Arrange
+        NotificationSettings current = NotificationSettings.builder().id(5L).version(3L).build();
+        when(notificationSettingsRepository.findForUpdateByUserId(1L)).thenReturn(Optional.of(current));
+
+        // Act & Assert
+        assertThrows(PreconditionFailedException.class, () -> notificationSettingsService
+                .patchNotificationSettings(1L, Map.of("emailPromotions", true), "\"notifications-1-2\""));
+        verify(notificationSettingsRepository, never()).patchFlags(anyLong(), anyInt(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("Should answer from the stored flags, or the defaults without a row")
+    void testIsEnabledFromFlags() {
+        // Arrange
+        when(notificationSettingsRepository.findFlagsByUserId(1L))
+                .thenReturn(Optional.of(NotificationFlag.SMS_PROMOTIONS.bit()));
+        when(notificationSettingsRepository.findFlagsByUserId(2L)).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertTrue(notificationSettingsService.isEnabled(1L, NotificationChannel.SMS, NotificationType.PROMOTION));
+        assertFalse(notificationSettingsService.isEnabled(1L, NotificationChannel.EMAIL, NotificationType.SECURITY_ALERT));
+        assertTrue(notificationSettingsService.isEnabled(2L, NotificationChannel.EMAIL, NotificationType.SECURITY_ALERT));
+        assertFalse(notificationSettingsService.isEnabled(2L, NotificationChannel.PUSH, NotificationType.PROMOTION));
+        // Cached after the first lookup
+        verify(notificationSettingsRepository, times(1)).findFlagsByUserId(1L);
+        // The column default in V17
+        assertEquals(5947, NotificationFlag.DEFAULTS);
+    }
+}
@@ -0,0 +1,136 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.User;
+import com.medhelp.backend.repository.UserRepository;
+import com.medhelp.backend.service.SignedTokenService.Purpose;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PasswordResetService Tests")
+class PasswordResetServiceTest {
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+
+    @Mock
+    private PasswordEncoder passwordEncoder;
+
+    private SignedTokenService signedTokenService;
+    private PasswordResetService passwordResetService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        signedTokenService = new SignedTokenService();
+        ReflectionTestUtils.setField(signedTokenService, "key", "test-signed-token-key");
+        passwordResetService = new PasswordResetService(signedTokenService, emailService, userService,
+                userRepository, notificationDispatcher, passwordEncoder);
+        ReflectionTestUtils.setField(passwordResetService, "expiryHours", 1);
+        user = User.builder().id(1L).email("test@example.com").password("old-hash").build();
+    }
+
+    @Test
+    @DisplayName("Should email a signed token without storing anything")
+    void testInitiateReset() {
+        // Arrange
+        when(userService.getUserByEmail("test@example.com")).thenReturn(user);
+
+        // Act
+        passwordResetService.initiatePasswordReset("test@example.com");
+
+        // Assert
+        verify(emailService).sendPasswordResetEmail(eq(user), argThat(token ->
+                signedTokenService.verify(Purpose.PASSWORD_RESET, token).isPresent()));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("Should reset the password only while it is the one the token was issued for")
+    void testResetPassword() {
+        // Arrange
+        String token = signedTokenService.issue(Purpose.PASSWORD_RESET, user, Duration.ofHours(1));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(passwordEncoder.encode("NewPassword123!")).thenReturn("new-hash");
+        when(userRepository.resetPasswordIfUnchanged(eq(1L), eq("old-hash"), eq("new-hash"), any())).thenReturn(1);
+
+        // Act
+        boolean reset = passwordResetService.resetPassword(token, "NewPassword123!");
+
+        // Assert
+        assertTrue(reset);
+        verify(notificationDispatcher).dispatch(any(NotificationEvent.PasswordChanged.class));
+    }
+
+    @Test
+    @DisplayName("Should reject a token used concurrently by another reset")
+    void testResetPasswordRace() {
+        // Arrange
+        String token = signedTokenService.issue(Purpose.PASSWORD_RESET, user, Duration.ofHours(1));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(passwordEncoder.encode("NewPassword123!")).thenReturn("new-hash");
+        when(userRepository.resetPasswordIfUnchanged(eq(1L), eq("old-hash"), eq("new-hash"), any())).thenReturn(0);
+
+        // Act
+        boolean reset = passwordResetService.resetPassword(token, "NewPassword123!");
+
+        // Assert
+        assertFalse(reset);
+        verifyNoInteractions(notificationDispatcher);
+    }
+
+    @Test
+    @DisplayName("Should reject a spent token after loading the user")
+    void testSpentToken() {
+        // Arrange
+        String token = signedTokenService.issue(Purpose.PASSWORD_RESET, user, Duration.ofHours(1));
+        User changed = User.builder().id(1L).email("test@example.com").password("new-hash").build();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(changed));
+
+        // Act
+        boolean reset = passwordResetService.resetPassword(token, "NewPassword123!");
+
+        // Assert
+        assertFalse(reset);
+        verify(userRepository, never()).resetPasswordIfUnchanged(any(), any(), any(), any());
+        verifyNoInteractions(passwordEncoder);
+    }
+
+    @Test
+    @DisplayName("Should reject invalid and expired tokens without database access")
+    void testInvalidTokenNeedsNoDatabase() {
+        // Arrange
+        String expired = signedTokenService.issue(Purpose.PASSWORD_RESET, user, Duration.ofSeconds(-1));
+        String verification = signedTokenService.issue(Purpose.EMAIL_VERIFICATION, user, Duration.ofHours(1));
+
+        // Act & Assert
+        assertFalse(passwordResetService.resetPassword(expired, "NewPassword123!"));
+        assertFalse(passwordResetService.resetPassword(verification, "NewPassword123!"));
+        assertFalse(passwordResetService.resetPassword("garbage", "NewPassword123!"));
+        assertFalse(passwordResetService.validateResetToken("garbage"));
+        verifyNoInteractions(userRepository, passwordEncoder);
+    }
+}
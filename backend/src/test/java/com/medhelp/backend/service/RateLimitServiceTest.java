@@ -25,6 +25,9 @@ class RateLimitServiceTest {
     @Mock
     private LoginAttemptRepository loginAttemptRepository;
 
+    @Mock
+    private UserAgentService userAgentService;
+
     @InjectMocks
     private RateLimitService rateLimitService;
 
@@ -52,6 +55,7 @@ class RateLimitServiceTest {
         String ipAddress = "127.0.0.1";
         String userAgent = "Mozilla/5.0";
 
+        when(userAgentService.intern(userAgent)).thenReturn(7L);
         when(loginAttemptRepository.save(any(LoginAttempt.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -59,7 +63,42 @@ class RateLimitServiceTest {
         rateLimitService.recordLoginAttempt(email, ipAddress, userAgent, true, null);
 
         // Assert
-        verify(loginAttemptRepository).save(any(LoginAttempt.class));
+        verify(loginAttemptRepository).save(argThat(attempt -> Long.valueOf(7L).equals(attempt.getUserAgentId())));
+    }
+
+    @Test
+    @DisplayName("Should keep the user agent of a failed login attempt without interning it")
+    void testRecordFailedLoginAttempt() {
+        // Arrange
+        when(loginAttemptRepository.save(any(LoginAttempt.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        rateLimitService.recordLoginAttempt("test@example.com", "127.0.0.1", "attacker/1.0", false,
+                "Bad credentials");
+
+        // Assert
+        verify(loginAttemptRepository).save(argThat(attempt -> attempt.getUserAgentId() == null
+                && "attacker/1.0".equals(attempt.getUserAgent())));
+        verifyNoInteractions(userAgentService);
+    }
+
+    @Test
+    @DisplayName("Should cap a failed attempt's user agent at 512 code points")
+    void testRecordFailedLoginAttemptTruncatesUserAgent() {
+        // Arrange
+        String userAgent = "\uD83D\uDE00".repeat(600);
+        when(loginAttemptRepository.save(any(LoginAttempt.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        rateLimitService.recordLoginAttempt("test@example.com", "127.0.0.1", userAgent, false,
+                "Bad credentials");
+
+        // Assert
+        verify(loginAttemptRepository).save(argThat(attempt ->
+                attempt.getUserAgent().codePointCount(0, attempt.getUserAgent().length()) == 512
+                        && userAgent.startsWith(attempt.getUserAgent())));
     }
 
     @Test
@@ -0,0 +1,72 @@
+package com.medhelp.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("RedisMfaSessionStore Tests")
+class RedisMfaSessionStoreTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private RedisMfaSessionStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new RedisMfaSessionStore(redisTemplate, new ObjectMapper());
+        ReflectionTestUtils.setField(store, "ttlSeconds", 300L);
+    }
+
+    @Test
+    @DisplayName("Should write the session with a native TTL and read it back")
+    void testCreateAndFind() {
+        // Arrange
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        ArgumentCaptor<String> key = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> value = ArgumentCaptor.forClass(String.class);
+
+        // Act
+        String sessionId = store.create(1L, "device-fp", "127.0.0.1", "Mozilla/5.0");
+        verify(valueOperations).set(key.capture(), value.capture(), eq(Duration.ofSeconds(300)));
+        when(valueOperations.get("mfa:session:" + sessionId)).thenReturn(value.getValue());
+        Optional<MfaSessionStore.PendingMfaSession> session = store.find(sessionId);
+
+        // Assert
+        assertEquals("mfa:session:" + sessionId, key.getValue());
+        assertTrue(session.isPresent());
+        assertEquals(1L, session.get().getUserId());
+        assertEquals("Mozilla/5.0", session.get().getUserAgent());
+    }
+
+    @Test
+    @DisplayName("Should consume a session only when the key was deleted")
+    void testConsume() {
+        // Arrange
+        when(redisTemplate.delete(anyString())).thenReturn(true, false);
+
+        // Act & Assert
+        assertTrue(store.consume("session-id"));
+        assertFalse(store.consume("session-id"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.dto.LoginResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("RefreshIdempotencyCache Tests")
+class RefreshIdempotencyCacheTest {
+
+    private static final byte[] TOKEN_HASH = new byte[32];
+
+    private RefreshIdempotencyCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RefreshIdempotencyCache();
+        ReflectionTestUtils.setField(cache, "windowSeconds", 5L);
+    }
+
+    @Test
+    @DisplayName("Concurrent callers with the same token share a single rotation")
+    void testConcurrentCallersShareRotation() throws Exception {
+        // Arrange
+        AtomicInteger rotations = new AtomicInteger();
+        CountDownLatch rotationStarted = new CountDownLatch(1);
+        CountDownLatch releaseRotation = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // Act
+        Future<RefreshIdempotencyCache.RefreshedSession> first = executor.submit(() ->
+                cache.getOrRotate(TOKEN_HASH, () -> {
+                    rotations.incrementAndGet();
+                    rotationStarted.countDown();
+                    await(releaseRotation);
+                    return session("new-token");
+                }));
+        rotationStarted.await(5, TimeUnit.SECONDS);
+        Future<RefreshIdempotencyCache.RefreshedSession> second = executor.submit(() ->
+                cache.getOrRotate(TOKEN_HASH.clone(), () -> {
+                    rotations.incrementAndGet();
+                    return session("other-token");
+                }));
+        releaseRotation.countDown();
+
+        // Assert
+        assertEquals("new-token", first.get(5, TimeUnit.SECONDS).getRefreshToken());
+        assertSame(first.get(), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, rotations.get());
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Callers within the window after completion get the cached result")
+    void testResultReusedWithinWindow() {
+        // Arrange
+        RefreshIdempotencyCache.RefreshedSession first = cache.getOrRotate(TOKEN_HASH, () -> session("new-token"));
+
+        // Act
+        RefreshIdempotencyCache.RefreshedSession second = cache.getOrRotate(TOKEN_HASH,
+                () -> fail("Rotation must not run twice within the window"));
+
+        // Assert
+        assertSame(first, second);
+    }
+
+    @Test
+    @DisplayName("Failed rotations are not cached")
+    void testFailureNotCached() {
+        // Act
+        assertThrows(RuntimeException.class, () -> cache.getOrRotate(TOKEN_HASH, () -> {
+            throw new RuntimeException("Invalid or expired refresh token");
+        }));
+        RefreshIdempotencyCache.RefreshedSession retry = cache.getOrRotate(TOKEN_HASH, () -> session("new-token"));
+
+        // Assert
+        assertEquals("new-token", retry.getRefreshToken());
+    }
+
+    @Test
+    @DisplayName("A rotation failing with an Error does not leave an entry in flight")
+    void testErrorNotCached() {
+        // Act
+        assertThrows(AssertionError.class, () -> cache.getOrRotate(TOKEN_HASH, () -> {
+            throw new AssertionError("driver failure");
+        }));
+        RefreshIdempotencyCache.RefreshedSession retry = cache.getOrRotate(TOKEN_HASH, () -> session("new-token"));
+
+        // Assert
+        assertEquals("new-token", retry.getRefreshToken());
+    }
+
+    @Test
+    @DisplayName("Expired results are evicted")
+    void testEvictExpired() {
+        // Arrange
+        ReflectionTestUtils.setField(cache, "windowSeconds", 0L);
+        cache.getOrRotate(TOKEN_HASH, () -> session("new-token"));
+
+        // Act
+        cache.evictExpired();
+
+        // Assert
+        assertEquals(0, cache.size());
+    }
+
+    private static RefreshIdempotencyCache.RefreshedSession session(String token) {
+        return new RefreshIdempotencyCache.RefreshedSession(token,
+                LoginResponse.builder().accessToken("access-" + token).build());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("SecurityAlertCoalescer Tests")
+class SecurityAlertCoalescerTest {
+
+    @Mock
+    private EmailService emailService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SecurityAlertCoalescer coalescer;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new SecurityAlertCoalescer(emailService, jdbcTemplate, meterRegistry);
+        ReflectionTestUtils.setField(coalescer, "windowSeconds", 120L);
+        ReflectionTestUtils.setField(coalescer, "maxAlerts", 3);
+        user = User.builder().id(1L).email("test@example.com").build();
+    }
+
+    @Test
+    @DisplayName("Should send a lone alert as its usual email right away")
+    void testLoneAlertSentAsIs() {
+        // Arrange
+        LocalDateTime loginTime = LocalDateTime.of(2026, 1, 1, 12, 0);
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(1);
+
+        // Act
+        Optional<LocalDateTime> hold = coalescer.send(user,
+                List.of(new NotificationEvent.NewDeviceLogin(user, "Firefox", "198.51.100.2", loginTime)));
+
+        // Assert
+        assertTrue(hold.isEmpty());
+        verify(emailService).sendNewDeviceLoginAlert(user, "Firefox", "198.51.100.2", loginTime);
+        verify(emailService, never()).sendSecurityDigest(any(), any(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should merge held alerts into one digest of at most max-alerts items")
+    @SuppressWarnings("unchecked")
+    void testBurstBecomesOneDigest() {
+        // Arrange
+        LocalDateTime loginTime = LocalDateTime.of(2026, 1, 1, 12, 0);
+        List<NotificationEvent> alerts = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            alerts.add(new NotificationEvent.AccountLocked(user, 30));
+        }
+        alerts.add(new NotificationEvent.NewDeviceLogin(user, "Firefox", "198.51.100.2", loginTime));
+        alerts.add(new NotificationEvent.NewDeviceLogin(user, "Firefox", "198.51.100.2", loginTime.plusMinutes(1)));
+        alerts.add(new NotificationEvent.NewDeviceLogin(user, "Safari", "198.51.100.3", loginTime));
+        alerts.add(new NotificationEvent.NewDeviceLogin(user, "Edge", "198.51.100.4", loginTime));
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(1);
+
+        // Act
+        Optional<LocalDateTime> hold = coalescer.send(user, alerts);
+
+        // Assert
+        assertTrue(hold.isEmpty());
+        ArgumentCaptor<List<SecurityAlertCoalescer.DigestItem>> items = ArgumentCaptor.forClass(List.class);
+        verify(emailService).sendSecurityDigest(eq(user), items.capture(), eq(1));
+        verifyNoMoreInteractions(emailService);
+        assertEquals(3, items.getValue().size());
+        assertEquals(new SecurityAlertCoalescer.DigestItem("New device login", "Firefox, 198.51.100.2", 2,
+                loginTime.plusMinutes(1)), items.getValue().get(1));
+        assertEquals(50, items.getValue().get(0).count());
+    }
+
+    @Test
+    @DisplayName("Should hold alerts until the open window closes")
+    @SuppressWarnings("unchecked")
+    void testHoldsWhileWindowOpen() {
+        // Arrange
+        LocalDateTime closesAt = LocalDateTime.now().plusSeconds(60);
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(0);
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(1L))).thenReturn(List.of(closesAt));
+
+        // Act
+        Optional<LocalDateTime> hold = coalescer.send(user, List.of(new NotificationEvent.AccountLocked(user, 30),
+                new NotificationEvent.PasswordChanged(user)));
+
+        // Assert
+        assertEquals(Optional.of(closesAt), hold);
+        verifyNoInteractions(emailService);
+        assertEquals(2, meterRegistry.counter("notification.coalesced").count());
+    }
+
+    @Test
+    @DisplayName("Should keep separate windows per user")
+    void testWindowsPerUser() {
+        // Arrange
+        User other = User.builder().id(2L).email("other@example.com").build();
+        when(jdbcTemplate.update(startsWith("INSERT"), any(Object[].class))).thenReturn(1);
+
+        // Act
+        coalescer.send(user, List.of(new NotificationEvent.PasswordChanged(user)));
+        coalescer.send(other, List.of(new NotificationEvent.PasswordChanged(other)));
+
+        // Assert
+        verify(emailService).sendPasswordChangedEmail(user);
+        verify(emailService).sendPasswordChangedEmail(other);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(2)).update(startsWith("INSERT"), args.capture());
+        assertEquals(List.of(1L, 2L), args.getAllValues().stream().map(values -> values[0]).toList());
+    }
+}
@@ -0,0 +1,89 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.User;
+import com.medhelp.backend.service.SignedTokenService.Purpose;
+import com.medhelp.backend.service.SignedTokenService.VerifiedToken;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SignedTokenService Tests")
+class SignedTokenServiceTest {
+
+    private SignedTokenService signedTokenService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        signedTokenService = newService("test-signed-token-key");
+        user = User.builder().id(7L).email("test@example.com").password("$2a$10$hash").emailVerified(false).build();
+    }
+
+    @Test
+    @DisplayName("Should accept an issued token while the user state is unchanged")
+    void testRoundTrip() {
+        // Arrange
+        String token = signedTokenService.issue(Purpose.PASSWORD_RESET, user, Duration.ofHours(1));
+
+        // Act
+        Optional<VerifiedToken> verified = signedTokenService.verify(Purpose.PASSWORD_RESET, token);
+
+        // Assert
+        assertTrue(verified.isPresent());
+        assertEquals(7L, verified.get().userId());
+        assertTrue(signedTokenService.matchesState(verified.get(), user));
+    }
+
+    @Test
+    @DisplayName("Should reject a token once the state it was issued for changes")
+    void testSpentByStateChange() {
+        // Arrange
+        String reset = signedTokenService.issue(Purpose.PASSWORD_RESET, user, Duration.ofHours(1));
+        String verification = signedTokenService.issue(Purpose.EMAIL_VERIFICATION, user, Duration.ofHours(1));
+
+        // Act
+        user.setPassword("$2a$10$other");
+        user.setEmailVerified(true);
+
+        // Assert
+        assertFalse(signedTokenService.matchesState(
+                signedTokenService.verify(Purpose.PASSWORD_RESET, reset).orElseThrow(), user));
+        assertFalse(signedTokenService.matchesState(
+                signedTokenService.verify(Purpose.EMAIL_VERIFICATION, verification).orElseThrow(), user));
+    }
+
+    @Test
+    @DisplayName("Should reject tampered, expired, foreign and wrong-purpose tokens")
+    void testRejectsInvalidTokens() {
+        // Arrange
+        String token = signedTokenService.issue(Purpose.PASSWORD_RESET, user, Duration.ofHours(1));
+        // The first signature character carries only signature bits (the last may hold padding bits)
+        int signatureStart = token.indexOf('.') + 1;
+        char first = token.charAt(signatureStart);
+        String tampered = token.substring(0, signatureStart) + (first == 'A' ? 'B' : 'A')
+                + token.substring(signatureStart + 1);
+        String expired = signedTokenService.issue(Purpose.PASSWORD_RESET, user, Duration.ofSeconds(-1));
+        String foreign = newService("another-key").issue(Purpose.PASSWORD_RESET, user, Duration.ofHours(1));
+
+        // Act & Assert
+        assertTrue(signedTokenService.verify(Purpose.PASSWORD_RESET, tampered).isEmpty());
+        assertTrue(signedTokenService.verify(Purpose.PASSWORD_RESET, expired).isEmpty());
+        assertTrue(signedTokenService.verify(Purpose.PASSWORD_RESET, foreign).isEmpty());
+        assertTrue(signedTokenService.verify(Purpose.EMAIL_VERIFICATION, token).isEmpty());
+        assertTrue(signedTokenService.verify(Purpose.PASSWORD_RESET, "not-a-token").isEmpty());
+        assertTrue(signedTokenService.verify(Purpose.PASSWORD_RESET, "%%%.%%%").isEmpty());
+        assertTrue(signedTokenService.verify(Purpose.PASSWORD_RESET, null).isEmpty());
+    }
+
+    private static SignedTokenService newService(String key) {
+        SignedTokenService service = new SignedTokenService();
+        ReflectionTestUtils.setField(service, "key", key);
+        return service;
+    }
+}
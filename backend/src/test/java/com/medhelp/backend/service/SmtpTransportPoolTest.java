@@ -0,0 +1,258 @@
+package com.medhelp.backend.service;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SmtpTransportPool Tests")
+class SmtpTransportPoolTest {
+
+    private FakeSmtpServer server;
+    private SmtpTransportPool pool;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Should send many messages over one connection across leases")
+    void testReusesConnection() throws Exception {
+        // Arrange
+        server = new FakeSmtpServer(true);
+        pool = newPool(2, new Properties());
+
+        // Act
+        for (int batch = 0; batch < 3; batch++) {
+            try (SmtpTransportPool.Lease connection = pool.borrow()) {
+                for (int i = 0; i < 10; i++) {
+                    connection.send(message("user" + i + "@example.com"));
+                }
+            }
+        }
+
+        // Assert
+        assertEquals(30, server.messagesReceived.get());
+        assertEquals(1, server.connectionsAccepted.get());
+        assertEquals(1, pool.idleCount());
+    }
+
+    @Test
+    @DisplayName("Should bound concurrent connections and time out waiting for one")
+    void testBoundsConnections() throws Exception {
+        // Arrange
+        server = new FakeSmtpServer(true);
+        pool = newPool(2, new Properties());
+        ReflectionTestUtils.setField(pool, "borrowTimeoutMillis", 100L);
+
+        // Act
+        try (SmtpTransportPool.Lease first = pool.borrow(); SmtpTransportPool.Lease second = pool.borrow()) {
+            first.send(message("first@example.com"));
+            second.send(message("second@example.com"));
+
+            // Assert
+            MessagingException exception = assertThrows(MessagingException.class, pool::borrow);
+            assertTrue(exception.getMessage().contains("Timed out"));
+        }
+        assertEquals(2, server.connectionsAccepted.get());
+        assertEquals(2, pool.idleCount());
+    }
+
+    @Test
+    @DisplayName("Should replace an idle connection the server has dropped")
+    void testReplacesDroppedConnection() throws Exception {
+        // Arrange
+        server = new FakeSmtpServer(true);
+        pool = newPool(1, new Properties());
+        ReflectionTestUtils.setField(pool, "validateAfterIdleSeconds", 0L);
+        try (SmtpTransportPool.Lease connection = pool.borrow()) {
+            connection.send(message("before@example.com"));
+        }
+        server.dropConnections();
+        Thread.sleep(20);
+
+        // Act
+        try (SmtpTransportPool.Lease connection = pool.borrow()) {
+            connection.send(message("after@example.com"));
+        }
+
+        // Assert
+        assertEquals(2, server.messagesReceived.get());
+        assertEquals(2, server.connectionsAccepted.get());
+    }
+
+    @Test
+    @DisplayName("Should close a connection once it reaches the message limit")
+    void testRetiresConnectionAfterMessageLimit() throws Exception {
+        // Arrange
+        server = new FakeSmtpServer(true);
+        pool = newPool(1, new Properties());
+        ReflectionTestUtils.setField(pool, "maxMessagesPerConnection", 5);
+
+        // Act
+        try (SmtpTransportPool.Lease connection = pool.borrow()) {
+            for (int i = 0; i < 5; i++) {
+                connection.send(message("user" + i + "@example.com"));
+            }
+        }
+
+        // Assert
+        assertEquals(0, pool.idleCount());
+    }
+
+    @Test
+    @DisplayName("Should fail a send when the server does not answer within the read timeout")
+    void testReadTimeout() throws Exception {
+        // Arrange
+        server = new FakeSmtpServer(false);
+        Properties properties = new Properties();
+        properties.setProperty("mail.smtp.timeout", "200");
+        pool = newPool(1, properties);
+        long start = System.nanoTime();
+
+        // Act & Assert
+        try (SmtpTransportPool.Lease connection = pool.borrow()) {
+            assertThrows(MessagingException.class, () -> connection.send(message("user@example.com")));
+        }
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        assertEquals(0, pool.idleCount());
+    }
+
+    private SmtpTransportPool newPool(int maxConnections, Properties properties) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(server.port());
+        mailSender.setJavaMailProperties(properties);
+
+        SmtpTransportPool transportPool = new SmtpTransportPool(mailSender, maxConnections);
+        ReflectionTestUtils.setField(transportPool, "borrowTimeoutMillis", 1000L);
+        ReflectionTestUtils.setField(transportPool, "maxIdleSeconds", 60L);
+        ReflectionTestUtils.setField(transportPool, "validateAfterIdleSeconds", 5L);
+        ReflectionTestUtils.setField(transportPool, "maxAgeSeconds", 600L);
+        ReflectionTestUtils.setField(transportPool, "maxMessagesPerConnection", 500);
+        return transportPool;
+    }
+
+    private MimeMessage message(String to) throws MessagingException {
+        MimeMessage message = pool.createMimeMessage();
+        message.setFrom(new InternetAddress("noreply@medhelp.com"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(to));
+        message.setSubject("Welcome to MedHelp!");
+        message.setText("<p>Hello</p>", StandardCharsets.UTF_8.name(), "html");
+        return message;
+    }
+
+    /**
+     * Minimal in-process SMTP server: accepts everything, or never says hello when not responsive
+     */
+    private static final class FakeSmtpServer implements AutoCloseable {
+
+        private final ServerSocket serverSocket;
+        private final boolean responsive;
+        private final List<Socket> clients = new CopyOnWriteArrayList<>();
+        private final AtomicInteger connectionsAccepted = new AtomicInteger();
+        private final AtomicInteger messagesReceived = new AtomicInteger();
+
+        private FakeSmtpServer(boolean responsive) throws IOException {
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            this.responsive = responsive;
+            Thread acceptor = new Thread(this::acceptLoop, "fake-smtp-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void dropConnections() throws IOException {
+            for (Socket client : clients) {
+                client.close();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            dropConnections();
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket client = serverSocket.accept();
+                    clients.add(client);
+                    connectionsAccepted.incrementAndGet();
+                    if (responsive) {
+                        Thread handler = new Thread(() -> converse(client), "fake-smtp-session");
+                        handler.setDaemon(true);
+                        handler.start();
+                    }
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void converse(Socket client) {
+            try (client;
+                    BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+                    OutputStream out = client.getOutputStream()) {
+                reply(out, "220 localhost ESMTP");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                    switch (command) {
+                        case "EHLO", "HELO", "MAIL", "RCPT", "RSET", "NOOP" -> reply(out, "250 OK");
+                        case "DATA" -> {
+                            reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                            while ((line = in.readLine()) != null && !line.equals(".")) {
+                                // Discard the message content
+                            }
+                            messagesReceived.incrementAndGet();
+                            reply(out, "250 OK queued");
+                        }
+                        case "QUIT" -> {
+                            reply(out, "221 Bye");
+                            return;
+                        }
+                        default -> reply(out, "502 Command not implemented");
+                    }
+                }
+            } catch (IOException e) {
+                // Connection dropped by the test or the client
+            }
+        }
+
+        private static void reply(OutputStream out, String line) throws IOException {
+            out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+    }
+}
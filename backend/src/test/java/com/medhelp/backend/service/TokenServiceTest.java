@@ -1,10 +1,13 @@
 package com.medhelp.backend.service;
 
 import com.medhelp.backend.config.JwtConfigProperties;
+import com.medhelp.backend.dto.SessionPageResponse;
+import com.medhelp.backend.dto.SessionResponse;
 import com.medhelp.backend.model.RefreshToken;
 import com.medhelp.backend.model.User;
 import com.medhelp.backend.repository.RefreshTokenRepository;
 import com.medhelp.backend.security.JwtUtils;
+import com.medhelp.backend.util.UserAgentParser;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -12,16 +15,25 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -37,6 +49,9 @@ class TokenServiceTest {
     @Mock
     private JwtUtils jwtUtils;
 
+    @Mock
+    private UserAgentService userAgentService;
+
     @Mock
     private HttpServletRequest request;
 
@@ -54,6 +69,7 @@ class TokenServiceTest {
         testUser.setId(1L);
         testUser.setEmail("test@example.com");
         testUser.setUsername("testuser");
+        ReflectionTestUtils.setField(tokenService, "hashKey", "test-hash-key");
     }
 
     @Test
@@ -84,42 +100,194 @@ class TokenServiceTest {
         when(jwtConfig.getRefreshTokenExpiration()).thenReturn(86400000L);
         RefreshToken oldToken = RefreshToken.builder()
                 .id(1L)
-                .tokenHash("hashed-token")
+                .tokenHash(new byte[32])
+                .user(testUser)
+                .deviceFingerprint("device-fp")
+                .ipAddress("127.0.0.1")
+                .userAgentId(7L)
+                .expiresAt(LocalDateTime.now().plusDays(1))
+                .isRevoked(true)
+                .revokedAt(LocalDateTime.now())
+                .build();
+
+        when(refreshTokenRepository.revokeIfActive(any(byte[].class), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(oldToken));
+        when(refreshTokenRepository.save(any(RefreshToken.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        Optional<TokenService.RotatedRefreshToken> result = tokenService.validateAndRotate("raw-token");
+
+        // Assert
+        assertTrue(result.isPresent());
+        assertNotNull(result.get().getToken());
+        assertSame(oldToken, result.get().getPrevious());
+        verify(refreshTokenRepository, times(1)).save(any(RefreshToken.class));
+        verify(refreshTokenRepository, never()).revokeFamilyOfReusedToken(any(byte[].class), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should issue a single replacement carrying the device metadata")
+    void testValidateAndRotateCarriesMetadata() {
+        // Arrange
+        when(jwtConfig.getRefreshTokenExpiration()).thenReturn(86400000L);
+        UUID familyId = UUID.randomUUID();
+        RefreshToken oldToken = RefreshToken.builder()
+                .id(1L)
                 .user(testUser)
+                .familyId(familyId)
                 .deviceFingerprint("device-fp")
                 .ipAddress("127.0.0.1")
-                .userAgent("Mozilla/5.0")
+                .userAgentId(7L)
                 .expiresAt(LocalDateTime.now().plusDays(1))
-                .isRevoked(false)
+                .isRevoked(true)
                 .build();
 
-        when(refreshTokenRepository.findByTokenHash(anyString()))
+        when(refreshTokenRepository.revokeIfActive(any(byte[].class), any(LocalDateTime.class)))
+                .thenReturn(Optional.of(oldToken));
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        when(refreshTokenRepository.save(captor.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        tokenService.validateAndRotate("raw-token");
+
+        // Assert
+        RefreshToken replacement = captor.getValue();
+        assertEquals("device-fp", replacement.getDeviceFingerprint());
+        assertEquals(testUser, replacement.getUser());
+        assertEquals(familyId, replacement.getFamilyId());
+        assertEquals(7L, replacement.getUserAgentId());
+        assertFalse(replacement.getIsRevoked());
+        verifyNoInteractions(userAgentService);
+    }
+
+    @Test
+    @DisplayName("Should start a new token family on each login")
+    void testCreateRefreshTokenStartsNewFamily() {
+        // Arrange
+        when(jwtConfig.getRefreshTokenExpiration()).thenReturn(86400000L);
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        when(refreshTokenRepository.save(captor.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        tokenService.createRefreshToken(testUser, "device-fp", "127.0.0.1", "Mozilla/5.0");
+        tokenService.createRefreshToken(testUser, "device-fp", "127.0.0.1", "Mozilla/5.0");
+
+        // Assert
+        UUID first = captor.getAllValues().get(0).getFamilyId();
+        UUID second = captor.getAllValues().get(1).getFamilyId();
+        assertNotNull(first);
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    @DisplayName("Should store a 32-byte keyed hash of the token")
+    void testCreateRefreshTokenStoresKeyedHash() throws Exception {
+        // Arrange
+        when(jwtConfig.getRefreshTokenExpiration()).thenReturn(86400000L);
+        ArgumentCaptor<RefreshToken> captor = ArgumentCaptor.forClass(RefreshToken.class);
+        when(refreshTokenRepository.save(captor.capture())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        String token = tokenService.createRefreshToken(testUser, "device-fp", "127.0.0.1", "Mozilla/5.0");
+
+        // Assert
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec("test-hash-key".getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] expected = mac.doFinal(token.getBytes(StandardCharsets.UTF_8));
+        assertEquals(32, captor.getValue().getTokenHash().length);
+        assertArrayEquals(expected, captor.getValue().getTokenHash());
+    }
+
+    @Test
+    @DisplayName("Should fall back to the legacy SHA-256 hash for tokens issued before keyed hashing")
+    void testValidateAndRotateLegacyHashFallback() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(tokenService, "legacyHashFallback", true);
+        when(jwtConfig.getRefreshTokenExpiration()).thenReturn(86400000L);
+        byte[] legacyHash = MessageDigest.getInstance("SHA-256")
+                .digest("legacy-token".getBytes(StandardCharsets.UTF_8));
+        RefreshToken oldToken = RefreshToken.builder()
+                .id(1L)
+                .tokenHash(legacyHash)
+                .user(testUser)
+                .familyId(UUID.randomUUID())
+                .expiresAt(LocalDateTime.now().plusDays(1))
+                .isRevoked(true)
+                .build();
+        when(refreshTokenRepository.revokeIfActive(any(byte[].class), any(LocalDateTime.class)))
+                .thenReturn(Optional.empty());
+        when(refreshTokenRepository.revokeIfActive(eq(legacyHash), any(LocalDateTime.class)))
                 .thenReturn(Optional.of(oldToken));
         when(refreshTokenRepository.save(any(RefreshToken.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
 
         // Act
-        Optional<RefreshToken> result = tokenService.validateAndRotate("raw-token");
+        Optional<TokenService.RotatedRefreshToken> result = tokenService.validateAndRotate("legacy-token");
 
         // Assert
         assertTrue(result.isPresent());
-        assertTrue(oldToken.getIsRevoked());
-        assertNotNull(oldToken.getRevokedAt());
-        verify(refreshTokenRepository, times(2)).save(any(RefreshToken.class));
+        verify(refreshTokenRepository, times(2)).revokeIfActive(any(byte[].class), any(LocalDateTime.class));
+    }
+
+    @Test
+    @DisplayName("Should revoke the token family when a rotated token is replayed after the grace period")
+    void testValidateAndRotateReuseRevokesFamily() {
+        // Arrange
+        ReflectionTestUtils.setField(tokenService, "reuseGraceSeconds", 5);
+        when(refreshTokenRepository.revokeIfActive(any(byte[].class), any(LocalDateTime.class)))
+                .thenReturn(Optional.empty());
+        when(refreshTokenRepository.revokeFamilyOfReusedToken(any(byte[].class), any(LocalDateTime.class),
+                any(LocalDateTime.class))).thenReturn(1);
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+
+        // Act
+        Optional<TokenService.RotatedRefreshToken> result = tokenService.validateAndRotate("stolen-token");
+
+        // Assert
+        assertFalse(result.isPresent());
+        verify(refreshTokenRepository).revokeFamilyOfReusedToken(any(byte[].class), cutoff.capture(), now.capture());
+        assertEquals(now.getValue().minusSeconds(5), cutoff.getValue());
+        verify(refreshTokenRepository, never()).save(any(RefreshToken.class));
     }
 
     @Test
-    @DisplayName("Should return empty when token not found")
+    @DisplayName("Should revoke the family of a replayed token issued before keyed hashing")
+    void testValidateAndRotateLegacyReuseRevokesFamily() throws Exception {
+        // Arrange
+        ReflectionTestUtils.setField(tokenService, "legacyHashFallback", true);
+        byte[] legacyHash = MessageDigest.getInstance("SHA-256")
+                .digest("stolen-legacy-token".getBytes(StandardCharsets.UTF_8));
+        when(refreshTokenRepository.revokeIfActive(any(byte[].class), any(LocalDateTime.class)))
+                .thenReturn(Optional.empty());
+        when(refreshTokenRepository.revokeFamilyOfReusedToken(any(byte[].class), any(LocalDateTime.class),
+                any(LocalDateTime.class))).thenReturn(0);
+        when(refreshTokenRepository.revokeFamilyOfReusedToken(eq(legacyHash), any(LocalDateTime.class),
+                any(LocalDateTime.class))).thenReturn(2);
+
+        // Act
+        Optional<TokenService.RotatedRefreshToken> result = tokenService.validateAndRotate("stolen-legacy-token");
+
+        // Assert
+        assertFalse(result.isPresent());
+        verify(refreshTokenRepository, times(2)).revokeFamilyOfReusedToken(any(byte[].class), any(), any());
+        verify(refreshTokenRepository).revokeFamilyOfReusedToken(eq(legacyHash), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should return empty when token not found or already rotated")
     void testValidateAndRotateTokenNotFound() {
         // Arrange
-        when(refreshTokenRepository.findByTokenHash(anyString()))
+        when(refreshTokenRepository.revokeIfActive(any(byte[].class), any(LocalDateTime.class)))
                 .thenReturn(Optional.empty());
 
         // Act
-        Optional<RefreshToken> result = tokenService.validateAndRotate("invalid-token");
+        Optional<TokenService.RotatedRefreshToken> result = tokenService.validateAndRotate("invalid-token");
 
         // Assert
         assertFalse(result.isPresent());
+        verify(refreshTokenRepository, never()).save(any(RefreshToken.class));
     }
 
     @Test
@@ -128,20 +296,88 @@ class TokenServiceTest {
         // Arrange
         RefreshToken token = RefreshToken.builder()
                 .id(1L)
-                .tokenHash("hashed-token")
+                .tokenHash(new byte[32])
                 .user(testUser)
-                .isRevoked(false)
+                .isRevoked(true)
                 .build();
 
-        when(refreshTokenRepository.findByTokenHash(anyString()))
+        when(refreshTokenRepository.revokeIfActive(any(byte[].class), any(LocalDateTime.class)))
                 .thenReturn(Optional.of(token));
 
         // Act
         tokenService.revokeToken("raw-token");
 
         // Assert
-        verify(refreshTokenRepository).save(token);
-        assertTrue(token.getIsRevoked());
+        verify(refreshTokenRepository).revokeIfActive(any(byte[].class), any(LocalDateTime.class));
+        verify(refreshTokenRepository, never()).save(any(RefreshToken.class));
+    }
+
+    @Test
+    @DisplayName("Should create partitions beyond the token lifetime and drop expired ones")
+    void testMaintainPartitions() {
+        // Arrange
+        ReflectionTestUtils.setField(tokenService, "partitionLeadWeeks", 2);
+        when(jwtConfig.getRefreshTokenExpiration()).thenReturn(604800000L);
+        ArgumentCaptor<LocalDateTime> until = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> before = ArgumentCaptor.forClass(LocalDateTime.class);
+
+        // Act
+        tokenService.maintainPartitions();
+
+        // Assert
+        verify(refreshTokenRepository).createPartitionsUntil(until.capture());
+        verify(refreshTokenRepository).dropPartitionsExpiredBefore(before.capture());
+        assertEquals(before.getValue().plusWeeks(3), until.getValue());
+    }
+
+    @Test
+    @DisplayName("Should log rather than throw when partition maintenance fails")
+    void testMaintainPartitionsFailure() {
+        // Arrange
+        when(jwtConfig.getRefreshTokenExpiration()).thenReturn(604800000L);
+        when(refreshTokenRepository.createPartitionsUntil(any(LocalDateTime.class)))
+                .thenThrow(new DataIntegrityViolationException("relation already exists"));
+
+        // Act & Assert
+        assertDoesNotThrow(() -> tokenService.maintainPartitions());
+        verify(refreshTokenRepository, never()).dropPartitionsExpiredBefore(any());
+    }
+
+    @Test
+    @DisplayName("Should page active sessions with a keyset cursor")
+    void testGetActiveSessionsPaging() {
+        // Arrange
+        LocalDateTime createdAt = LocalDateTime.of(2025, 11, 21, 18, 30);
+        List<SessionResponse> rows = List.of(
+                SessionResponse.builder().id(3L).createdAt(createdAt).build(),
+                SessionResponse.builder().id(2L).createdAt(createdAt.minusHours(1)).build(),
+                SessionResponse.builder().id(1L).createdAt(createdAt.minusHours(2)).build());
+        when(refreshTokenRepository.findActiveSessions(eq(1L), any(LocalDateTime.class), eq(Limit.of(3))))
+                .thenReturn(rows);
+        when(refreshTokenRepository.findActiveSessionsAfter(eq(1L), any(LocalDateTime.class),
+                eq(createdAt.minusHours(1)), eq(2L), eq(Limit.of(3))))
+                .thenReturn(List.of(rows.get(2)));
+        when(userAgentService.parse(any())).thenReturn(UserAgentParser.UNKNOWN);
+
+        // Act
+        SessionPageResponse firstPage = tokenService.getActiveSessions(1L, null, 2);
+        SessionPageResponse secondPage = tokenService.getActiveSessions(1L, firstPage.getNextCursor(), 2);
+
+        // Assert
+        assertEquals(2, firstPage.getSessions().size());
+        assertNotNull(firstPage.getNextCursor());
+        assertEquals(1, secondPage.getSessions().size());
+        assertNull(secondPage.getNextCursor());
+        assertEquals("UNKNOWN", secondPage.getSessions().get(0).getDeviceClass());
+    }
+
+    @Test
+    @DisplayName("Should reject a malformed session cursor")
+    void testGetActiveSessionsInvalidCursor() {
+        // Act & Assert
+        RuntimeException exception = assertThrows(RuntimeException.class,
+                () -> tokenService.getActiveSessions(1L, "not-a-cursor", 20));
+        assertEquals("Invalid session cursor", exception.getMessage());
     }
 
     @Test
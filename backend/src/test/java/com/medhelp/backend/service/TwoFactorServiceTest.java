@@ -2,32 +2,46 @@ package com.medhelp.backend.service;
 
 import com.medhelp.backend.model.MfaSettings;
 import com.medhelp.backend.model.User;
+import com.medhelp.backend.repository.MfaBackupCodeRepository;
 import com.medhelp.backend.repository.MfaSettingsRepository;
+import com.medhelp.backend.repository.UserRepository;
 import com.warrenstrange.googleauth.GoogleAuthenticator;
 import com.warrenstrange.googleauth.GoogleAuthenticatorKey;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("TwoFactorService Tests")
 class TwoFactorServiceTest {
 
+    private static final String BACKUP_CODE_KEY = "test-backup-code-key";
+
     @Mock
     private MfaSettingsRepository mfaSettingsRepository;
 
-    @InjectMocks
+    @Mock
+    private MfaBackupCodeRepository mfaBackupCodeRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
     private TwoFactorService twoFactorService;
 
     private User testUser;
@@ -35,6 +49,9 @@ class TwoFactorServiceTest {
 
     @BeforeEach
     void setUp() {
+        twoFactorService = new TwoFactorService(mfaSettingsRepository, mfaBackupCodeRepository, userRepository, 100, 300,
+                BACKUP_CODE_KEY, true);
+
         testUser = new User();
         testUser.setId(1L);
         testUser.setEmail("test@example.com");
@@ -44,8 +61,6 @@ class TwoFactorServiceTest {
                 .user(testUser)
                 .enabled(false)
                 .secret("TESTSECRET123456")
-                .backupCodes(
-                        "12345678,87654321,11111111,22222222,33333333,44444444,55555555,66666666,77777777,88888888")
                 .build();
     }
 
@@ -64,7 +79,6 @@ class TwoFactorServiceTest {
         assertNotNull(result);
         assertTrue(result.getEnabled());
         assertNotNull(result.getSecret());
-        assertNotNull(result.getBackupCodes());
         verify(mfaSettingsRepository).save(any(MfaSettings.class));
     }
 
@@ -83,7 +97,9 @@ class TwoFactorServiceTest {
         // Assert
         assertNotNull(result);
         assertTrue(result.getEnabled());
+        assertTrue(testUser.getMfaEnabled());
         verify(mfaSettingsRepository).save(mfaSettings);
+        verify(userRepository).updateMfaEnabled(1L, true);
     }
 
     @Test
@@ -98,7 +114,9 @@ class TwoFactorServiceTest {
 
         // Assert
         assertFalse(mfaSettings.getEnabled());
+        assertFalse(testUser.getMfaEnabled());
         verify(mfaSettingsRepository).save(mfaSettings);
+        verify(userRepository).updateMfaEnabled(1L, false);
     }
 
     @Test
@@ -147,6 +165,8 @@ class TwoFactorServiceTest {
         mfaSettings.setEnabled(true);
         when(mfaSettingsRepository.findByUserAndEnabledTrue(testUser))
                 .thenReturn(Optional.of(mfaSettings));
+        when(mfaBackupCodeRepository.consume(eq(1L), any(byte[].class)))
+                .thenReturn(Optional.of(5L));
 
         // Act
         boolean result = twoFactorService.validateOtp(testUser, "12345678"); // Using backup code
@@ -155,6 +175,45 @@ class TwoFactorServiceTest {
         assertTrue(result); // Should validate backup code
     }
 
+    @Test
+    @DisplayName("Should consume backup codes by their keyed hash and reject reuse")
+    void testValidateOtpBackupCodeSingleUse() throws Exception {
+        // Arrange
+        mfaSettings.setEnabled(true);
+        when(mfaSettingsRepository.findByUserAndEnabledTrue(testUser))
+                .thenReturn(Optional.of(mfaSettings));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(BACKUP_CODE_KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        byte[] expectedHash = mac.doFinal("1:12345678".getBytes(StandardCharsets.UTF_8));
+        when(mfaBackupCodeRepository.consume(eq(1L), any(byte[].class)))
+                .thenReturn(Optional.of(5L), Optional.empty());
+
+        // Act & Assert
+        assertTrue(twoFactorService.validateOtp(testUser, "12345678"));
+        assertFalse(twoFactorService.validateOtp(testUser, "12345678"));
+        verify(mfaBackupCodeRepository, times(2)).consume(eq(1L), aryEq(expectedHash));
+    }
+
+    @Test
+    @DisplayName("Should still accept backup codes stored under the legacy unkeyed hash")
+    void testValidateOtpLegacyBackupCode() throws Exception {
+        // Arrange
+        mfaSettings.setEnabled(true);
+        when(mfaSettingsRepository.findByUserAndEnabledTrue(testUser))
+                .thenReturn(Optional.of(mfaSettings));
+        byte[] legacyHash = MessageDigest.getInstance("SHA-256")
+                .digest("1:12345678".getBytes(StandardCharsets.UTF_8));
+        when(mfaBackupCodeRepository.consume(eq(1L), any(byte[].class))).thenReturn(Optional.empty());
+        when(mfaBackupCodeRepository.consume(eq(1L), aryEq(legacyHash))).thenReturn(Optional.of(5L));
+
+        // Act
+        boolean result = twoFactorService.validateOtp(testUser, "12345678");
+
+        // Assert
+        assertTrue(result);
+        verify(mfaBackupCodeRepository, times(2)).consume(eq(1L), any(byte[].class));
+    }
+
     @Test
     @DisplayName("Should return false for invalid OTP")
     void testValidateOtpInvalid() {
@@ -171,23 +230,60 @@ class TwoFactorServiceTest {
     }
 
     @Test
-    @DisplayName("Should check if 2FA is enabled")
+    @DisplayName("Should accept a TOTP code once and reject its replay")
+    void testValidateOtpRejectsReplay() {
+        // Arrange
+        mfaSettings.setEnabled(true);
+        mfaSettings.setSecret(new GoogleAuthenticator().createCredentials().getKey());
+        when(mfaSettingsRepository.findByUserAndEnabledTrue(testUser))
+                .thenReturn(Optional.of(mfaSettings));
+        when(mfaSettingsRepository.markStepAccepted(eq(1L), anyLong())).thenReturn(1, 0);
+        String code = String.format("%06d", new GoogleAuthenticator().getTotpPassword(mfaSettings.getSecret()));
+
+        // Act & Assert
+        assertTrue(twoFactorService.validateOtp(testUser, code));
+        assertFalse(twoFactorService.validateOtp(testUser, code));
+        verify(mfaSettingsRepository, times(2)).markStepAccepted(eq(1L), anyLong());
+    }
+
+    @Test
+    @DisplayName("Should serve TOTP secrets from the cache until 2FA settings change")
+    void testValidateOtpCachesSecret() {
+        // Arrange
+        mfaSettings.setEnabled(true);
+        mfaSettings.setSecret(new GoogleAuthenticator().createCredentials().getKey());
+        when(mfaSettingsRepository.findByUserAndEnabledTrue(testUser))
+                .thenReturn(Optional.of(mfaSettings));
+
+        // Act
+        twoFactorService.validateOtp(testUser, "000000");
+        twoFactorService.validateOtp(testUser, "000001");
+        twoFactorService.disable2FA(testUser);
+        twoFactorService.validateOtp(testUser, "000002");
+
+        // Assert
+        verify(mfaSettingsRepository, times(2)).findByUserAndEnabledTrue(testUser);
+    }
+
+    @Test
+    @DisplayName("Should read the 2FA state from the loaded user without a query")
     void testIs2FAEnabled() {
         // Arrange
-        when(mfaSettingsRepository.existsByUserAndEnabledTrue(testUser)).thenReturn(true);
+        testUser.setMfaEnabled(true);
 
         // Act
         boolean result = twoFactorService.is2FAEnabled(testUser);
 
         // Assert
         assertTrue(result);
+        verifyNoInteractions(mfaSettingsRepository, userRepository);
     }
 
     @Test
     @DisplayName("Should return false when 2FA is not enabled")
     void testIs2FANotEnabled() {
         // Arrange
-        when(mfaSettingsRepository.existsByUserAndEnabledTrue(testUser)).thenReturn(false);
+        testUser.setMfaEnabled(false);
 
         // Act
         boolean result = twoFactorService.is2FAEnabled(testUser);
@@ -197,18 +293,16 @@ class TwoFactorServiceTest {
     }
 
     @Test
-    @DisplayName("Should get backup codes for user")
-    void testGetBackupCodes() {
+    @DisplayName("Should count remaining backup codes")
+    void testCountRemainingBackupCodes() {
         // Arrange
-        when(mfaSettingsRepository.findByUser(testUser)).thenReturn(Optional.of(mfaSettings));
+        when(mfaBackupCodeRepository.countByUserId(1L)).thenReturn(7L);
 
         // Act
-        List<String> codes = twoFactorService.getBackupCodes(testUser);
+        long remaining = twoFactorService.countRemainingBackupCodes(testUser);
 
         // Assert
-        assertNotNull(codes);
-        assertEquals(10, codes.size());
-        assertTrue(codes.contains("12345678"));
+        assertEquals(7L, remaining);
     }
 
     @Test
@@ -223,7 +317,10 @@ class TwoFactorServiceTest {
         // Assert
         assertNotNull(newCodes);
         assertEquals(10, newCodes.size());
-        verify(mfaSettingsRepository).save(mfaSettings);
+        assertEquals(10, newCodes.stream().distinct().count());
+        verify(mfaBackupCodeRepository).deleteAllByUserId(1L);
+        verify(mfaBackupCodeRepository).insertAll(eq(1L), argThat(hashes -> hashes.size() == 10
+                && hashes.stream().allMatch(hash -> hash.length == 32)));
 
         // Verify codes are 8 digits
         newCodes.forEach(code -> {
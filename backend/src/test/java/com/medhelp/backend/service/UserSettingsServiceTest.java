@@ -0,0 +1,89 @@
+package com.medhelp.backend.service;
+
+import com.medhelp.backend.model.NotificationFlag;
+import com.medhelp.backend.model.NotificationSettings;
+import com.medhelp.backend.model.PrivacySettings;
+import com.medhelp.backend.model.UserPreferences;
+import com.medhelp.backend.repository.UserRepository;
+import com.medhelp.backend.repository.UserSettingsReadRepository.UserSettingsRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("UserSettingsService Tests")
+class UserSettingsServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private UserSettingsService userSettingsService;
+
+    @BeforeEach
+    void setUp() {
+        userSettingsService = new UserSettingsService(userRepository);
+    }
+
+    @Test
+    @DisplayName("Should fill missing sections with defaults without writing")
+    void testDefaultsInMemory() {
+        // Arrange
+        UserPreferences preferences = UserPreferences.builder().id(3L).language("de").version(2L).build();
+        when(userRepository.findSettingsByEmail("test@example.com"))
+                .thenReturn(Optional.of(new UserSettingsRow(1L, preferences, null, null)));
+
+        // Act
+        UserSettingsService.VersionedSettings settings = userSettingsService.getSettings("test@example.com");
+
+        // Assert
+        assertEquals("de", settings.settings().getPreferences().getLanguage());
+        assertNull(settings.settings().getNotifications().getId());
+        assertTrue(settings.settings().getNotifications().isEnabled(NotificationFlag.EMAIL_SECURITY_ALERTS));
+        assertFalse(settings.settings().getPrivacy().getShareDataWithPartners());
+        verify(userRepository).findSettingsByEmail("test@example.com");
+        verifyNoMoreInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("Should change the ETag when any section is saved")
+    void testETagFollowsVersions() {
+        // Arrange
+        NotificationSettings notifications = NotificationSettings.builder().id(5L).version(3L).build();
+        NotificationSettings resaved = NotificationSettings.builder().id(5L).version(4L).build();
+        PrivacySettings privacy = PrivacySettings.builder().id(6L).version(0L).build();
+        when(userRepository.findSettingsByEmail("test@example.com"))
+                .thenReturn(Optional.of(new UserSettingsRow(1L, null, notifications, privacy)))
+                .thenReturn(Optional.of(new UserSettingsRow(1L, null, notifications, privacy)))
+                .thenReturn(Optional.of(new UserSettingsRow(1L, null, resaved, privacy)));
+
+        // Act
+        String first = userSettingsService.getSettings("test@example.com").etag();
+        String unchanged = userSettingsService.getSettings("test@example.com").etag();
+        String changed = userSettingsService.getSettings("test@example.com").etag();
+
+        // Assert
+        assertEquals(first, unchanged);
+        assertNotEquals(first, changed);
+        assertTrue(first.startsWith("\"") && first.endsWith("\""));
+        assertNotEquals(UserSettingsService.etag(1L, null, 0L, 0L), UserSettingsService.etag(2L, null, 0L, 0L));
+        assertNotEquals(UserSettingsService.etag(1L, null, 0L, 0L), UserSettingsService.etag(1L, 0L, 0L, 0L));
+    }
+
+    @Test
+    @DisplayName("Should fail for an unknown user")
+    void testUnknownUser() {
+        // Arrange
+        when(userRepository.findSettingsByEmail("missing@example.com")).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(RuntimeException.class, () -> userSettingsService.getSettings("missing@example.com"));
+    }
+}
@@ -0,0 +1,42 @@
+package com.medhelp.backend.util;
+
+import com.medhelp.backend.exception.PreconditionFailedException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("EntityTags Tests")
+class EntityTagsTest {
+
+    @Test
+    @DisplayName("Should build a strong tag from the row version")
+    void testTagFromVersion() {
+        // Act & Assert
+        assertEquals("\"privacy-7-3\"", EntityTags.of(EntityTags.PRIVACY, 7L, 3L));
+        assertEquals("\"privacy-7-new\"", EntityTags.of(EntityTags.PRIVACY, 7L, null));
+    }
+
+    @Test
+    @DisplayName("Should let a write through without If-Match, with a wildcard or with a current tag")
+    void testMatches() {
+        // Arrange
+        String current = EntityTags.of(EntityTags.USER, 1L, 5L);
+
+        // Act & Assert
+        assertTrue(EntityTags.matches(null, current));
+        assertTrue(EntityTags.matches("*", current));
+        assertTrue(EntityTags.matches("\"user-1-4\", \"user-1-5\"", current));
+        assertFalse(EntityTags.matches("\"user-1-4\"", current));
+        assertFalse(EntityTags.matches("W/\"user-1-5\"", current));
+    }
+
+    @Test
+    @DisplayName("Should reject a write based on an older version")
+    void testCheckIfMatch() {
+        // Act & Assert
+        assertThrows(PreconditionFailedException.class,
+                () -> EntityTags.checkIfMatch("\"user-1-4\"", EntityTags.of(EntityTags.USER, 1L, 5L)));
+        assertDoesNotThrow(() -> EntityTags.checkIfMatch("\"user-1-5\"", EntityTags.of(EntityTags.USER, 1L, 5L)));
+    }
+}
@@ -0,0 +1,68 @@
+package com.medhelp.backend.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("TokenBucket Tests")
+class TokenBucketTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    @DisplayName("Should allow a burst without waiting")
+    void testBurst() {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(10, 20, clock::get);
+
+        // Act & Assert
+        assertEquals(0, bucket.reserve(20));
+        assertTrue(bucket.reserve(1) > 0);
+    }
+
+    @Test
+    @DisplayName("Should make callers beyond the burst wait for the refill")
+    void testWaitsForRefill() {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(10, 10, clock::get);
+        bucket.reserve(10);
+
+        // Act
+        long firstWait = bucket.reserve(5);
+        long secondWait = bucket.reserve(5);
+
+        // Assert
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), firstWait, 1000);
+        assertEquals(TimeUnit.SECONDS.toNanos(1), secondWait, 1000);
+    }
+
+    @Test
+    @DisplayName("Should let a request larger than the burst through at the configured rate")
+    void testLargeRequest() {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(100, 50, clock::get);
+
+        // Act
+        long wait = bucket.reserve(500);
+
+        // Assert
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(4500), wait, 1000);
+    }
+
+    @Test
+    @DisplayName("Should refill up to the burst size only")
+    void testRefillIsCapped() {
+        // Arrange
+        TokenBucket bucket = new TokenBucket(10, 10, clock::get);
+        bucket.reserve(10);
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(1));
+
+        // Act & Assert
+        assertEquals(0, bucket.reserve(10));
+        assertTrue(bucket.reserve(1) > 0);
+    }
+}
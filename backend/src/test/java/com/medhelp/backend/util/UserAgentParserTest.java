@@ -0,0 +1,106 @@
+package com.medhelp.backend.util;
+
+import com.medhelp.backend.util.UserAgentParser.DeviceClass;
+import com.medhelp.backend.util.UserAgentParser.UserAgentInfo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("UserAgentParser Tests")
+class UserAgentParserTest {
+
+    @Test
+    @DisplayName("Should tell Edge apart from the Chrome it is built on")
+    void testParseEdge() {
+        // Act
+        UserAgentInfo info = UserAgentParser.parse("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 "
+                + "(KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36 Edg/120.0.2210.91");
+
+        // Assert
+        assertEquals("Edge", info.browser());
+        assertEquals("120", info.browserVersion());
+        assertEquals("Windows", info.os());
+        assertEquals("10", info.osVersion());
+        assertEquals(DeviceClass.DESKTOP, info.deviceClass());
+        assertEquals("Edge on Windows", info.displayName());
+    }
+
+    @Test
+    @DisplayName("Should parse Chrome on macOS")
+    void testParseChromeMac() {
+        // Act
+        UserAgentInfo info = UserAgentParser.parse("Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) "
+                + "AppleWebKit/537.36 (KHTML, like Gecko) Chrome/121.0.0.0 Safari/537.36");
+
+        // Assert
+        assertEquals("Chrome", info.browser());
+        assertEquals("macOS", info.os());
+        assertEquals("10.15", info.osVersion());
+        assertEquals(DeviceClass.DESKTOP, info.deviceClass());
+    }
+
+    @Test
+    @DisplayName("Should parse Safari on iPhone as mobile")
+    void testParseSafariIphone() {
+        // Act
+        UserAgentInfo info = UserAgentParser.parse("Mozilla/5.0 (iPhone; CPU iPhone OS 17_2 like Mac OS X) "
+                + "AppleWebKit/605.1.15 (KHTML, like Gecko) Version/17.2 Mobile/15E148 Safari/604.1");
+
+        // Assert
+        assertEquals("Safari", info.browser());
+        assertEquals("17", info.browserVersion());
+        assertEquals("iOS", info.os());
+        assertEquals("17", info.osVersion());
+        assertEquals(DeviceClass.MOBILE, info.deviceClass());
+    }
+
+    @Test
+    @DisplayName("Should classify Android phones and tablets")
+    void testParseAndroid() {
+        // Act
+        UserAgentInfo phone = UserAgentParser.parse("Mozilla/5.0 (Linux; Android 14; Pixel 8) AppleWebKit/537.36 "
+                + "(KHTML, like Gecko) Chrome/120.0.0.0 Mobile Safari/537.36");
+        UserAgentInfo tablet = UserAgentParser.parse("Mozilla/5.0 (Linux; Android 13; SM-X700) AppleWebKit/537.36 "
+                + "(KHTML, like Gecko) SamsungBrowser/23.0 Chrome/115.0.0.0 Safari/537.36");
+
+        // Assert
+        assertEquals("Android", phone.os());
+        assertEquals(DeviceClass.MOBILE, phone.deviceClass());
+        assertEquals("Samsung Internet", tablet.browser());
+        assertEquals(DeviceClass.TABLET, tablet.deviceClass());
+    }
+
+    @Test
+    @DisplayName("Should parse Firefox on Linux")
+    void testParseFirefoxLinux() {
+        // Act
+        UserAgentInfo info = UserAgentParser.parse(
+                "Mozilla/5.0 (X11; Ubuntu; Linux x86_64; rv:122.0) Gecko/20100101 Firefox/122.0");
+
+        // Assert
+        assertEquals("Firefox", info.browser());
+        assertEquals("Linux", info.os());
+        assertNull(info.osVersion());
+        assertEquals(DeviceClass.DESKTOP, info.deviceClass());
+    }
+
+    @Test
+    @DisplayName("Should classify scripted clients and crawlers as bots")
+    void testParseBots() {
+        // Act & Assert
+        assertEquals(DeviceClass.BOT, UserAgentParser.parse("curl/8.4.0").deviceClass());
+        assertEquals("curl", UserAgentParser.parse("curl/8.4.0").browser());
+        assertEquals(DeviceClass.BOT, UserAgentParser.parse(
+                "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)").deviceClass());
+    }
+
+    @Test
+    @DisplayName("Should return unknown for a missing or unrecognised user agent")
+    void testParseUnknown() {
+        // Act & Assert
+        assertSame(UserAgentParser.UNKNOWN, UserAgentParser.parse(null));
+        assertSame(UserAgentParser.UNKNOWN, UserAgentParser.parse(" "));
+        assertEquals("Unknown Device", UserAgentParser.parse("something-custom").displayName());
+    }
+}
@@ -5,15 +5,32 @@ import type {
   UserPreferences,
   NotificationSettings,
   PrivacySettings,
+  UserSettings,
   MessageResponse,
 } from './types';
 import type { User } from '@/lib/enums';
 
+// Tabs loading at the same time share one request for all settings
+let settingsRequest: Promise<UserSettings> | null = null;
+
 /**
  * Settings API Service
  * Centralized API calls for user settings management
  */
 export const settingsApi = {
+  // All settings in one request; the browser revalidates it with the ETag (304 when unchanged)
+  getSettings: (): Promise<UserSettings> => {
+    if (!settingsRequest) {
+      settingsRequest = apiClient
+        .get('/users/me/settings')
+        .then((response) => response.data)
+        .finally(() => {
+          settingsRequest = null;
+        });
+    }
+    return settingsRequest;
+  },
+
   // Profile Management
   updateProfile: async (data: UpdateProfileRequest): Promise<User> => {
     const response = await apiClient.put('/users/profile', data);
@@ -27,8 +44,8 @@ export const settingsApi = {
 
   // User Preferences
   getPreferences: async (): Promise<UserPreferences> => {
-    const response = await apiClient.get('/users/preferences');
-    return response.data;
+    const settings = await settingsApi.getSettings();
+    return settings.preferences;
   },
 
   updatePreferences: async (data: Partial<UserPreferences>): Promise<UserPreferences> => {
@@ -38,8 +55,8 @@ export const settingsApi = {
 
   // Notification Settings
   getNotificationSettings: async (): Promise<NotificationSettings> => {
-    const response = await apiClient.get('/users/notifications');
-    return response.data;
+    const settings = await settingsApi.getSettings();
+    return settings.notifications;
   },
 
   updateNotificationSettings: async (data: NotificationSettings): Promise<NotificationSettings> => {
@@ -47,10 +64,16 @@ export const settingsApi = {
     return response.data;
   },
 
+  // Only the toggled flags, e.g. { emailPromotions: true }; the rest are left as they are
+  patchNotificationSettings: async (changes: Partial<NotificationSettings>): Promise<NotificationSettings> => {
+    const response = await apiClient.patch('/users/notifications', changes);
+    return response.data;
+  },
+
   // Privacy Settings
   getPrivacySettings: async (): Promise<PrivacySettings> => {
-    const response = await apiClient.get('/users/privacy');
-    return response.data;
+    const settings = await settingsApi.getSettings();
+    return settings.privacy;
   },
 
   updatePrivacySettings: async (data: PrivacySettings): Promise<PrivacySettings> => {
@@ -64,6 +64,12 @@ export interface PrivacySettings {
   updatedAt?: string;
 }
 
+export interface UserSettings {
+  preferences: UserPreferences;
+  notifications: NotificationSettings;
+  privacy: PrivacySettings;
+}
+
 export interface MessageResponse {
   message: string;
 }